@@ -0,0 +1,174 @@
+package guru.springframework.sfgrestbrewery.analytics;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleStatsDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Per style running aggregates of the catalog, so dashboards don't have to page through the whole table.
+ * <p>
+ * Seeded with one streaming scan once the application is ready and then kept current from the
+ * {@link BeerChangedEvent}s of the service write paths. Anything that changes the table without going through
+ * the service is picked up by the periodic rescan ({@code brewery.analytics.rescan-interval}), which rebuilds
+ * the aggregates from scratch and swaps them in. Changes made while a scan runs go to the new aggregates as well:
+ * a beer the scan has read already is replaced, one it hasn't is skipped when it gets there, so each beer is
+ * counted once and as it is now.
+ */
+@Slf4j
+@Lazy(false) //has to exist for the scan and the schedule
+@Component
+@RequiredArgsConstructor
+public class CatalogAnalytics {
+
+    private final BeerRepository beerRepository;
+
+    @Value("${brewery.analytics.rescan-enabled:true}")
+    private boolean rescanEnabled;
+
+    private volatile Map<BeerStyleEnum, StyleAggregate> aggregates = emptyAggregates();
+    private volatile boolean seeded;
+    private final AtomicBoolean scanning = new AtomicBoolean();
+    private Scan scan; //guarded by this, null unless a scan runs
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        rescan().subscribe();
+    }
+
+    @Scheduled(initialDelayString = "${brewery.analytics.rescan-interval:PT10M}",
+            fixedDelayString = "${brewery.analytics.rescan-interval:PT10M}")
+    public void scheduledRescan() {
+        if (rescanEnabled) {
+            rescan().subscribe();
+        }
+    }
+
+    public Mono<Void> rescan() {
+        if (!scanning.compareAndSet(false, true)) {
+            return Mono.empty(); //one scan at a time
+        }
+
+        Scan fresh = new Scan();
+        synchronized (this) {
+            scan = fresh;
+        }
+        long started = System.nanoTime();
+
+        return beerRepository.findAll()
+                .doOnNext(fresh::scanned)
+                .then(Mono.fromRunnable(() -> {
+                    synchronized (this) {
+                        aggregates = fresh.aggregates; //from here on changes only go to these
+                        scan = null;
+                    }
+                    seeded = true;
+                    log.debug("Catalog analytics rebuilt in {} ms", (System.nanoTime() - started) / 1_000_000);
+                }))
+                .doOnError(e -> log.error("Catalog analytics scan failed", e))
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> {
+                    synchronized (this) {
+                        scan = null;
+                    }
+                    scanning.set(false);
+                })
+                .then();
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        synchronized (this) {
+            apply(aggregates, event.getBefore(), event.getAfter());
+            if (scan != null) {
+                scan.changed(event);
+            }
+        }
+    }
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public List<BeerStyleStatsDto> getStyleStatistics() {
+        return aggregates.values().stream()
+                .map(StyleAggregate::snapshot)
+                .collect(Collectors.toList());
+    }
+
+    public BeerStyleStatsDto getStyleStatistics(BeerStyleEnum beerStyle) {
+        return aggregates.get(beerStyle).snapshot();
+    }
+
+    private static void apply(Map<BeerStyleEnum, StyleAggregate> aggregates, Beer before, Beer after) {
+        if (before != null) {
+            StyleAggregate aggregate = aggregateFor(aggregates, before);
+            if (aggregate != null) {
+                aggregate.remove(before);
+            }
+        }
+        if (after != null) {
+            StyleAggregate aggregate = aggregateFor(aggregates, after);
+            if (aggregate != null) {
+                aggregate.add(after);
+            }
+        }
+    }
+
+    private static StyleAggregate aggregateFor(Map<BeerStyleEnum, StyleAggregate> aggregates, Beer beer) {
+        return beer.getBeerStyle() == null ? null : aggregates.get(beer.getBeerStyle());
+    }
+
+    private static Map<BeerStyleEnum, StyleAggregate> emptyAggregates() {
+        Map<BeerStyleEnum, StyleAggregate> aggregates = new EnumMap<>(BeerStyleEnum.class);
+        for (BeerStyleEnum beerStyle : BeerStyleEnum.values()) {
+            aggregates.put(beerStyle, new StyleAggregate(beerStyle));
+        }
+        return aggregates;
+    }
+
+    /**
+     * The aggregates a scan builds, and which beers it has read or saw change so far. Guarded by the
+     * {@link CatalogAnalytics} it belongs to.
+     */
+    private class Scan {
+
+        final Map<BeerStyleEnum, StyleAggregate> aggregates = emptyAggregates();
+        final Set<Integer> read = new HashSet<>();
+        final Set<Integer> changed = new HashSet<>();
+
+        void scanned(Beer beer) {
+            synchronized (CatalogAnalytics.this) {
+                if (!changed.contains(beer.getId())) { //else counted as it is now already
+                    read.add(beer.getId());
+                    apply(aggregates, null, beer);
+                }
+            }
+        }
+
+        void changed(BeerChangedEvent event) {
+            //the scan counted the beer as it was before if it read it already, and mustn't count it at all if not
+            boolean counted = read.contains(event.getBeerId()) || changed.contains(event.getBeerId());
+            changed.add(event.getBeerId());
+            apply(aggregates, counted ? event.getBefore() : null, event.getAfter());
+        }
+    }
+}
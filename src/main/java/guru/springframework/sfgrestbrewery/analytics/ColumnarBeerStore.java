@@ -0,0 +1,339 @@
+package guru.springframework.sfgrestbrewery.analytics;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.compact.CompactBeerCodec;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerScanResultDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * The columns of the beer table that reports filter and sum on, one primitive array each, plus a bitmap of the
+ * rows of every style. A row is a position in the arrays; deleted rows are only cleared from the live bitmap and
+ * the arrays are compacted once a quarter of the rows are dead.
+ * <p>
+ * Scans split the rows into ranges that a fork/join pool filters and sums in parallel. Writers take the write lock,
+ * scans the read lock, so a scan sees either all or none of a change. Prices are held in cents, rounded if a price
+ * has more decimals.
+ */
+class ColumnarBeerStore {
+
+    private static final long NO_PRICE = Long.MIN_VALUE;
+    private static final int NO_QUANTITY = Integer.MIN_VALUE;
+    private static final byte NO_STYLE = -1;
+    private static final int ROWS_PER_TASK = 1 << 16;
+    private static final int MIN_COMPACTION_ROWS = 1024;
+
+    private int[] ids = new int[1024];
+    private byte[] styles = new byte[1024];
+    private long[] prices = new long[1024];
+    private int[] quantities = new int[1024];
+    private int rowCount; //rows used, live or dead
+    private int deadRows;
+
+    private final BitSet live = new BitSet();
+    private final BitSet[] rowsByStyle = new BitSet[BeerStyleEnum.values().length];
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    ColumnarBeerStore() {
+        for (int i = 0; i < rowsByStyle.length; i++) {
+            rowsByStyle[i] = new BitSet();
+        }
+    }
+
+    void upsert(Beer beer) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.get(beer.getId());
+            if (row == null) {
+                row = append(beer.getId());
+            } else if (styles[row] != NO_STYLE) {
+                rowsByStyle[styles[row]].clear(row);
+            }
+
+            byte style = beer.getBeerStyle() == null ? NO_STYLE : (byte) CompactBeerCodec.toStyleCode(beer.getBeerStyle());
+            styles[row] = style;
+            prices[row] = beer.getPrice() == null ? NO_PRICE
+                    : beer.getPrice().setScale(CompactBeerCodec.PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            quantities[row] = beer.getQuantityOnHand() == null ? NO_QUANTITY : beer.getQuantityOnHand();
+            if (style != NO_STYLE) {
+                rowsByStyle[style].set(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(Integer beerId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.remove(beerId);
+            if (row == null) {
+                return;
+            }
+            live.clear(row);
+            if (styles[row] != NO_STYLE) {
+                rowsByStyle[styles[row]].clear(row);
+            }
+            deadRows++;
+            if (deadRows >= MIN_COMPACTION_ROWS && deadRows > rowCount / 4) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return rowById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Filters and sums the beers matching {@code filter}, which may only use the projected columns: styles,
+     * prices and quantities.
+     */
+    BeerScanResultDto scan(BeerFilter filter, int limit, ForkJoinPool pool) {
+        ScanCriteria criteria = ScanCriteria.of(filter);
+
+        lock.readLock().lock();
+        try {
+            BitSet candidates;
+            if (criteria.styles == null) {
+                candidates = live;
+            } else {
+                candidates = new BitSet(rowCount);
+                for (BeerStyleEnum style : criteria.styles) {
+                    candidates.or(rowsByStyle[CompactBeerCodec.toStyleCode(style)]);
+                }
+            }
+
+            Totals totals = pool.invoke(new ScanTask(candidates, criteria, limit, 0, rowCount));
+            int[] firstIds = Arrays.copyOf(totals.ids, totals.idCount);
+            Arrays.sort(firstIds);
+
+            return BeerScanResultDto.builder()
+                    .beerCount(totals.count)
+                    .totalQuantityOnHand(totals.quantity)
+                    .minPrice(totals.priced == 0 ? null : CompactBeerCodec.fromCents(totals.minPrice))
+                    .maxPrice(totals.priced == 0 ? null : CompactBeerCodec.fromCents(totals.maxPrice))
+                    .inventoryValue(CompactBeerCodec.fromCents(totals.valueCents))
+                    .beerIds(Arrays.stream(firstIds).limit(limit).boxed().collect(Collectors.toList()))
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int append(Integer beerId) {
+        if (rowCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            styles = Arrays.copyOf(styles, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+        }
+        int row = rowCount++;
+        ids[row] = beerId;
+        live.set(row);
+        rowById.put(beerId, row);
+        return row;
+    }
+
+    private void compact() {
+        int target = 0;
+        for (BitSet rows : rowsByStyle) {
+            rows.clear();
+        }
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            ids[target] = ids[row];
+            styles[target] = styles[row];
+            prices[target] = prices[row];
+            quantities[target] = quantities[row];
+            rowById.put(ids[target], target);
+            if (styles[target] != NO_STYLE) {
+                rowsByStyle[styles[target]].set(target);
+            }
+            target++;
+        }
+        live.clear();
+        live.set(0, target);
+        rowCount = target;
+        deadRows = 0;
+    }
+
+    /**
+     * The conditions of a filter in the units of the columns.
+     */
+    private static class ScanCriteria {
+        Set<BeerStyleEnum> styles; //null for any
+        long minPrice = Long.MIN_VALUE;
+        long maxPrice = Long.MAX_VALUE;
+        boolean priceBounded;
+        long minQuantity = Long.MIN_VALUE;
+        long maxQuantity = Long.MAX_VALUE;
+        boolean quantityBounded;
+        Boolean inStock;
+
+        static ScanCriteria of(BeerFilter filter) {
+            if (filter.getBeerName() != null || filter.getNamePrefix() != null
+                    || filter.getCreatedFrom() != null || filter.getCreatedTo() != null
+                    || filter.getModifiedFrom() != null || filter.getModifiedTo() != null) {
+                throw new ServerWebInputException("Scans can only filter by beerStyle, price and quantity on hand");
+            }
+
+            ScanCriteria criteria = new ScanCriteria();
+            if (filter.getBeerStyles() != null && !filter.getBeerStyles().isEmpty()) {
+                criteria.styles = filter.getBeerStyles();
+            }
+            if (filter.getMinPrice() != null) {
+                criteria.minPrice = CompactBeerCodec.toCentsBound(filter.getMinPrice(), true);
+                criteria.priceBounded = true;
+            }
+            if (filter.getMaxPrice() != null) {
+                criteria.maxPrice = CompactBeerCodec.toCentsBound(filter.getMaxPrice(), false);
+                criteria.priceBounded = true;
+            }
+            if (filter.getMinQuantityOnHand() != null) {
+                criteria.minQuantity = filter.getMinQuantityOnHand();
+                criteria.quantityBounded = true;
+            }
+            if (filter.getMaxQuantityOnHand() != null) {
+                criteria.maxQuantity = filter.getMaxQuantityOnHand();
+                criteria.quantityBounded = true;
+            }
+            criteria.inStock = filter.getInStock();
+            return criteria;
+        }
+    }
+
+    private static class Totals {
+        long count;
+        long quantity;
+        long priced;
+        long minPrice = Long.MAX_VALUE;
+        long maxPrice = Long.MIN_VALUE;
+        long valueCents;
+        int[] ids;
+        int idCount;
+
+        Totals(int limit) {
+            ids = new int[Math.max(0, limit)];
+        }
+
+        Totals add(Totals other) {
+            count += other.count;
+            quantity += other.quantity;
+            priced += other.priced;
+            minPrice = Math.min(minPrice, other.minPrice);
+            maxPrice = Math.max(maxPrice, other.maxPrice);
+            valueCents += other.valueCents;
+
+            //every range collects its lowest ids, the lowest of both are among them
+            int[] merged = Arrays.copyOf(ids, idCount + other.idCount);
+            System.arraycopy(other.ids, 0, merged, idCount, other.idCount);
+            Arrays.sort(merged);
+            idCount = Math.min(merged.length, ids.length);
+            System.arraycopy(merged, 0, ids, 0, idCount);
+            return this;
+        }
+    }
+
+    private class ScanTask extends RecursiveTask<Totals> {
+        private final BitSet candidates;
+        private final ScanCriteria criteria;
+        private final int limit;
+        private final int from;
+        private final int to;
+
+        ScanTask(BitSet candidates, ScanCriteria criteria, int limit, int from, int to) {
+            this.candidates = candidates;
+            this.criteria = criteria;
+            this.limit = limit;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(candidates, criteria, limit, from, middle);
+                left.fork();
+                Totals right = new ScanTask(candidates, criteria, limit, middle, to).compute();
+                return left.join().add(right);
+            }
+
+            Totals totals = new Totals(limit);
+            int largestKept = Integer.MIN_VALUE;
+            for (int row = candidates.nextSetBit(from); row >= 0 && row < to; row = candidates.nextSetBit(row + 1)) {
+                long price = prices[row];
+                int quantity = quantities[row];
+                if (criteria.priceBounded && (price == NO_PRICE || price < criteria.minPrice || price > criteria.maxPrice)) {
+                    continue;
+                }
+                if (criteria.quantityBounded && (quantity == NO_QUANTITY || quantity < criteria.minQuantity || quantity > criteria.maxQuantity)) {
+                    continue;
+                }
+                if (criteria.inStock != null && criteria.inStock != (quantity != NO_QUANTITY && quantity > 0)) {
+                    continue;
+                }
+
+                long onHand = quantity == NO_QUANTITY ? 0 : quantity;
+                totals.count++;
+                totals.quantity += onHand;
+                if (price != NO_PRICE) {
+                    totals.priced++;
+                    totals.minPrice = Math.min(totals.minPrice, price);
+                    totals.maxPrice = Math.max(totals.maxPrice, price);
+                    totals.valueCents += price * onHand;
+                }
+                largestKept = keepLowestId(totals, ids[row], largestKept);
+            }
+            return totals;
+        }
+
+        private int keepLowestId(Totals totals, int id, int largestKept) {
+            if (totals.ids.length == 0) {
+                return largestKept;
+            }
+            if (totals.idCount < totals.ids.length) {
+                totals.ids[totals.idCount++] = id;
+                return Math.max(largestKept, id);
+            }
+            if (id >= largestKept) {
+                return largestKept;
+            }
+            //replace the largest, rows are mostly in id order so this is rare
+            int largestAt = 0;
+            for (int i = 1; i < totals.idCount; i++) {
+                if (totals.ids[i] > totals.ids[largestAt]) {
+                    largestAt = i;
+                }
+            }
+            totals.ids[largestAt] = id;
+            int largest = Integer.MIN_VALUE;
+            for (int i = 0; i < totals.idCount; i++) {
+                largest = Math.max(largest, totals.ids[i]);
+            }
+            return largest;
+        }
+    }
+}
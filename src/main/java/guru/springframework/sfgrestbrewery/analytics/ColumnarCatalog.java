@@ -0,0 +1,156 @@
+package guru.springframework.sfgrestbrewery.analytics;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.repositories.BeerTableScanner;
+import guru.springframework.sfgrestbrewery.services.BeerChangeFeedEvent;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerScanResultDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A columnar copy of the beer table in memory ({@link ColumnarBeerStore}) for ad-hoc filters and totals over the
+ * whole catalog, which would otherwise be full table scans. Enabled with {@code brewery.columnar.enabled}.
+ * <p>
+ * Loaded with one streaming scan once the application is ready, then kept current from the
+ * {@link BeerChangedEvent}s of this instance and the {@link BeerChangeFeedEvent}s of the others, whose rows are
+ * re-read. Beers that change while the first scan runs are re-read once it is done. Scans run on a fork/join pool
+ * of their own ({@code brewery.columnar.parallelism}, all cores by default) so they don't hold up the event loop
+ * or the common pool. Changes are applied one after the other on a thread of their own, as a write waits for the
+ * scans running to finish.
+ */
+@Slf4j
+@Lazy(false) //has to exist to load the catalog
+@Component
+@ConditionalOnProperty(name = "brewery.columnar.enabled", havingValue = "true")
+public class ColumnarCatalog {
+
+    private final BeerTableScanner beerTableScanner;
+    private final BeerRepository beerRepository;
+    private final int scanBatchSize;
+    private final ForkJoinPool pool;
+    private final Scheduler writer; //not a reactor thread, waiting for a scan is what it is for
+
+    private volatile ColumnarBeerStore store; //null until loaded
+    private Set<Integer> changedWhileLoading = new HashSet<>(); //guarded by this, null once loaded
+
+    public ColumnarCatalog(BeerTableScanner beerTableScanner,
+                           BeerRepository beerRepository,
+                           @Value("${brewery.columnar.scan-batch-size:1000}") int scanBatchSize,
+                           @Value("${brewery.columnar.parallelism:0}") int parallelism) {
+        this.beerTableScanner = beerTableScanner;
+        this.beerRepository = beerRepository;
+        this.scanBatchSize = scanBatchSize;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.writer = Schedulers.fromExecutorService(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "columnar-writer");
+            thread.setDaemon(true);
+            return thread;
+        }), "columnar-writer");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        ColumnarBeerStore fresh = new ColumnarBeerStore();
+        long started = System.nanoTime();
+
+        beerTableScanner.scan(scanBatchSize)
+                .doOnNext(fresh::upsert)
+                .then(Mono.defer(() -> {
+                    Set<Integer> changed;
+                    synchronized (this) {
+                        changed = changedWhileLoading;
+                        changedWhileLoading = null;
+                        store = fresh; //from here on changes go to the store
+                    }
+                    log.debug("Columnar catalog loaded with {} beers in {} ms", fresh.size(),
+                            (System.nanoTime() - started) / 1_000_000);
+                    return Flux.fromIterable(changed).concatMap(this::reread).then();
+                }))
+                .doOnError(e -> log.error("Columnar catalog load failed", e))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+        writer.dispose();
+    }
+
+    public boolean isLoaded() {
+        return store != null;
+    }
+
+    /**
+     * Totals over the beers matching {@code filter} and the ids of the first {@code limit} of them, computed off
+     * the event loop.
+     */
+    public Mono<BeerScanResultDto> scan(BeerFilter filter, int limit) {
+        return Mono.fromCallable(() -> store.scan(filter, limit, pool))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        ColumnarBeerStore current = store;
+        if (current == null) {
+            recordChange(event.getBeerId());
+        } else if (event.getAfter() == null) {
+            writer.schedule(() -> current.delete(event.getBeerId()));
+        } else {
+            writer.schedule(() -> current.upsert(event.getAfter()));
+        }
+    }
+
+    @EventListener
+    public void onBeerChangeFeed(BeerChangeFeedEvent event) {
+        if (store == null) {
+            recordChange(event.getBeerId());
+        } else {
+            reread(event.getBeerId()).subscribe();
+        }
+    }
+
+    private void recordChange(Integer beerId) {
+        synchronized (this) {
+            if (changedWhileLoading != null) {
+                changedWhileLoading.add(beerId);
+                return;
+            }
+        }
+        reread(beerId).subscribe(); //loaded in the meantime
+    }
+
+    private Mono<Void> reread(Integer beerId) {
+        return beerRepository.findById(beerId)
+                .publishOn(writer)
+                .doOnNext(beer -> store.upsert(beer))
+                .hasElement()
+                .doOnNext(found -> {
+                    if (!found) {
+                        store.delete(beerId);
+                    }
+                })
+                .doOnError(e -> log.warn("Could not re-read beer {} for the columnar catalog", beerId, e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
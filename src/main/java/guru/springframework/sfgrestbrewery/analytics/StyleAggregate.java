@@ -0,0 +1,67 @@
+package guru.springframework.sfgrestbrewery.analytics;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleStatsDto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.TreeMap;
+
+/**
+ * Running totals for the beers of one style. Adding or removing a beer updates the counts and sums in
+ * constant time. Prices are also kept in a sorted multiset, so the minimum and maximum stay exact when the
+ * cheapest or most expensive beer goes away (O(log n) per change).
+ */
+class StyleAggregate {
+
+    private final BeerStyleEnum beerStyle;
+
+    private long beerCount;
+    private long totalQuantityOnHand;
+    private long pricedCount;
+    private BigDecimal priceSum = BigDecimal.ZERO;
+    private BigDecimal inventoryValue = BigDecimal.ZERO;
+    private final TreeMap<BigDecimal, Integer> prices = new TreeMap<>();
+
+    StyleAggregate(BeerStyleEnum beerStyle) {
+        this.beerStyle = beerStyle;
+    }
+
+    synchronized void add(Beer beer) {
+        apply(beer, 1);
+    }
+
+    synchronized void remove(Beer beer) {
+        apply(beer, -1);
+    }
+
+    private void apply(Beer beer, int sign) {
+        long quantity = beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+        BigDecimal price = beer.getPrice();
+
+        beerCount += sign;
+        totalQuantityOnHand += sign * quantity;
+
+        if (price != null) {
+            pricedCount += sign;
+            BigDecimal signed = sign > 0 ? price : price.negate();
+            priceSum = priceSum.add(signed);
+            inventoryValue = inventoryValue.add(signed.multiply(BigDecimal.valueOf(quantity)));
+            //compareTo based keys, 5.0 and 5.00 are the same price
+            prices.merge(price, sign, (count, delta) -> count + delta == 0 ? null : count + delta);
+        }
+    }
+
+    synchronized BeerStyleStatsDto snapshot() {
+        return BeerStyleStatsDto.builder()
+                .beerStyle(beerStyle)
+                .beerCount(beerCount)
+                .totalQuantityOnHand(totalQuantityOnHand)
+                .minPrice(prices.isEmpty() ? null : prices.firstKey())
+                .maxPrice(prices.isEmpty() ? null : prices.lastKey())
+                .meanPrice(pricedCount == 0 ? null : priceSum.divide(BigDecimal.valueOf(pricedCount), 2, RoundingMode.HALF_UP))
+                .inventoryValue(inventoryValue)
+                .build();
+    }
+}
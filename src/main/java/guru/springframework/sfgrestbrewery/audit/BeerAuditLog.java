@@ -0,0 +1,172 @@
+package guru.springframework.sfgrestbrewery.audit;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.domain.BeerHistoryEntry;
+import guru.springframework.sfgrestbrewery.repositories.BeerHistoryLog;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records the price and inventory changes of the service writes in the {@code beer_history} table, off the write
+ * path. Every {@link BeerChangedEvent} that changes either is put on a bounded queue, which is written in batches of
+ * {@code brewery.audit.batch-size} every {@code brewery.audit.flush-interval} or as soon as a batch is full, so
+ * history is up to a flush interval behind.
+ * <p>
+ * A write never waits for the history: when the queue ({@code brewery.audit.queue-capacity}) is full the change is
+ * dropped and counted in {@code brewery.audit.dropped}. A batch that fails to insert is queued again as far as
+ * there is room. On shutdown the queue is written out by {@link #drain}, see
+ * {@link guru.springframework.sfgrestbrewery.lifecycle.GracefulShutdown}.
+ */
+@Slf4j
+@Lazy(false) //has to exist for the schedule
+@Component
+public class BeerAuditLog {
+
+    private final BeerHistoryLog historyLog;
+    private final BlockingQueue<BeerHistoryEntry> queue;
+    private final int batchSize;
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final Counter recorded;
+    private final Counter dropped;
+    private final Counter writeFailures;
+
+    public BeerAuditLog(BeerHistoryLog historyLog,
+                        MeterRegistry meterRegistry,
+                        @Value("${brewery.audit.queue-capacity:10000}") int queueCapacity,
+                        @Value("${brewery.audit.batch-size:500}") int batchSize) {
+        this.historyLog = historyLog;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+
+        this.recorded = meterRegistry.counter("brewery.audit.recorded");
+        this.dropped = meterRegistry.counter("brewery.audit.dropped");
+        this.writeFailures = meterRegistry.counter("brewery.audit.write.failures");
+        meterRegistry.gaugeCollectionSize("brewery.audit.queue.size", List.of(), queue);
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        BeerHistoryEntry entry = toEntry(event);
+        if (entry == null) {
+            return;
+        }
+
+        if (!queue.offer(entry)) {
+            dropped.increment();
+            return;
+        }
+        if (queue.size() >= batchSize && !flushing.get()) {
+            //the H2 driver runs statements on the subscribing thread, which is the writer's here
+            flush().subscribeOn(Schedulers.boundedElastic()).subscribe();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${brewery.audit.flush-interval:PT1S}", fixedDelayString = "${brewery.audit.flush-interval:PT1S}")
+    public void scheduledFlush() {
+        flush().subscribe();
+    }
+
+    /**
+     * Writes what is queued, a batch at a time, unless a flush is running already.
+     */
+    public Mono<Void> flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+
+        AtomicBoolean failed = new AtomicBoolean(); //ends this flush, the next one retries
+        return Mono.defer(() -> writeBatch(failed))
+                .repeat(() -> !failed.get() && !queue.isEmpty())
+                .doFinally(signal -> flushing.set(false))
+                .then();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Writes out the queue for up to {@code timeout}, for shutdown, and returns how many records are left in it.
+     */
+    public int drain(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!queue.isEmpty() && System.nanoTime() < deadline) {
+            if (flushing.get()) {
+                Thread.sleep(10); //the scheduled flush is still running
+            } else {
+                flush().block(Duration.ofNanos(Math.max(1, deadline - System.nanoTime())));
+            }
+        }
+        if (!queue.isEmpty()) {
+            log.warn("Shutting down with {} beer history records not written", queue.size());
+        }
+        return queue.size();
+    }
+
+    private Mono<Void> writeBatch(AtomicBoolean failed) {
+        List<BeerHistoryEntry> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return historyLog.appendAll(batch)
+                .doOnSuccess(done -> recorded.increment(batch.size()))
+                .onErrorResume(e -> {
+                    failed.set(true);
+                    writeFailures.increment();
+                    int requeued = (int) batch.stream().filter(queue::offer).count();
+                    dropped.increment(batch.size() - requeued);
+                    log.warn("Could not write {} beer history records, {} queued again", batch.size(), requeued, e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * The history record of a change, null if it changed neither price nor quantity on hand.
+     */
+    static BeerHistoryEntry toEntry(BeerChangedEvent event) {
+        Beer before = event.getBefore();
+        Beer after = event.getAfter();
+        BigDecimal priceBefore = before == null ? null : before.getPrice();
+        BigDecimal priceAfter = after == null ? null : after.getPrice();
+        Integer quantityBefore = before == null ? null : before.getQuantityOnHand();
+        Integer quantityAfter = after == null ? null : after.getQuantityOnHand();
+
+        boolean samePrice = priceBefore == null ? priceAfter == null : priceAfter != null && priceBefore.compareTo(priceAfter) == 0;
+        if (event.getType() == BeerChangedEvent.Type.UPDATED && samePrice && Objects.equals(quantityBefore, quantityAfter)) {
+            return null;
+        }
+
+        return BeerHistoryEntry.builder()
+                .beerId(event.getBeerId())
+                .changeType(event.getType())
+                .priceBefore(priceBefore)
+                .priceAfter(priceAfter)
+                .quantityOnHandBefore(quantityBefore)
+                .quantityOnHandAfter(quantityAfter)
+                .changedAt(LocalDateTime.now())
+                .build();
+    }
+}
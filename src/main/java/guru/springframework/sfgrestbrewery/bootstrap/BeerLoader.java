@@ -1,6 +1,7 @@
 package guru.springframework.sfgrestbrewery.bootstrap;
 
 import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerInserts;
 import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,8 @@ import org.springframework.stereotype.Component;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -54,6 +57,7 @@ public class BeerLoader implements CommandLineRunner {
 
 
     private final BeerRepository beerRepository;
+    private final BeerInserts beerInserts;
 
     @Override
     public void run(String... args) throws Exception {
@@ -66,8 +70,9 @@ public class BeerLoader implements CommandLineRunner {
         if (beerRepository.count().block() == 0) {
 
             Random random = new Random();
+            List<Beer> beers = new ArrayList<>();
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Mango Bobs")
                     .beerStyle(BeerStyleEnum.ALE)
                     .upc(BEER_1_UPC)
@@ -75,9 +80,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Galaxy Cat")
                     .beerStyle(BeerStyleEnum.PALE_ALE)
                     .upc(BEER_2_UPC)
@@ -85,9 +90,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("No Hammers On The Bar")
                     .beerStyle(BeerStyleEnum.WHEAT)
                     .upc(BEER_3_UPC)
@@ -95,9 +100,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Blessed")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_4_UPC)
@@ -105,9 +110,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Adjunct Trail")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_5_UPC)
@@ -115,9 +120,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Very GGGreenn")
                     .beerStyle(BeerStyleEnum.IPA)
                     .upc(BEER_6_UPC)
@@ -125,9 +130,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Double Barrel Hunahpu's")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_7_UPC)
@@ -135,9 +140,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Very Hazy")
                     .beerStyle(BeerStyleEnum.IPA)
                     .upc(BEER_8_UPC)
@@ -145,9 +150,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("SR-71")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_9_UPC)
@@ -155,9 +160,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Pliny the Younger")
                     .beerStyle(BeerStyleEnum.IPA)
                     .upc(BEER_10_UPC)
@@ -165,9 +170,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Blessed")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_11_UPC)
@@ -175,9 +180,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("King Krush")
                     .beerStyle(BeerStyleEnum.IPA)
                     .upc(BEER_12_UPC)
@@ -185,9 +190,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("PBS Porter")
                     .beerStyle(BeerStyleEnum.PORTER)
                     .upc(BEER_13_UPC)
@@ -195,9 +200,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Pinball Porter")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_14_UPC)
@@ -205,9 +210,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Golden Budda")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_15_UPC)
@@ -215,9 +220,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Grand Central Red")
                     .beerStyle(BeerStyleEnum.LAGER)
                     .upc(BEER_16_UPC)
@@ -225,9 +230,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Pac-Man")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_17_UPC)
@@ -235,9 +240,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Ro Sham Bo")
                     .beerStyle(BeerStyleEnum.IPA)
                     .upc(BEER_18_UPC)
@@ -245,9 +250,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Summer Wheatly")
                     .beerStyle(BeerStyleEnum.WHEAT)
                     .upc(BEER_19_UPC)
@@ -255,9 +260,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Java Jill")
                     .beerStyle(BeerStyleEnum.LAGER)
                     .upc(BEER_20_UPC)
@@ -265,9 +270,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Bike Trail Pale")
                     .beerStyle(BeerStyleEnum.PALE_ALE)
                     .upc(BEER_21_UPC)
@@ -275,9 +280,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("N.Z.P")
                     .beerStyle(BeerStyleEnum.IPA)
                     .upc(BEER_22_UPC)
@@ -285,9 +290,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Stawberry Blond")
                     .beerStyle(BeerStyleEnum.WHEAT)
                     .upc(BEER_23_UPC)
@@ -295,9 +300,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Loco")
                     .beerStyle(BeerStyleEnum.PORTER)
                     .upc(BEER_24_UPC)
@@ -305,9 +310,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Spocktoberfest")
                     .beerStyle(BeerStyleEnum.STOUT)
                     .upc(BEER_25_UPC)
@@ -315,9 +320,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Beach Blond Ale")
                     .beerStyle(BeerStyleEnum.ALE)
                     .upc(BEER_26_UPC)
@@ -325,9 +330,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Bimini Twist IPA")
                     .beerStyle(BeerStyleEnum.IPA)
                     .upc(BEER_27_UPC)
@@ -335,9 +340,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Rod Bender Red Ale")
                     .beerStyle(BeerStyleEnum.ALE)
                     .upc(BEER_28_UPC)
@@ -345,9 +350,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("Floating Dock")
                     .beerStyle(BeerStyleEnum.SAISON)
                     .upc(BEER_29_UPC)
@@ -355,9 +360,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
 
-            beerRepository.save(Beer.builder()
+            beers.add(Beer.builder()
                     .beerName("El Hefe")
                     .beerStyle(BeerStyleEnum.WHEAT)
                     .upc(BEER_30_UPC)
@@ -365,7 +370,9 @@ public class BeerLoader implements CommandLineRunner {
                     .quantityOnHand(random.nextInt(5000))
                     .createdDate(LocalDateTime.now())
                     .lastModifiedDate(LocalDateTime.now())
-                    .build()).block();
+                    .build());
+
+            beerInserts.insertAll(beers).then().block(); //one statement, see BeerInserts
 
             log.debug("Beer Records loaded: {}", beerRepository.count().block());
         }
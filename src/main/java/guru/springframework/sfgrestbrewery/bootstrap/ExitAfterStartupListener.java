@@ -0,0 +1,24 @@
+package guru.springframework.sfgrestbrewery.bootstrap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shuts the application down as soon as it is ready. Used for the AppCDS training run of the
+ * {@code appcds} maven profile, which only needs the classes that get loaded during startup.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "brewery.startup.exit-after-ready", havingValue = "true")
+public class ExitAfterStartupListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        log.info("Application is ready, exiting");
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,148 @@
+package guru.springframework.sfgrestbrewery.cache;
+
+import guru.springframework.sfgrestbrewery.domain.BeerChange;
+import guru.springframework.sfgrestbrewery.repositories.BeerChangeLog;
+import guru.springframework.sfgrestbrewery.services.BeerChangeFeedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Follows the {@code beer_change} log: every {@code brewery.cache.poll-interval} reads the rows after the last
+ * one it has seen, evicts those beers from the {@link BeerNearCache} and publishes a {@link BeerChangeFeedEvent}
+ * for each change another instance made. Rows older than {@code brewery.cache.change-retention} are purged.
+ */
+@Slf4j
+@Lazy(false) //has to exist for the schedule
+@Component
+@RequiredArgsConstructor
+public class BeerChangeFeedPoller {
+
+    private static final int BATCH_SIZE = 500;
+    //sequence numbers are handed out before commit, so a row can become visible after one with a higher seq;
+    //every poll re-reads this many seqs below the high-water mark and skips the ones it has seen
+    private static final long LOOKBACK = 100;
+
+    private final BeerChangeLog beerChangeLog;
+    private final BeerNearCache beerNearCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${brewery.cache.change-retention:PT1H}")
+    private Duration changeRetention;
+
+    private volatile long highWaterMark = -1; //-1 until the starting point has been read
+    private final NavigableSet<Long> recentSeqs = new ConcurrentSkipListSet<>();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private volatile boolean synced;
+    private volatile long firstSyncNanos;
+    private volatile long lastSyncNanos;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        poll().subscribe();
+    }
+
+    @Scheduled(fixedDelayString = "${brewery.cache.poll-interval:PT0.5S}")
+    public void scheduledPoll() {
+        poll().subscribe();
+    }
+
+    @Scheduled(initialDelayString = "PT1M", fixedDelayString = "PT5M")
+    public void purge() {
+        beerChangeLog.purgeBefore(LocalDateTime.now().minus(changeRetention))
+                .doOnNext(purged -> log.debug("Purged {} change log rows", purged))
+                .onErrorResume(e -> {
+                    log.warn("Could not purge the change log", e);
+                    return Mono.empty();
+                })
+                .subscribe();
+    }
+
+    public Mono<Void> poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+
+        Mono<Void> read = highWaterMark < 0
+                ? seed()
+                : readBatches(Math.max(0, highWaterMark - LOOKBACK));
+
+        return read
+                .then(Mono.fromRunnable(this::markInSync))
+                .doOnError(e -> log.warn("Could not read the change log", e))
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> polling.set(false))
+                .then();
+    }
+
+    /**
+     * Nothing is cached yet, so the changes already in the log don't matter; only marks the last ones as seen.
+     */
+    private Mono<Void> seed() {
+        return beerChangeLog.highWaterMark()
+                .flatMapMany(seq -> beerChangeLog.readAfter(Math.max(0, seq - LOOKBACK), (int) LOOKBACK)
+                        .doOnNext(change -> recentSeqs.add(change.getSeq()))
+                        .doOnComplete(() -> highWaterMark = seq))
+                .then();
+    }
+
+    private Mono<Void> readBatches(long after) {
+        return beerChangeLog.readAfter(after, BATCH_SIZE)
+                .collectList()
+                .flatMap(batch -> {
+                    batch.forEach(this::apply);
+                    recentSeqs.headSet(highWaterMark - LOOKBACK).clear();
+                    return batch.size() == BATCH_SIZE ? readBatches(batch.get(batch.size() - 1).getSeq()) : Mono.empty();
+                });
+    }
+
+    private void apply(BeerChange change) {
+        if (change.getSeq() <= highWaterMark - LOOKBACK || !recentSeqs.add(change.getSeq())) {
+            return; //seen it
+        }
+        beerNearCache.evict(change.getBeerId());
+        highWaterMark = Math.max(highWaterMark, change.getSeq());
+
+        if (!beerChangeLog.getInstanceId().equals(change.getInstanceId())) {
+            eventPublisher.publishEvent(new BeerChangeFeedEvent(change));
+        }
+    }
+
+    /**
+     * Whether the log was first read before {@code sinceNanos} ({@link System#nanoTime()}) and has been read within
+     * {@code maxStaleness}, so every change another instance committed after that point has been published or is at
+     * most that late.
+     */
+    public boolean isInSyncSince(long sinceNanos, Duration maxStaleness) {
+        return synced
+                && firstSyncNanos - sinceNanos <= 0
+                && System.nanoTime() - lastSyncNanos <= maxStaleness.toNanos();
+    }
+
+    private void markInSync() {
+        long now = System.nanoTime();
+        if (!synced) {
+            firstSyncNanos = now;
+        }
+        lastSyncNanos = now;
+        synced = true;
+        beerNearCache.markInSync();
+    }
+
+    long getHighWaterMark() {
+        return highWaterMark;
+    }
+}
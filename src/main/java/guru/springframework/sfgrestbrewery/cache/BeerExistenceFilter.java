@@ -0,0 +1,266 @@
+package guru.springframework.sfgrestbrewery.cache;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.repositories.BeerTableScanner;
+import guru.springframework.sfgrestbrewery.services.BeerChangeFeedEvent;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bloom filters over the ids and upcs in the beer table, so lookups of beers that don't exist are answered without
+ * a database round trip.
+ * <p>
+ * Built with a streaming scan of the table once the {@link BeerChangeFeedPoller} follows the change log, then kept
+ * current from the {@link BeerChangedEvent}s of this instance and the {@link BeerChangeFeedEvent}s of the others
+ * (whose upcs are re-read from the table). Deleted beers can't be taken out of a Bloom filter, they stay positive
+ * until the next rebuild every {@code brewery.bloom.rebuild-interval}, or sooner once more beers were added than it
+ * was sized for.
+ * <p>
+ * A negative is only trusted while the change log is read within {@code brewery.bloom.max-staleness}, otherwise
+ * every lookup goes to the database as if there were no filter. Metrics: {@code brewery.bloom.lookups} by key and
+ * result (negative, positive, false_positive) and the {@code brewery.bloom.expected.fpp} gauge by key.
+ */
+@Slf4j
+@Lazy(false) //has to exist for the schedule
+@Component
+public class BeerExistenceFilter {
+
+    private static final String ID = "id";
+    private static final String UPC = "upc";
+
+    private static class Filters {
+        final BloomFilter ids;
+        final BloomFilter upcs;
+        final long startedNanos;
+        final long capacity;
+
+        Filters(long capacity, double fpp) {
+            this.ids = new BloomFilter(capacity, fpp);
+            this.upcs = new BloomFilter(capacity, fpp);
+            this.startedNanos = System.nanoTime();
+            this.capacity = capacity;
+        }
+
+        void add(Beer beer) {
+            if (beer.getId() != null) {
+                ids.put(BloomFilter.hash(beer.getId()));
+            }
+            if (beer.getUpc() != null) {
+                upcs.put(BloomFilter.hash(beer.getUpc()));
+            }
+        }
+    }
+
+    private static class KeyMetrics {
+        final Counter negatives;
+        final Counter positives;
+        final Counter falsePositives;
+
+        KeyMetrics(MeterRegistry meterRegistry, String key) {
+            this.negatives = meterRegistry.counter("brewery.bloom.lookups", "key", key, "result", "negative");
+            this.positives = meterRegistry.counter("brewery.bloom.lookups", "key", key, "result", "positive");
+            this.falsePositives = meterRegistry.counter("brewery.bloom.lookups", "key", key, "result", "false_positive");
+        }
+    }
+
+    private final BeerTableScanner beerTableScanner;
+    private final BeerRepository beerRepository;
+    private final BeerChangeFeedPoller beerChangeFeedPoller;
+
+    private final boolean enabled;
+    private final long expectedBeers;
+    private final double falsePositiveProbability;
+    private final Duration rebuildInterval;
+    private final Duration maxStaleness;
+    private final int scanBatchSize;
+
+    private volatile Filters current; //null until the first build
+    private volatile Filters next; //the one being built, gets the changes made during the build too
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final AtomicInteger pendingUpcReads = new AtomicInteger();
+
+    private final KeyMetrics idMetrics;
+    private final KeyMetrics upcMetrics;
+
+    public BeerExistenceFilter(BeerTableScanner beerTableScanner,
+                               BeerRepository beerRepository,
+                               BeerChangeFeedPoller beerChangeFeedPoller,
+                               MeterRegistry meterRegistry,
+                               @Value("${brewery.bloom.enabled:true}") boolean enabled,
+                               @Value("${brewery.bloom.expected-beers:100000}") long expectedBeers,
+                               @Value("${brewery.bloom.false-positive-probability:0.01}") double falsePositiveProbability,
+                               @Value("${brewery.bloom.rebuild-interval:PT1H}") Duration rebuildInterval,
+                               @Value("${brewery.bloom.max-staleness:PT2S}") Duration maxStaleness,
+                               @Value("${brewery.bloom.scan-batch-size:1000}") int scanBatchSize) {
+        this.beerTableScanner = beerTableScanner;
+        this.beerRepository = beerRepository;
+        this.beerChangeFeedPoller = beerChangeFeedPoller;
+        this.enabled = enabled;
+        this.expectedBeers = expectedBeers;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.rebuildInterval = rebuildInterval;
+        this.maxStaleness = maxStaleness;
+        this.scanBatchSize = scanBatchSize;
+
+        this.idMetrics = new KeyMetrics(meterRegistry, ID);
+        this.upcMetrics = new KeyMetrics(meterRegistry, UPC);
+        Gauge.builder("brewery.bloom.expected.fpp", this, filter -> filter.expectedFpp(ID))
+                .tag("key", ID).register(meterRegistry);
+        Gauge.builder("brewery.bloom.expected.fpp", this, filter -> filter.expectedFpp(UPC))
+                .tag("key", UPC).register(meterRegistry);
+    }
+
+    /**
+     * Empty right away if there is no beer with the id, otherwise whatever {@code lookup} finds.
+     */
+    public Mono<Beer> byId(Integer beerId, Supplier<Mono<Beer>> lookup) {
+        Filters filters = servingFilters();
+        return guarded(filters == null ? null : filters.ids, BloomFilter.hash(beerId), idMetrics, lookup);
+    }
+
+    /**
+     * Empty right away if there is no beer with the upc, otherwise whatever {@code lookup} finds.
+     */
+    public Mono<Beer> byUpc(String upc, Supplier<Mono<Beer>> lookup) {
+        //a beer created elsewhere is in the id filter as soon as its change is read, in this one once its row is
+        Filters filters = pendingUpcReads.get() == 0 ? servingFilters() : null;
+        return guarded(filters == null ? null : filters.upcs, BloomFilter.hash(upc), upcMetrics, lookup);
+    }
+
+    private static Mono<Beer> guarded(BloomFilter filter, long hash, KeyMetrics metrics, Supplier<Mono<Beer>> lookup) {
+        if (filter == null) {
+            return lookup.get();
+        }
+        if (!filter.mightContain(hash)) {
+            metrics.negatives.increment();
+            return Mono.empty();
+        }
+        return lookup.get()
+                .doOnSuccess(found -> {
+                    if (found == null) {
+                        metrics.falsePositives.increment();
+                    } else {
+                        metrics.positives.increment();
+                    }
+                });
+    }
+
+    public boolean isServing() {
+        return servingFilters() != null;
+    }
+
+    private Filters servingFilters() {
+        Filters filters = current;
+        if (!enabled || filters == null || !beerChangeFeedPoller.isInSyncSince(filters.startedNanos, maxStaleness)) {
+            return null;
+        }
+        return filters;
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        if (event.getAfter() != null) {
+            add(event.getAfter());
+        }
+    }
+
+    @EventListener
+    public void onBeerChangeFeed(BeerChangeFeedEvent event) {
+        if (!enabled || event.getType() == BeerChangedEvent.Type.DELETED) {
+            return;
+        }
+        add(Beer.builder().id(event.getBeerId()).build());
+
+        pendingUpcReads.incrementAndGet();
+        beerRepository.findById(event.getBeerId())
+                .doOnNext(this::add)
+                .doOnError(e -> {
+                    log.warn("Could not read the upc of beer {}, rebuilding the existence filter", event.getBeerId(), e);
+                    current = null; //it may be missing a upc now
+                })
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> pendingUpcReads.decrementAndGet())
+                .subscribe();
+    }
+
+    private void add(Beer beer) {
+        //next before current: a build swaps current in before it clears next, so the beer lands in the new one
+        Filters building = next;
+        Filters filters = current;
+        if (building != null) {
+            building.add(beer);
+        }
+        if (filters != null) {
+            filters.add(beer);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${brewery.bloom.check-interval:PT1S}",
+            fixedDelayString = "${brewery.bloom.check-interval:PT1S}")
+    public void maintain() {
+        if (enabled && needsRebuild()) {
+            rebuild().subscribe();
+        }
+    }
+
+    private boolean needsRebuild() {
+        Filters filters = current;
+        if (filters == null) {
+            //only once the change log is followed, changes committed after the scan started must not be missed
+            return beerChangeFeedPoller.isInSyncSince(System.nanoTime(), maxStaleness);
+        }
+        return System.nanoTime() - filters.startedNanos > rebuildInterval.toNanos()
+                || filters.ids.insertions() > filters.capacity;
+    }
+
+    public Mono<Void> rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+
+        Filters filters = current;
+        long capacity = filters == null ? expectedBeers : Math.max(expectedBeers, 2 * filters.ids.insertions());
+        Filters fresh = new Filters(capacity, falsePositiveProbability);
+        next = fresh;
+
+        return beerTableScanner.scan(scanBatchSize)
+                .doOnNext(fresh::add)
+                .then(Mono.fromRunnable(() -> {
+                    current = fresh;
+                    log.debug("Beer existence filter built with {} beers in {} ms", fresh.ids.insertions(),
+                            (System.nanoTime() - fresh.startedNanos) / 1_000_000);
+                }))
+                .doOnError(e -> log.error("Beer existence filter build failed", e))
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> {
+                    next = null;
+                    building.set(false);
+                })
+                .then();
+    }
+
+    private double expectedFpp(String key) {
+        Filters filters = current;
+        if (filters == null) {
+            return Double.NaN;
+        }
+        return ID.equals(key)
+                ? filters.ids.expectedFalsePositiveProbability()
+                : filters.upcs.expectedFalsePositiveProbability();
+    }
+}
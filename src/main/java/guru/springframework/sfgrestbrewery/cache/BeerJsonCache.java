@@ -0,0 +1,267 @@
+package guru.springframework.sfgrestbrewery.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.sfgrestbrewery.services.BeerChangeFeedEvent;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The second tier behind {@link BeerNearCache}: the single beer responses of the v2 lookups as the JSON bytes
+ * they are sent as, and gzipped where that is smaller, kept in direct memory outside the heap. A hit is written
+ * to the connection as it is, nothing is serialized or copied.
+ * <p>
+ * Entries go by the same rules as those of the near cache: evicted on every change to their beer seen by this
+ * instance or read from the change log, and not served while the near cache isn't (see
+ * {@link BeerNearCache#isServing()}). The cache holds at most {@code brewery.cache.json.max-bytes}, the least
+ * recently used entries are evicted first. An evicted entry's memory is reclaimed by the garbage collector once
+ * the last response still writing it is done.
+ */
+@Component
+public class BeerJsonCache {
+
+    /**
+     * The response of one lookup. Every {@link #retainedBytes} is a view of its own of the shared memory, for
+     * the response to release once written.
+     */
+    public static class CachedJson {
+        private final ByteBuf json;
+        private final ByteBuf gzip; //null when gzip would not be smaller
+        private final Integer beerId;
+        private final long expiresAtNanos;
+
+        private CachedJson(ByteBuf json, ByteBuf gzip, Integer beerId, long expiresAtNanos) {
+            this.json = json;
+            this.gzip = gzip;
+            this.beerId = beerId;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        public boolean hasGzip() {
+            return gzip != null;
+        }
+
+        public int length(boolean gzipped) {
+            return (gzipped ? gzip : json).readableBytes();
+        }
+
+        public ByteBuf retainedBytes(boolean gzipped) {
+            return (gzipped ? gzip : json).retainedDuplicate();
+        }
+
+        int size() {
+            return json.capacity() + (gzip == null ? 0 : gzip.capacity());
+        }
+    }
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final ObjectMapper objectMapper;
+    private final BeerNearCache beerNearCache;
+
+    private final LinkedHashMap<String, CachedJson> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Set<String>> keysByBeer = new HashMap<>(); //by id, with and without inventory, by upc
+    private final AtomicLong generation = new AtomicLong(); //same as in BeerNearCache
+    private long bytes;
+
+    public BeerJsonCache(@Value("${brewery.cache.json.enabled:true}") boolean enabled,
+                         @Value("${brewery.cache.json.max-bytes:16MB}") DataSize maxBytes,
+                         @Value("${brewery.cache.ttl:PT5M}") Duration ttl,
+                         ObjectMapper objectMapper, BeerNearCache beerNearCache, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes.toBytes();
+        this.ttlNanos = ttl.toNanos();
+        this.objectMapper = objectMapper;
+        this.beerNearCache = beerNearCache;
+
+        meterRegistry.gauge("brewery.cache.json.bytes", this, BeerJsonCache::getBytes);
+    }
+
+    /**
+     * Where a lookup starts, pass it to {@code put} with what the lookup read.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public CachedJson getById(Integer beerId, boolean withInventory) {
+        return get(idKey(beerId, withInventory));
+    }
+
+    public CachedJson getByUpc(String upc) {
+        return get("upc:" + upc);
+    }
+
+    public CachedJson putById(long startGeneration, BeerDto beerDto, boolean withInventory) {
+        return put(startGeneration, idKey(beerDto.getId(), withInventory), beerDto);
+    }
+
+    public CachedJson putByUpc(long startGeneration, BeerDto beerDto) {
+        return put(startGeneration, "upc:" + beerDto.getUpc(), beerDto);
+    }
+
+    public synchronized void evict(Integer beerId) {
+        generation.incrementAndGet();
+        Set<String> keys = keysByBeer.remove(beerId);
+        if (keys != null) {
+            for (String key : keys) {
+                CachedJson evicted = entries.remove(key);
+                if (evicted != null) {
+                    bytes -= evicted.size();
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+        keysByBeer.clear();
+        bytes = 0;
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        evict(event.getBeerId());
+    }
+
+    @EventListener
+    public void onBeerChangeFeed(BeerChangeFeedEvent event) {
+        evict(event.getBeerId());
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    private CachedJson get(String key) {
+        if (!isServing()) {
+            return null;
+        }
+        synchronized (this) {
+            CachedJson cached = entries.get(key);
+            if (cached != null && System.nanoTime() - cached.expiresAtNanos > 0) {
+                evict(cached.beerId);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * The encoded beer, or null when it isn't kept: the cache doesn't serve, the beer is larger than the whole
+     * cache or something was evicted since {@code startGeneration}. Nothing is encoded in that case, the caller
+     * writes the beer the usual way.
+     */
+    private CachedJson put(long startGeneration, String key, BeerDto beerDto) {
+        if (!isServing() || generation.get() != startGeneration) {
+            return null; //something was evicted while this was read, it may be the row we read
+        }
+        CachedJson json = encode(beerDto);
+        if (json == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (generation.get() != startGeneration) {
+                return json; //evicted while encoding, good for this response but not for keeping
+            }
+            remove(key, entries.put(key, json));
+            keysByBeer.computeIfAbsent(json.beerId, beerId -> new HashSet<>(4)).add(key);
+            bytes += json.size();
+
+            Iterator<Map.Entry<String, CachedJson>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes) {
+                Map.Entry<String, CachedJson> evicted = eldest.next(); //never the one just put, it fits on its own
+                eldest.remove();
+                remove(evicted.getKey(), evicted.getValue());
+            }
+        }
+        return json;
+    }
+
+    private void remove(String key, CachedJson removed) {
+        if (removed == null) {
+            return;
+        }
+        bytes -= removed.size();
+        Set<String> keys = keysByBeer.get(removed.beerId);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            keysByBeer.remove(removed.beerId);
+        }
+    }
+
+    private boolean isServing() {
+        if (!enabled) {
+            return false;
+        }
+        if (!beerNearCache.isServing()) {
+            synchronized (this) {
+                if (bytes > 0) {
+                    clear(); //the near cache has been cleared, entries may be stale once it serves again
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private CachedJson encode(BeerDto beerDto) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(beerDto);
+            if (json.length > maxBytes) {
+                return null;
+            }
+            byte[] gzip = gzip(json);
+            return new CachedJson(offHeap(json), gzip.length < json.length ? offHeap(gzip) : null,
+                    beerDto.getId(), System.nanoTime() + ttlNanos);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Can't encode beer " + beerDto.getId(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Direct memory the garbage collector frees, so a view still being written when its entry is evicted is safe
+     * and the cache never has to count references.
+     */
+    private static ByteBuf offHeap(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return Unpooled.wrappedBuffer(buffer);
+    }
+
+    private static String idKey(Integer beerId, boolean withInventory) {
+        return withInventory ? "id:" + beerId + ":inventory" : "id:" + beerId;
+    }
+}
@@ -0,0 +1,125 @@
+package guru.springframework.sfgrestbrewery.cache;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of beers by id and by upc for the single beer lookups of the service.
+ * <p>
+ * Entries are evicted right away for writes made by this instance and, through {@link BeerChangeFeedPoller},
+ * within a poll interval for writes made by any other instance on the same database. If the change log cannot be
+ * read for longer than {@code brewery.cache.max-staleness} the cache is emptied and bypassed until it can, so an
+ * entry is never served more than that window after the row changed.
+ */
+@Slf4j
+@Component
+public class BeerNearCache {
+
+    private final boolean enabled;
+    private final long maxStalenessNanos;
+
+    private final ExpiringLruCache<Integer, Beer> byId;
+    private final ExpiringLruCache<String, Integer> idByUpc;
+
+    //bumped on every eviction, a read that started before an eviction must not put what it read
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long lastSyncNanos = System.nanoTime() - Long.MAX_VALUE / 2; //not in sync until the first poll
+
+    public BeerNearCache(@Value("${brewery.cache.enabled:true}") boolean enabled,
+                         @Value("${brewery.cache.max-size:10000}") int maxSize,
+                         @Value("${brewery.cache.ttl:PT5M}") Duration ttl,
+                         @Value("${brewery.cache.max-staleness:PT2S}") Duration maxStaleness) {
+        this.enabled = enabled;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.byId = new ExpiringLruCache<>(maxSize, ttl);
+        this.idByUpc = new ExpiringLruCache<>(maxSize, ttl);
+    }
+
+    /**
+     * Where a lookup starts, pass it to {@link #put(long, Beer)} with what the lookup read.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public Beer getById(Integer beerId) {
+        if (!isServing()) {
+            return null;
+        }
+        Beer beer = byId.get(beerId);
+        return beer == null ? null : beer.toBuilder().build();
+    }
+
+    public Beer getByUpc(String upc) {
+        if (!isServing()) {
+            return null;
+        }
+        Integer beerId = idByUpc.get(upc);
+        Beer beer = beerId == null ? null : byId.get(beerId);
+        //the upc may have moved to another beer since it was cached
+        return beer == null || !upc.equals(beer.getUpc()) ? null : beer.toBuilder().build();
+    }
+
+    public void put(long startGeneration, Beer beer) {
+        if (!isServing() || beer == null || beer.getId() == null) {
+            return;
+        }
+        synchronized (this) {
+            if (generation.get() != startGeneration) {
+                return; //something was evicted while this was read, it may be the row we read
+            }
+            byId.put(beer.getId(), beer.toBuilder().build());
+            if (beer.getUpc() != null) {
+                idByUpc.put(beer.getUpc(), beer.getId());
+            }
+        }
+    }
+
+    public synchronized void evict(Integer beerId) {
+        generation.incrementAndGet();
+        byId.remove(beerId);
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        byId.clear();
+        idByUpc.clear();
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        evict(event.getBeerId());
+    }
+
+    /**
+     * Called after every successful read of the change log, everything up to the high-water mark has been evicted.
+     */
+    void markInSync() {
+        lastSyncNanos = System.nanoTime();
+    }
+
+    public boolean isServing() {
+        if (!enabled) {
+            return false;
+        }
+        if (System.nanoTime() - lastSyncNanos > maxStalenessNanos) {
+            if (byId.size() > 0) {
+                log.warn("Change log not read for more than the staleness window, clearing the beer cache");
+                clear();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,37 @@
+package guru.springframework.sfgrestbrewery.config;
+
+import guru.springframework.sfgrestbrewery.repositories.BeerStorageFormat;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+
+/**
+ * Creates the schema on startup. Kept out of the application class so that slice tests like
+ * {@code @WebFluxTest} don't need a connection factory.
+ */
+@Configuration
+public class R2dbcConfig {
+
+    @Bean
+    ConnectionFactoryInitializer initializer(ConnectionFactory connectionFactory, BeerStorageFormat storageFormat){
+        ConnectionFactoryInitializer initializer =  new ConnectionFactoryInitializer();
+        initializer.setConnectionFactory(connectionFactory);
+
+        //schema.sql, or schema-compact.sql for the compact row format
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(storageFormat.getSchema()));
+
+        return initializer;
+    }
+
+    /**
+     * With {@code spring.main.lazy-initialization=true} nothing asks for the initializer, so it would never
+     * create the schema. It has to run before the first query no matter what.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter schemaInitializerEagerFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(ConnectionFactoryInitializer.class);
+    }
+}
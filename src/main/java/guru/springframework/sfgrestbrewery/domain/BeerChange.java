@@ -0,0 +1,25 @@
+package guru.springframework.sfgrestbrewery.domain;
+
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of the {@code beer_change} log: which beer a service write touched, and which instance wrote it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerChange {
+
+    private Long seq;
+    private Integer beerId;
+    private BeerChangedEvent.Type changeType;
+    private String instanceId;
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,31 @@
+package guru.springframework.sfgrestbrewery.domain;
+
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A row of the {@code beer_history} table: the price and quantity on hand of a beer before and after a change.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerHistoryEntry {
+
+    private Long id;
+    private Integer beerId;
+    private BeerChangedEvent.Type changeType;
+
+    private BigDecimal priceBefore;
+    private BigDecimal priceAfter;
+    private Integer quantityOnHandBefore;
+    private Integer quantityOnHandAfter;
+
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,26 @@
+package guru.springframework.sfgrestbrewery.domain;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of the {@code beer_reorder} outbox: a beer the reorder scan found below the threshold of its style.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerReorder {
+
+    private Long id;
+    private Integer beerId;
+    private BeerStyleEnum beerStyle;
+    private Integer quantityOnHand;
+    private Integer reorderThreshold;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,92 @@
+package guru.springframework.sfgrestbrewery.lifecycle;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs the work nobody waits for, like a delete whose caller doesn't get the outcome, and keeps track of it so
+ * shutdown can wait for it to finish ({@link GracefulShutdown}) instead of closing the connections underneath it.
+ */
+@Slf4j
+@Component
+public class BackgroundTasks {
+
+    private final Set<Disposable> running = ConcurrentHashMap.newKeySet();
+    private final Object idle = new Object();
+
+    /**
+     * Subscribes to {@code task}, errors are logged.
+     */
+    public void track(String name, Mono<?> task) {
+        TrackedTask tracked = new TrackedTask();
+        running.add(tracked);
+        tracked.subscription = task
+                .doOnError(e -> log.error("Background task {} failed", name, e))
+                .doFinally(signal -> finished(tracked))
+                .subscribe(value -> { }, e -> { });
+        if (tracked.finished) {
+            running.remove(tracked); //completed before the subscription was assigned
+        }
+    }
+
+    public int getRunning() {
+        return running.size();
+    }
+
+    /**
+     * Waits up to {@code timeout} for the running tasks to finish, cancels the ones that didn't and returns how many
+     * that were.
+     */
+    public int awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idle) {
+            while (!running.isEmpty()) {
+                long waitNanos = deadline - System.nanoTime();
+                if (waitNanos <= 0) {
+                    break;
+                }
+                idle.wait(Math.max(1, waitNanos / 1_000_000));
+            }
+        }
+
+        int unfinished = 0;
+        for (Disposable task : running) {
+            task.dispose();
+            unfinished++;
+        }
+        running.clear();
+        return unfinished;
+    }
+
+    private void finished(TrackedTask tracked) {
+        tracked.finished = true;
+        running.remove(tracked);
+        synchronized (idle) {
+            idle.notifyAll();
+        }
+    }
+
+    private static class TrackedTask implements Disposable {
+        volatile Disposable subscription;
+        volatile boolean finished;
+
+        @Override
+        public void dispose() {
+            Disposable current = subscription;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return finished;
+        }
+    }
+}
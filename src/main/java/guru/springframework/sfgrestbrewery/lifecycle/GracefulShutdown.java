@@ -0,0 +1,118 @@
+package guru.springframework.sfgrestbrewery.lifecycle;
+
+import guru.springframework.sfgrestbrewery.audit.BeerAuditLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * The order things stop in when the application is closed:
+ * <ol>
+ *     <li>The web server stops accepting connections and waits up to {@code spring.lifecycle.timeout-per-shutdown-phase}
+ *     for the requests in flight ({@code server.shutdown=graceful}), then stops.</li>
+ *     <li>The {@link BackgroundTasks} get up to {@code brewery.shutdown.task-timeout} to finish, the rest are
+ *     cancelled.</li>
+ *     <li>The history still queued in the {@link BeerAuditLog} is written, for up to
+ *     {@code brewery.shutdown.flush-timeout}.</li>
+ *     <li>Only then are the beans destroyed and with them the connection factory.</li>
+ * </ol>
+ * What made it and what didn't is counted in {@code brewery.shutdown.drained} and {@code brewery.shutdown.dropped},
+ * by {@code what} (requests, tasks, history), and logged.
+ */
+@Slf4j
+@Component
+public class GracefulShutdown implements SmartLifecycle {
+
+    /**
+     * After the web server's graceful shutdown ({@value SmartLifecycle#DEFAULT_PHASE}) and stop (one less).
+     */
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2;
+
+    private final InFlightRequests inFlightRequests;
+    private final BackgroundTasks backgroundTasks;
+    private final BeerAuditLog beerAuditLog;
+    private final MeterRegistry meterRegistry;
+    private final Duration taskTimeout;
+    private final Duration flushTimeout;
+
+    private static final Duration REQUEST_COMPLETION_GRACE = Duration.ofSeconds(1);
+
+    private volatile boolean running;
+
+    public GracefulShutdown(InFlightRequests inFlightRequests,
+                            BackgroundTasks backgroundTasks,
+                            BeerAuditLog beerAuditLog,
+                            MeterRegistry meterRegistry,
+                            @Value("${brewery.shutdown.task-timeout:PT10S}") Duration taskTimeout,
+                            @Value("${brewery.shutdown.flush-timeout:PT10S}") Duration flushTimeout) {
+        this.inFlightRequests = inFlightRequests;
+        this.backgroundTasks = backgroundTasks;
+        this.beerAuditLog = beerAuditLog;
+        this.meterRegistry = meterRegistry;
+        this.taskTimeout = taskTimeout;
+        this.flushTimeout = flushTimeout;
+    }
+
+    /**
+     * Published before any lifecycle is stopped, so the web server is still taking requests.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void onClose() {
+        inFlightRequests.startShutdown();
+        log.info("Shutting down with {} requests in flight and {} background tasks running",
+                inFlightRequests.get(), backgroundTasks.getRunning());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            //the server has stopped, whatever is still running won't get its response out
+            int requestsUnfinished = inFlightRequests.awaitIdle(REQUEST_COMPLETION_GRACE);
+            int requestsDrained = inFlightRequests.getFinishedSinceShutdown();
+            int requestsDropped = inFlightRequests.getCutOffSinceShutdown() + requestsUnfinished;
+            record("requests", requestsDrained, requestsDropped);
+
+            int tasksAtStop = backgroundTasks.getRunning();
+            int tasksDropped = backgroundTasks.awaitIdle(taskTimeout);
+            record("tasks", tasksAtStop - tasksDropped, tasksDropped);
+
+            int historyQueued = beerAuditLog.getQueued();
+            int historyDropped = beerAuditLog.drain(flushTimeout);
+            record("history", historyQueued - historyDropped, historyDropped);
+
+            log.info("Shutdown drained {} requests, {} background tasks and {} history records; dropped {}, {} and {}",
+                    requestsDrained, tasksAtStop - tasksDropped, historyQueued - historyDropped,
+                    requestsDropped, tasksDropped, historyDropped);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while draining, shutting down now");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void record(String what, int drained, int dropped) {
+        meterRegistry.counter("brewery.shutdown.drained", "what", what).increment(drained);
+        meterRegistry.counter("brewery.shutdown.dropped", "what", what).increment(dropped);
+    }
+}
@@ -0,0 +1,70 @@
+package guru.springframework.sfgrestbrewery.lifecycle;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the requests being handled, and once shutdown has begun how many of them finished and how many were cut
+ * off (cancelled, the connection was closed), for the report of {@link GracefulShutdown}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class InFlightRequests implements WebFilter {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger finishedSinceShutdown = new AtomicInteger();
+    private final AtomicInteger cutOffSinceShutdown = new AtomicInteger();
+    private volatile boolean shuttingDown;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return Mono.defer(() -> {
+            inFlight.incrementAndGet();
+            return chain.filter(exchange).doFinally(this::finished);
+        });
+    }
+
+    public int get() {
+        return inFlight.get();
+    }
+
+    void startShutdown() {
+        shuttingDown = true;
+    }
+
+    int getFinishedSinceShutdown() {
+        return finishedSinceShutdown.get();
+    }
+
+    int getCutOffSinceShutdown() {
+        return cutOffSinceShutdown.get();
+    }
+
+    /**
+     * Waits up to {@code timeout} for the requests to finish. The server may consider a response done as soon as
+     * it was written, a moment before the handler has completed.
+     */
+    int awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return inFlight.get();
+    }
+
+    private void finished(SignalType signal) {
+        inFlight.decrementAndGet();
+        if (shuttingDown) {
+            (signal == SignalType.CANCEL ? cutOffSinceShutdown : finishedSinceShutdown).incrementAndGet();
+        }
+    }
+}
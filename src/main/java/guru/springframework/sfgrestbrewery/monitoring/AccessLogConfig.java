@@ -0,0 +1,41 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * The access log: {@link AccessLogFilter} hands the requests to log to {@link AccessLogWriter} through an
+ * {@link AccessLogRing} of {@code brewery.access-log.buffer-size} entries.
+ */
+@Configuration
+@ConditionalOnProperty(name = "brewery.access-log.enabled", havingValue = "true", matchIfMissing = true)
+public class AccessLogConfig {
+
+    @Bean
+    AccessLogRing accessLogRing(@Value("${brewery.access-log.buffer-size:8192}") int bufferSize) {
+        return new AccessLogRing(bufferSize);
+    }
+
+    @Bean
+    AccessLogFilter accessLogFilter(AccessLogRing accessLogRing, MeterRegistry meterRegistry,
+                                    @Value("${brewery.access-log.sample-rate:1.0}") double sampleRate,
+                                    @Value("${brewery.access-log.slow-threshold:500ms}") Duration slowThreshold) {
+        return new AccessLogFilter(accessLogRing, sampleRate, slowThreshold.toNanos(), meterRegistry);
+    }
+
+    @Bean
+    @Lazy(false) //has to run for anything to be written
+    AccessLogWriter accessLogWriter(AccessLogRing accessLogRing,
+                                    @Value("${brewery.access-log.file:${LOG_PATH:${java.io.tmpdir}}/brewery-access.log}") String file,
+                                    @Value("${brewery.access-log.max-file-size:100MB}") DataSize maxFileSize,
+                                    @Value("${brewery.access-log.max-history:7}") int maxHistory) {
+        return new AccessLogWriter(accessLogRing, new AccessLogFile(file, maxFileSize, maxHistory));
+    }
+}
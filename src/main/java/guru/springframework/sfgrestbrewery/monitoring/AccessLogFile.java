@@ -0,0 +1,117 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.util.FileSize;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The file {@link AccessLogWriter} logs to: {@code brewery.access-log.file}, rolled daily and at
+ * {@code brewery.access-log.max-file-size}. The lines come formatted already and are written by an asynchronous
+ * appender that drops them rather than ever make the writer wait.
+ * <p>
+ * The appenders are added to the {@value AccessLogWriter#LOGGER_NAME} logger in code rather than in a logback
+ * configuration, which would replace Boot's and with it {@code logging.file.name} and {@code logging.file.path}.
+ * The applications of one JVM (the tests start several) share them, the first one to start sets the file.
+ */
+class AccessLogFile {
+
+    private static final int QUEUE_SIZE = 8192;
+
+    private static AsyncAppender appender; //guarded by the class, shared while users > 0
+    private static int users;
+
+    private final String file;
+    private final DataSize maxFileSize;
+    private final int maxHistory;
+
+    AccessLogFile(String file, DataSize maxFileSize, int maxHistory) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxHistory = maxHistory;
+    }
+
+    void open() {
+        ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+        if (!(loggerFactory instanceof LoggerContext)) {
+            return; //not logback, the lines go wherever that logging system sends them
+        }
+        synchronized (AccessLogFile.class) {
+            if (users++ > 0) {
+                return;
+            }
+            LoggerContext context = (LoggerContext) loggerFactory;
+            appender = asyncAppender(context, fileAppender(context));
+            Logger logger = context.getLogger(AccessLogWriter.LOGGER_NAME);
+            logger.addAppender(appender);
+            logger.setAdditive(false);
+        }
+    }
+
+    /**
+     * Detaches and stops the appenders once the last application is done with them, which writes out what is
+     * still queued.
+     */
+    void close() {
+        synchronized (AccessLogFile.class) {
+            if (appender == null || --users > 0) {
+                return;
+            }
+            Logger logger = appender.getContext() instanceof LoggerContext
+                    ? ((LoggerContext) appender.getContext()).getLogger(AccessLogWriter.LOGGER_NAME) : null;
+            if (logger != null) {
+                logger.detachAppender(appender);
+                logger.setAdditive(true);
+            }
+            appender.stop();
+            appender = null;
+        }
+    }
+
+    private RollingFileAppender<ILoggingEvent> fileAppender(LoggerContext context) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg%n");
+        encoder.setCharset(StandardCharsets.UTF_8);
+        encoder.start();
+
+        RollingFileAppender<ILoggingEvent> fileAppender = new RollingFileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setName("ACCESS_FILE");
+        fileAppender.setFile(file);
+        fileAppender.setEncoder(encoder);
+
+        SizeAndTimeBasedRollingPolicy<ILoggingEvent> rollingPolicy = new SizeAndTimeBasedRollingPolicy<>();
+        rollingPolicy.setContext(context);
+        rollingPolicy.setParent(fileAppender);
+        rollingPolicy.setFileNamePattern(file + ".%d{yyyy-MM-dd}.%i.gz");
+        rollingPolicy.setMaxFileSize(new FileSize(maxFileSize.toBytes()));
+        rollingPolicy.setMaxHistory(maxHistory);
+        rollingPolicy.start();
+
+        fileAppender.setRollingPolicy(rollingPolicy);
+        fileAppender.start();
+        return fileAppender;
+    }
+
+    private static AsyncAppender asyncAppender(LoggerContext context, RollingFileAppender<ILoggingEvent> fileAppender) {
+        AsyncAppender asyncAppender = new AsyncAppender();
+        asyncAppender.setContext(context);
+        asyncAppender.setName("ACCESS");
+        asyncAppender.setQueueSize(QUEUE_SIZE);
+        asyncAppender.setDiscardingThreshold(0);
+        asyncAppender.setNeverBlock(true);
+        asyncAppender.addAppender(fileAppender);
+        asyncAppender.start();
+        return asyncAppender;
+    }
+}
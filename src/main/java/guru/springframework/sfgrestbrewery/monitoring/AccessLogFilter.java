@@ -0,0 +1,124 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Puts every request that is logged (see {@link AccessLogWriter}) in the {@link AccessLogRing} for the writer to
+ * format and write. All it does on the event loop is fill in the fields of an entry the ring has allocated already,
+ * and when the ring is full it drops the entry rather than wait, counted in {@code brewery.access-log.dropped}.
+ * <p>
+ * The status of a request that failed is that of its exception, the error response is only made further out.
+ * The bytes are those of the body as the application wrote it, before the server compressed it.
+ */
+public class AccessLogFilter implements WebFilter, Ordered {
+
+    private final AccessLogRing ring;
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private final Counter dropped;
+
+    AccessLogFilter(AccessLogRing ring, double sampleRate, long slowThresholdNanos, MeterRegistry meterRegistry) {
+        this.ring = ring;
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.dropped = meterRegistry.counter("brewery.access-log.dropped");
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 2; //right after ServerTimingFilter, around everything else
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return Mono.defer(() -> {
+            long timestampMillis = System.currentTimeMillis();
+            long started = System.nanoTime();
+            CountingResponse response = new CountingResponse(exchange.getResponse());
+            Throwable[] failure = new Throwable[1];
+            return chain.filter(exchange.mutate().response(response).build())
+                    .doOnError(e -> failure[0] = e)
+                    .doFinally(signal -> log(exchange, response, signal, failure[0], timestampMillis,
+                            System.nanoTime() - started));
+        });
+    }
+
+    private void log(ServerWebExchange exchange, CountingResponse response, SignalType signal, Throwable failure,
+                     long timestampMillis, long latencyNanos) {
+        int status = statusOf(exchange.getResponse(), failure);
+        boolean alwaysLogged = status >= 400 || signal != SignalType.ON_COMPLETE || latencyNanos >= slowThresholdNanos;
+        if (!alwaysLogged && (sampleRate <= 0 || (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate))) {
+            return;
+        }
+
+        long position = ring.claim();
+        if (position < 0) {
+            dropped.increment();
+            return;
+        }
+        AccessLogRing.Entry entry = ring.entry(position);
+        entry.timestampMillis = timestampMillis;
+        entry.method = exchange.getRequest().getMethodValue();
+        Object route = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        entry.route = route != null ? route.toString() : null;
+        entry.path = exchange.getRequest().getPath();
+        entry.status = status;
+        entry.latencyNanos = latencyNanos;
+        entry.bytes = response.bytes;
+        entry.client = exchange.getRequest().getRemoteAddress();
+        entry.outcome = signal == SignalType.ON_COMPLETE ? AccessLogRing.Outcome.COMPLETED
+                : signal == SignalType.ON_ERROR ? AccessLogRing.Outcome.FAILED : AccessLogRing.Outcome.CANCELLED;
+        ring.publish(position);
+    }
+
+    private static int statusOf(ServerHttpResponse response, Throwable failure) {
+        if (failure != null && !response.isCommitted()) {
+            return failure instanceof ResponseStatusException ? ((ResponseStatusException) failure).getRawStatusCode() : 500;
+        }
+        Integer status = response.getRawStatusCode();
+        return status != null ? status : 200;
+    }
+
+    /**
+     * Counts the body bytes as they are written, keeping a single value body a {@link Mono} for the server.
+     */
+    private static class CountingResponse extends ServerHttpResponseDecorator {
+
+        private volatile long bytes;
+
+        CountingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(body instanceof Mono ? ((Mono<? extends DataBuffer>) body).doOnNext(this::count)
+                    : Flux.from(body).doOnNext(this::count));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body).map(chunk -> Flux.from(chunk).doOnNext(this::count)));
+        }
+
+        private void count(DataBuffer buffer) {
+            bytes += buffer.readableByteCount(); //one writer at a time
+        }
+    }
+}
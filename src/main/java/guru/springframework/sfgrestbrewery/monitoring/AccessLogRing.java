@@ -0,0 +1,117 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import org.springframework.http.server.RequestPath;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free ring of access log entries for many threads to add to and one to take from. The entries
+ * are allocated up front and filled in place, so adding one allocates nothing: {@link #claim} a position, fill in
+ * its {@link #entry} and {@link #publish} it. When the ring is full nothing can be claimed and the caller drops
+ * its entry.
+ * <p>
+ * Every slot has a sequence number saying whose turn it is: the position a writer may claim it at, that plus one
+ * once the entry is published, and the position of the next round once it was taken.
+ */
+final class AccessLogRing {
+
+    enum Outcome {
+        COMPLETED, FAILED, CANCELLED
+    }
+
+    static final class Entry {
+        long timestampMillis;
+        String method;
+        String route;
+        RequestPath path;
+        int status;
+        long latencyNanos;
+        long bytes;
+        InetSocketAddress client;
+        Outcome outcome;
+
+        private void clear() {
+            method = null;
+            route = null;
+            path = null;
+            client = null;
+            outcome = null;
+        }
+    }
+
+    private final Entry[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; //the reader's only
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    AccessLogRing(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        entries = new Entry[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * A position to fill in and publish, -1 if the ring is full.
+     */
+    long claim() {
+        long position = tail.get();
+        while (true) {
+            long lag = sequences.get((int) position & mask) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (lag < 0) {
+                return -1; //the reader hasn't taken this slot's entry of the last round yet
+            } else {
+                position = tail.get(); //another writer got there first
+            }
+        }
+    }
+
+    Entry entry(long position) {
+        return entries[(int) position & mask];
+    }
+
+    void publish(long position) {
+        sequences.lazySet((int) position & mask, position + 1);
+    }
+
+    /**
+     * Hands up to {@code max} published entries to {@code reader} in the order they were claimed, stopping at the
+     * first one still being filled in. Only ever to be called by one thread at a time.
+     */
+    int drain(Consumer<Entry> reader, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            Entry entry = entries[slot];
+            reader.accept(entry);
+            entry.clear();
+            sequences.lazySet(slot, head + entries.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,150 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes the entries of the {@link AccessLogRing} off it on a thread of its own, formats each as a line of JSON
+ * and logs it to {@value #LOGGER_NAME}, which writes to the {@link AccessLogFile} through an asynchronous
+ * appender, so neither the event loops nor this thread wait for the disk.
+ * <p>
+ * Every request that failed, had an error status, was cancelled or took at least
+ * {@code brewery.access-log.slow-threshold} is logged, of the others {@code brewery.access-log.sample-rate}.
+ * The ring is written out when the application stops, after the requests in flight have finished (see
+ * {@link guru.springframework.sfgrestbrewery.lifecycle.GracefulShutdown}).
+ */
+public class AccessLogWriter implements SmartLifecycle {
+
+    public static final String LOGGER_NAME = "brewery.access";
+
+    /**
+     * After {@link guru.springframework.sfgrestbrewery.lifecycle.GracefulShutdown}, once no more requests come.
+     */
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 3;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int DRAIN_BATCH = 256;
+
+    private final Logger accessLog = LoggerFactory.getLogger(LOGGER_NAME);
+    private final AccessLogRing ring;
+    private final AccessLogFile file;
+    private final StringBuilder line = new StringBuilder(256); //the writer thread's only
+
+    private volatile boolean running;
+    private Thread thread;
+
+    AccessLogWriter(AccessLogRing ring, AccessLogFile file) {
+        this.ring = ring;
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        file.open();
+        thread = new Thread(this::run, "access-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        file.close(); //writes out what is queued, the appender's thread won't keep an exiting application alive
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void run() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        while (drain() > 0) {
+            //what was logged before the stop
+        }
+    }
+
+    int drain() {
+        return ring.drain(this::write, DRAIN_BATCH);
+    }
+
+    private void write(AccessLogRing.Entry entry) {
+        if (accessLog.isInfoEnabled()) {
+            accessLog.info(format(entry));
+        }
+    }
+
+    String format(AccessLogRing.Entry entry) {
+        line.setLength(0);
+        line.append("{\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(entry.timestampMillis), line);
+        line.append("\",\"method\":\"").append(entry.method).append('"');
+        line.append(",\"route\":");
+        appendString(entry.route);
+        line.append(",\"path\":");
+        appendString(entry.path == null ? null : entry.path.value());
+        line.append(",\"status\":").append(entry.status);
+        line.append(",\"outcome\":\"").append(entry.outcome.name().toLowerCase(Locale.ROOT)).append('"');
+        line.append(",\"latencyMs\":").append(String.format(Locale.ROOT, "%.3f", entry.latencyNanos / 1_000_000.0));
+        line.append(",\"bytes\":").append(entry.bytes);
+        line.append(",\"client\":");
+        appendString(clientOf(entry.client));
+        return line.append('}').toString();
+    }
+
+    private static String clientOf(InetSocketAddress client) {
+        if (client == null) {
+            return null;
+        }
+        return client.getAddress() != null ? client.getAddress().getHostAddress() : client.getHostString();
+    }
+
+    private void appendString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,159 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the Netty event loops that serve HTTP requests.
+ * <p>
+ * Every loop runs a probe task every {@code interval}. How late the probe runs compared to when it was
+ * scheduled is the loop's scheduling lag, recorded in the {@code reactor.netty.eventloop.lag} timer tagged
+ * with the loop's thread name. A separate watchdog thread checks when each probe last ran; if a loop hasn't
+ * run its probe for longer than {@code stallThreshold} something is holding the loop, and the watchdog logs
+ * the loop thread's current stack trace so the blocking call can be found.
+ */
+@Slf4j
+public class EventLoopLagMonitor implements SmartLifecycle {
+
+    private final EventLoopGroup eventLoopGroup;
+    private final MeterRegistry meterRegistry;
+    private final long intervalNanos;
+    private final long stallThresholdNanos;
+
+    private final List<LoopProbe> probes = new CopyOnWriteArrayList<>(); //the watchdog reads it while stop() clears it
+    private ScheduledExecutorService watchdog;
+    private volatile boolean running;
+
+    public EventLoopLagMonitor(EventLoopGroup eventLoopGroup, MeterRegistry meterRegistry,
+                               Duration interval, Duration stallThreshold) {
+        this.eventLoopGroup = eventLoopGroup;
+        this.meterRegistry = meterRegistry;
+        this.intervalNanos = interval.toNanos();
+        this.stallThresholdNanos = stallThreshold.toNanos();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        for (EventExecutor executor : eventLoopGroup) {
+            LoopProbe probe = new LoopProbe(executor);
+            probes.add(probe);
+            probe.schedule();
+        }
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-loop-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkEvery = Math.max(stallThresholdNanos / 2, TimeUnit.MILLISECONDS.toNanos(10));
+        watchdog.scheduleWithFixedDelay(this::checkForStalls, checkEvery, checkEvery, TimeUnit.NANOSECONDS);
+
+        log.info("Monitoring {} event loops, probe interval {} ms, stall threshold {} ms", probes.size(),
+                TimeUnit.NANOSECONDS.toMillis(intervalNanos), TimeUnit.NANOSECONDS.toMillis(stallThresholdNanos));
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+        probes.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void checkForStalls() {
+        long now = System.nanoTime();
+        for (LoopProbe probe : probes) {
+            probe.checkStalled(now);
+        }
+    }
+
+    private class LoopProbe implements Runnable {
+        private final EventExecutor executor;
+
+        private Timer lag;
+        private Counter stalls;
+        private volatile Thread thread;
+        private volatile long scheduledAt;
+        private volatile long lastRun = System.nanoTime();
+        private volatile boolean stallReported;
+
+        LoopProbe(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        void schedule() {
+            scheduledAt = System.nanoTime() + intervalNanos;
+            executor.schedule(this, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            if (thread == null) {
+                Thread current = Thread.currentThread();
+                lag = Timer.builder("reactor.netty.eventloop.lag")
+                        .description("How late tasks scheduled on the event loop start running")
+                        .tag("loop", current.getName())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+                stalls = Counter.builder("reactor.netty.eventloop.stalls")
+                        .description("Times the event loop was held longer than the stall threshold")
+                        .tag("loop", current.getName())
+                        .register(meterRegistry);
+                thread = current; //last, once the watchdog sees the thread it uses the meters
+            }
+
+            lag.record(Math.max(0, now - scheduledAt), TimeUnit.NANOSECONDS);
+            if (stallReported) {
+                log.warn("Event loop {} is running again after {} ms", thread.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(now - lastRun));
+                stallReported = false;
+            }
+            lastRun = now;
+
+            if (running && !executor.isShuttingDown()) {
+                schedule();
+            }
+        }
+
+        void checkStalled(long now) {
+            Thread loopThread = thread;
+            long blockedFor = now - lastRun - intervalNanos;
+            if (loopThread == null || stallReported || blockedFor < stallThresholdNanos) {
+                return;
+            }
+            stallReported = true;
+            stalls.increment();
+
+            StringBuilder stack = new StringBuilder();
+            for (StackTraceElement element : loopThread.getStackTrace()) {
+                stack.append("\n\tat ").append(element);
+            }
+            log.warn("Event loop {} has been blocked for {} ms, it is currently executing:{}", loopThread.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(blockedFor), stack);
+        }
+    }
+}
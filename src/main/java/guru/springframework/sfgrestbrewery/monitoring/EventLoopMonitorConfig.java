@@ -0,0 +1,25 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpResources;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "brewery.eventloop.monitor.enabled", havingValue = "true", matchIfMissing = true)
+public class EventLoopMonitorConfig {
+
+    @Bean
+    EventLoopLagMonitor eventLoopLagMonitor(MeterRegistry meterRegistry,
+                                            @Value("${brewery.eventloop.monitor.interval:100ms}") Duration interval,
+                                            @Value("${brewery.eventloop.monitor.stall-threshold:500ms}") Duration stallThreshold) {
+        //the embedded Netty server runs on the global reactor-netty resources
+        return new EventLoopLagMonitor(HttpResources.get().onServer(LoopResources.DEFAULT_NATIVE),
+                meterRegistry, interval, stallThreshold);
+    }
+}
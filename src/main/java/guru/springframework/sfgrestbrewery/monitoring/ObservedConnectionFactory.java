@@ -0,0 +1,296 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.r2dbc.spi.Batch;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.ConnectionMetadata;
+import io.r2dbc.spi.IsolationLevel;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
+import io.r2dbc.spi.ValidationDepth;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import org.springframework.util.function.SingletonSupplier;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Times what the database costs a request: waiting for a connection as {@link RequestTimings.Phase#POOL} and
+ * statements, from execute until the database has answered, as {@link RequestTimings.Phase#DB}. Every statement
+ * also goes into the {@link QueryStatistics}.
+ * <p>
+ * Stands in for the connection pool it wraps, which Spring and the pool metrics still find by unwrapping.
+ */
+public class ObservedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory delegate;
+    private final Supplier<QueryStatistics> queryStatistics;
+
+    public ObservedConnectionFactory(ConnectionFactory delegate, Supplier<QueryStatistics> queryStatistics) {
+        this.delegate = delegate;
+        this.queryStatistics = SingletonSupplier.of(queryStatistics); //looked up once, on the first connection
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.deferContextual(context -> {
+            long started = System.nanoTime();
+            return Mono.from(delegate.create())
+                    .doOnNext(connection -> RequestTimings.record(context, RequestTimings.Phase.POOL,
+                            System.nanoTime() - started))
+                    .map(connection -> new ObservedConnection(connection, queryStatistics.get()));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegate;
+    }
+
+    @Override
+    public void dispose() {
+        if (delegate instanceof Disposable) {
+            ((Disposable) delegate).dispose();
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return delegate instanceof Disposable && ((Disposable) delegate).isDisposed();
+    }
+
+    private static class ObservedConnection implements Connection, Wrapped<Connection> {
+
+        private final Connection delegate;
+        private final QueryStatistics queryStatistics;
+
+        ObservedConnection(Connection delegate, QueryStatistics queryStatistics) {
+            this.delegate = delegate;
+            this.queryStatistics = queryStatistics;
+        }
+
+        @Override
+        public Statement createStatement(String sql) {
+            return new ObservedStatement(delegate.createStatement(sql), sql, queryStatistics);
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction() {
+            return delegate.beginTransaction();
+        }
+
+        @Override
+        public Publisher<Void> close() {
+            return delegate.close();
+        }
+
+        @Override
+        public Publisher<Void> commitTransaction() {
+            return delegate.commitTransaction();
+        }
+
+        @Override
+        public Batch createBatch() {
+            return delegate.createBatch();
+        }
+
+        @Override
+        public Publisher<Void> createSavepoint(String name) {
+            return delegate.createSavepoint(name);
+        }
+
+        @Override
+        public boolean isAutoCommit() {
+            return delegate.isAutoCommit();
+        }
+
+        @Override
+        public ConnectionMetadata getMetadata() {
+            return delegate.getMetadata();
+        }
+
+        @Override
+        public IsolationLevel getTransactionIsolationLevel() {
+            return delegate.getTransactionIsolationLevel();
+        }
+
+        @Override
+        public Publisher<Void> releaseSavepoint(String name) {
+            return delegate.releaseSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransaction() {
+            return delegate.rollbackTransaction();
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransactionToSavepoint(String name) {
+            return delegate.rollbackTransactionToSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> setAutoCommit(boolean autoCommit) {
+            return delegate.setAutoCommit(autoCommit);
+        }
+
+        @Override
+        public Publisher<Void> setTransactionIsolationLevel(IsolationLevel isolationLevel) {
+            return delegate.setTransactionIsolationLevel(isolationLevel);
+        }
+
+        @Override
+        public Publisher<Boolean> validate(ValidationDepth depth) {
+            return delegate.validate(depth);
+        }
+
+        @Override
+        public Connection unwrap() {
+            return delegate;
+        }
+    }
+
+    private static class ObservedStatement implements Statement, Wrapped<Statement> {
+
+        private final Statement delegate;
+        private final String sql;
+        private final QueryStatistics queryStatistics;
+
+        private final Map<String, Object> bindings = new LinkedHashMap<>(); //the first parameter set, for the slow log
+        private int parameterSets;
+        private boolean boundSinceAdd;
+
+        ObservedStatement(Statement delegate, String sql, QueryStatistics queryStatistics) {
+            this.delegate = delegate;
+            this.sql = sql;
+            this.queryStatistics = queryStatistics;
+        }
+
+        @Override
+        public Publisher<? extends Result> execute() {
+            return Flux.deferContextual(context -> {
+                QueryStatistics.Execution execution = queryStatistics.start(sql, bindings,
+                        Math.max(1, parameterSets + (boundSinceAdd ? 1 : 0)));
+                long started = System.nanoTime();
+                boolean[] answered = new boolean[1]; //the first result, or the end of a statement without any
+                Runnable answer = () -> {
+                    if (!answered[0]) {
+                        answered[0] = true;
+                        long nanos = System.nanoTime() - started;
+                        RequestTimings.record(context, RequestTimings.Phase.DB, nanos);
+                        if (execution != null) {
+                            execution.answered(nanos);
+                        }
+                    }
+                };
+                Flux<Result> results = Flux.<Result>from(delegate.execute())
+                        .doOnEach(signal -> answer.run());
+                if (execution == null) {
+                    return results.doFinally(signal -> answer.run());
+                }
+                return results.map(result -> (Result) new ObservedResult(result, execution))
+                        .doFinally(signal -> {
+                            answer.run();
+                            execution.finish();
+                        });
+            });
+        }
+
+        @Override
+        public Statement add() {
+            delegate.add();
+            parameterSets++;
+            boundSinceAdd = false;
+            return this;
+        }
+
+        @Override
+        public Statement bind(int index, Object value) {
+            delegate.bind(index, value);
+            return bound("$" + (index + 1), value);
+        }
+
+        @Override
+        public Statement bind(String name, Object value) {
+            delegate.bind(name, value);
+            return bound(name, value);
+        }
+
+        @Override
+        public Statement bindNull(int index, Class<?> type) {
+            delegate.bindNull(index, type);
+            return bound("$" + (index + 1), null);
+        }
+
+        @Override
+        public Statement bindNull(String name, Class<?> type) {
+            delegate.bindNull(name, type);
+            return bound(name, null);
+        }
+
+        private Statement bound(String placeholder, Object value) {
+            boundSinceAdd = true;
+            if (parameterSets == 0) {
+                bindings.put(placeholder, value);
+            }
+            return this;
+        }
+
+        @Override
+        public Statement returnGeneratedValues(String... columns) {
+            delegate.returnGeneratedValues(columns);
+            return this;
+        }
+
+        @Override
+        public Statement fetchSize(int rows) {
+            delegate.fetchSize(rows);
+            return this;
+        }
+
+        @Override
+        public Statement unwrap() {
+            return delegate;
+        }
+    }
+
+    /**
+     * Counts the rows a statement returned or changed.
+     */
+    private static class ObservedResult implements Result {
+
+        private final Result delegate;
+        private final QueryStatistics.Execution execution;
+
+        ObservedResult(Result delegate, QueryStatistics.Execution execution) {
+            this.delegate = delegate;
+            this.execution = execution;
+        }
+
+        @Override
+        public Publisher<Integer> getRowsUpdated() {
+            return Mono.from(delegate.getRowsUpdated())
+                    .doOnNext(execution::rows);
+        }
+
+        @Override
+        public <T> Publisher<T> map(BiFunction<Row, RowMetadata, ? extends T> mappingFunction) {
+            return Flux.<T>from(delegate.map(mappingFunction))
+                    .doOnNext(row -> execution.rows(1));
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.temporal.Temporal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Execution statistics by statement, fed by {@link ObservedConnectionFactory}: how often it ran, how long the
+ * database took to answer in total, at most and in the {@code brewery.query} histograms, and how many rows it
+ * returned or changed. Statements are told apart by their SQL with literals, parameters and the length of
+ * parameter lists taken out (see {@link #normalize}); past {@code brewery.query-stats.max-statements} of them new
+ * ones are counted as {@link #OTHER_STATEMENTS}.
+ * <p>
+ * Executions that took at least {@code brewery.query-stats.slow-threshold} are logged by their normalized SQL
+ * with their parameters, of which only numbers, booleans, enums and dates are shown. Strings and binary values
+ * could be anything and only have their length shown.
+ */
+@Slf4j
+public class QueryStatistics {
+
+    public static final String OTHER_STATEMENTS = "(other statements)";
+
+    private final boolean enabled;
+    private final long slowThresholdNanos;
+    private final int maxStatements;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Statistics> bySql = new ConcurrentHashMap<>();
+
+    QueryStatistics(boolean enabled, Duration slowThreshold, int maxStatements, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.maxStatements = maxStatements;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Value
+    @Builder
+    public static class QuerySummary {
+        String id;
+        String sql;
+        long count;
+        double totalMillis;
+        double meanMillis;
+        double maxMillis;
+        long rows;
+    }
+
+    /**
+     * One execution of a statement, from execute until it is done with.
+     */
+    class Execution {
+        private final Statistics statistics;
+        private final String sql;
+        private final Map<String, Object> bindings; //of the first parameter set, by placeholder
+        private final int parameterSets;
+        private long answeredNanos;
+        private final LongAdder rows = new LongAdder();
+
+        private Execution(Statistics statistics, String sql, Map<String, Object> bindings, int parameterSets) {
+            this.statistics = statistics;
+            this.sql = sql;
+            this.bindings = bindings;
+            this.parameterSets = parameterSets;
+        }
+
+        void answered(long nanos) {
+            answeredNanos = nanos;
+        }
+
+        void rows(long count) {
+            rows.add(count);
+            statistics.rows.add(count);
+        }
+
+        void finish() {
+            statistics.record(answeredNanos);
+            if (answeredNanos >= slowThresholdNanos) {
+                log.warn("Slow statement, {} ms, {} rows{}: {}{}", TimeUnit.NANOSECONDS.toMillis(answeredNanos),
+                        rows.sum(), parameterSets > 1 ? ", " + parameterSets + " parameter sets" : "", sql,
+                        bindings.isEmpty() ? "" : " " + redacted(bindings));
+            }
+        }
+    }
+
+    private static class Statistics {
+        private final String id;
+        private final String sql;
+        private final Timer timer;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder rows = new LongAdder();
+
+        private Statistics(String id, String sql, Timer timer) {
+            this.id = id;
+            this.sql = sql;
+            this.timer = timer;
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        QuerySummary summary() {
+            long executions = count.sum();
+            long total = totalNanos.sum();
+            return QuerySummary.builder()
+                    .id(id)
+                    .sql(sql)
+                    .count(executions)
+                    .totalMillis(total / 1_000_000.0)
+                    .meanMillis(executions == 0 ? 0 : total / 1_000_000.0 / executions)
+                    .maxMillis(maxNanos.get() / 1_000_000.0)
+                    .rows(rows.sum())
+                    .build();
+        }
+    }
+
+    /**
+     * Starts an execution of {@code sql}, null when statistics are off.
+     */
+    Execution start(String sql, Map<String, Object> bindings, int parameterSets) {
+        if (!enabled) {
+            return null;
+        }
+        String normalized = normalize(sql); //also what the slow log shows, literals written into the SQL are values too
+        return new Execution(statisticsFor(normalized), normalized, bindings, parameterSets);
+    }
+
+    public List<QuerySummary> top(int limit) {
+        return bySql.values().stream()
+                .map(Statistics::summary)
+                .sorted(Comparator.comparingDouble(QuerySummary::getTotalMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Starts over, the histograms keep counting.
+     */
+    public void reset() {
+        bySql.clear();
+    }
+
+    private Statistics statisticsFor(String normalized) {
+        Statistics statistics = bySql.get(normalized);
+        if (statistics != null) {
+            return statistics;
+        }
+        String key = bySql.size() < maxStatements ? normalized : OTHER_STATEMENTS;
+        return bySql.computeIfAbsent(key, sql -> {
+            String id = String.format("%08x", sql.hashCode()); //the same on every instance
+            return new Statistics(id, sql, Timer.builder("brewery.query")
+                    .tag("query", id)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        });
+    }
+
+    /**
+     * {@code sql} with runs of whitespace made single spaces, string and number literals and parameters of any
+     * kind made {@code ?}, and lists of them made a single one, so {@code WHERE id IN ($1, $2, $3)} and
+     * {@code WHERE id IN (17, 42)} are the same statement.
+     */
+    static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+            } else if (c == '\'') {
+                i = skipString(sql, i);
+                appendParameter(normalized);
+            } else if ((c == '$' || c == ':') && i + 1 < sql.length() && Character.isLetterOrDigit(sql.charAt(i + 1))) {
+                i++;
+                while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+                    i++;
+                }
+                appendParameter(normalized);
+            } else if (c == '?' || (Character.isDigit(c) && !partOfIdentifier(normalized))) {
+                i++;
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                appendParameter(normalized);
+            } else {
+                normalized.append(c);
+                i++;
+            }
+        }
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == ' ') {
+            end--;
+        }
+        normalized.setLength(end);
+        return normalized.toString();
+    }
+
+    private static int skipString(String sql, int quote) {
+        int i = quote + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2; //an escaped quote
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean partOfIdentifier(StringBuilder normalized) {
+        if (normalized.length() == 0) {
+            return false;
+        }
+        char previous = normalized.charAt(normalized.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_';
+    }
+
+    /**
+     * A {@code ?}, unless it continues a list of them.
+     */
+    private static void appendParameter(StringBuilder normalized) {
+        int end = normalized.length();
+        if (end >= 2 && normalized.charAt(end - 1) == ' ' && normalized.charAt(end - 2) == ',') {
+            end -= 2;
+        } else if (end >= 1 && normalized.charAt(end - 1) == ',') {
+            end -= 1;
+        } else {
+            normalized.append('?');
+            return;
+        }
+        if (end >= 1 && normalized.charAt(end - 1) == '?') {
+            normalized.setLength(end);
+        } else {
+            normalized.append('?');
+        }
+    }
+
+    static String redacted(Map<String, Object> bindings) {
+        return bindings.entrySet().stream()
+                .map(binding -> binding.getKey() + "=" + redacted(binding.getValue()))
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private static String redacted(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Enum
+                || value instanceof Temporal) {
+            return String.valueOf(value);
+        }
+        if (value instanceof CharSequence) {
+            return "'***' (" + ((CharSequence) value).length() + " chars)";
+        }
+        if (value instanceof byte[]) {
+            return "*** (" + ((byte[]) value).length + " bytes)";
+        }
+        return value.getClass().getSimpleName().toLowerCase(Locale.ROOT) + " ***";
+    }
+}
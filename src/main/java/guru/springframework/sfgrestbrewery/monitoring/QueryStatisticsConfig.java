@@ -0,0 +1,71 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+
+import java.time.Duration;
+
+/**
+ * Observes the auto-configured connection factory (see {@link ObservedConnectionFactory}) for the
+ * {@link QueryStatistics} and the {@code Server-Timing} breakdown, and publishes the statistics as the
+ * {@code queries} actuator endpoint.
+ * <p>
+ * The connection factory is wrapped before anything else wraps it, so with {@code brewery.replica.enabled} only
+ * the primary is observed. Neither are the beer shards of {@code brewery.sharding}, which have connection
+ * factories of their own.
+ */
+@Configuration
+public class QueryStatisticsConfig {
+
+    @Bean
+    QueryStatistics queryStatistics(MeterRegistry meterRegistry,
+                                    @Value("${brewery.query-stats.enabled:true}") boolean enabled,
+                                    @Value("${brewery.query-stats.slow-threshold:100ms}") Duration slowThreshold,
+                                    @Value("${brewery.query-stats.max-statements:200}") int maxStatements) {
+        return new QueryStatistics(enabled, slowThreshold, maxStatements, meterRegistry);
+    }
+
+    @Bean
+    QueryStatisticsEndpoint queryStatisticsEndpoint(QueryStatistics queryStatistics,
+                                                    @Value("${brewery.query-stats.top:10}") int defaultTop) {
+        return new QueryStatisticsEndpoint(queryStatistics, defaultTop);
+    }
+
+    /**
+     * The statistics are only looked up once the first connection is made, after the meter registry is ready.
+     */
+    @Bean
+    static BeanPostProcessor observedConnectionFactoryPostProcessor(ObjectProvider<QueryStatistics> queryStatistics) {
+        return new ObservedConnectionFactoryPostProcessor(queryStatistics);
+    }
+
+    private static class ObservedConnectionFactoryPostProcessor implements BeanPostProcessor, PriorityOrdered {
+
+        private final ObjectProvider<QueryStatistics> queryStatistics;
+
+        ObservedConnectionFactoryPostProcessor(ObjectProvider<QueryStatistics> queryStatistics) {
+            this.queryStatistics = queryStatistics;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if ("connectionFactory".equals(beanName) && bean instanceof ConnectionFactory
+                    && !(bean instanceof ObservedConnectionFactory)) {
+                return new ObservedConnectionFactory((ConnectionFactory) bean, queryStatistics::getObject);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE; //still before every post processor that isn't PriorityOrdered
+        }
+    }
+}
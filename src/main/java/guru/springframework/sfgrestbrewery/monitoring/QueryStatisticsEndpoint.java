@@ -0,0 +1,34 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * {@code /actuator/queries}: the statements that took the database the most time in total, {@code ?top=n} of
+ * them. A delete starts the statistics over.
+ */
+@Endpoint(id = "queries")
+public class QueryStatisticsEndpoint {
+
+    private final QueryStatistics queryStatistics;
+    private final int defaultTop;
+
+    QueryStatisticsEndpoint(QueryStatistics queryStatistics, int defaultTop) {
+        this.queryStatistics = queryStatistics;
+        this.defaultTop = defaultTop;
+    }
+
+    @ReadOperation
+    public List<QueryStatistics.QuerySummary> queries(@Nullable Integer top) {
+        return queryStatistics.top(top != null ? top : defaultTop);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        queryStatistics.reset();
+    }
+}
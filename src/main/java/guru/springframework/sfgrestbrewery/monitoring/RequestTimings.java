@@ -0,0 +1,113 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import reactor.core.publisher.SynchronousSink;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Where the time of one request went, by {@link Phase}, added up by whatever does the work and carried to it in the
+ * Reactor context by {@link ServerTimingFilter}. Outside a sampled request there is nothing in the context and
+ * recording does nothing.
+ */
+public final class RequestTimings {
+
+    public enum Phase {
+        /** waiting for a connection from the pool */
+        POOL,
+        /** statements, from execute until the database has answered */
+        DB,
+        /** between entities and DTOs, see {@link guru.springframework.sfgrestbrewery.web.mappers.BeerMapper} */
+        MAP,
+        /** of request bodies */
+        VALIDATE,
+        /** of response bodies, see {@link TimedJackson2JsonEncoder} */
+        ENCODE;
+
+        final String metricName = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final String CONTEXT_KEY = RequestTimings.class.getName();
+
+    private final long startedNanos = System.nanoTime();
+    private final long[] nanos = new long[Phase.values().length];
+
+    RequestTimings() {
+    }
+
+    public static Context with(Context context, RequestTimings timings) {
+        return context.put(CONTEXT_KEY, timings);
+    }
+
+    public static void record(ContextView context, Phase phase, long nanos) {
+        RequestTimings timings = context.getOrDefault(CONTEXT_KEY, null);
+        if (timings != null) {
+            timings.add(phase, nanos);
+        }
+    }
+
+    /**
+     * {@code mapping} for {@code handle}, timed as {@code phase}.
+     */
+    public static <T, R> BiConsumer<T, SynchronousSink<R>> timed(Phase phase, Function<T, R> mapping) {
+        return (value, sink) -> {
+            long started = System.nanoTime();
+            R mapped;
+            try {
+                mapped = mapping.apply(value);
+            } finally {
+                record(sink.currentContext(), phase, System.nanoTime() - started);
+            }
+            if (mapped != null) {
+                sink.next(mapped);
+            }
+        };
+    }
+
+    /**
+     * {@code check} for {@code handle}, timed as {@code phase}, passing on what it was given if it didn't throw.
+     */
+    public static <T> BiConsumer<T, SynchronousSink<T>> timedCheck(Phase phase, Consumer<T> check) {
+        return timed(phase, value -> {
+            check.accept(value);
+            return value;
+        });
+    }
+
+    synchronized void add(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()] += nanos;
+    }
+
+    synchronized long get(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startedNanos;
+    }
+
+    /**
+     * The {@code Server-Timing} header value, in milliseconds, phases that took no time left out.
+     */
+    synchronized String toHeaderValue() {
+        StringBuilder header = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (nanos[phase.ordinal()] > 0) {
+                appendMetric(header, phase.metricName, nanos[phase.ordinal()]);
+            }
+        }
+        appendMetric(header, "total", elapsedNanos());
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+}
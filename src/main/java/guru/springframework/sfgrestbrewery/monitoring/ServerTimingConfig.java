@@ -0,0 +1,36 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Sets up the {@code Server-Timing} breakdown of {@link ServerTimingFilter}: JSON responses are encoded by
+ * {@link TimedJackson2JsonEncoder}, pool and database time come from the connection factory observed by
+ * {@link QueryStatisticsConfig}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "brewery.server-timing.enabled", havingValue = "true", matchIfMissing = true)
+public class ServerTimingConfig {
+
+    @Bean
+    ServerTimingFilter serverTimingFilter(MeterRegistry meterRegistry,
+                                          @Value("${brewery.server-timing.sample-rate:1.0}") double sampleRate,
+                                          @Value("${brewery.server-timing.header:true}") boolean sendHeader) {
+        return new ServerTimingFilter(sampleRate, sendHeader, meterRegistry);
+    }
+
+    /**
+     * After Boot's own Jackson customizer, whose encoder it replaces.
+     */
+    @Bean
+    @Order(1)
+    CodecCustomizer timedJacksonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> configurer.defaultCodecs().jackson2JsonEncoder(new TimedJackson2JsonEncoder(objectMapper));
+    }
+}
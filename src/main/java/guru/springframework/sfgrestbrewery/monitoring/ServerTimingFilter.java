@@ -0,0 +1,94 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.Ordered;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases of a sample of {@code brewery.server-timing.sample-rate} of the requests (see
+ * {@link RequestTimings}), answers them with a {@code Server-Timing} header and records the phases in the
+ * {@code brewery.request.phase} histograms, by route and phase.
+ * <p>
+ * The header goes out with the response headers, so it has what happened until then: all of it for single
+ * objects, which are encoded before the headers are sent, the part before the first element for streamed bodies.
+ * The histograms get the whole request.
+ */
+public class ServerTimingFilter implements WebFilter, Ordered {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final String UNMATCHED_ROUTE = "UNMATCHED";
+
+    private final double sampleRate;
+    private final boolean sendHeader;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer[]> timersByRoute = new ConcurrentHashMap<>();
+
+    ServerTimingFilter(double sampleRate, boolean sendHeader, MeterRegistry meterRegistry) {
+        this.sampleRate = sampleRate;
+        this.sendHeader = sendHeader;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1; //right after InFlightRequests, around everything else
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return chain.filter(exchange);
+        }
+
+        RequestTimings timings = new RequestTimings();
+        if (sendHeader) {
+            exchange.getResponse().beforeCommit(() -> {
+                exchange.getResponse().getHeaders().set(SERVER_TIMING_HEADER, timings.toHeaderValue());
+                return Mono.empty();
+            });
+        }
+        return chain.filter(exchange)
+                .contextWrite(context -> RequestTimings.with(context, timings))
+                .doFinally(signal -> record(exchange, timings));
+    }
+
+    private void record(ServerWebExchange exchange, RequestTimings timings) {
+        Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String route = exchange.getRequest().getMethodValue() + " " + (pattern != null ? pattern.toString() : UNMATCHED_ROUTE);
+
+        Timer[] timers = timersByRoute.computeIfAbsent(route, this::timers);
+        for (RequestTimings.Phase phase : RequestTimings.Phase.values()) {
+            timers[phase.ordinal()].record(timings.get(phase), TimeUnit.NANOSECONDS);
+        }
+        timers[timers.length - 1].record(timings.elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private Timer[] timers(String route) {
+        RequestTimings.Phase[] phases = RequestTimings.Phase.values();
+        Timer[] timers = new Timer[phases.length + 1];
+        for (RequestTimings.Phase phase : phases) {
+            timers[phase.ordinal()] = timer(route, phase.metricName);
+        }
+        timers[phases.length] = timer(route, "total");
+        return timers;
+    }
+
+    private Timer timer(String route, String phase) {
+        return Timer.builder("brewery.request.phase")
+                .tag("route", route)
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,40 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Records the time spent encoding single object responses as {@link RequestTimings.Phase#ENCODE}. Streamed
+ * bodies are encoded element by element as the elements come, which isn't told apart from waiting for them.
+ */
+public class TimedJackson2JsonEncoder extends Jackson2JsonEncoder {
+
+    public TimedJackson2JsonEncoder(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        if (!(inputStream instanceof Mono)) {
+            return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+        }
+        return Mono.from(inputStream)
+                .flatMap(value -> Mono.deferContextual(context -> {
+                    long started = System.nanoTime();
+                    DataBuffer encoded = encodeValue(value, bufferFactory, elementType, mimeType, hints);
+                    RequestTimings.record(context, RequestTimings.Phase.ENCODE, System.nanoTime() - started);
+                    return Mono.just(encoded);
+                }))
+                .flux();
+    }
+}
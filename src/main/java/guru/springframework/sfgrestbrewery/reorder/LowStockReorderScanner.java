@@ -0,0 +1,184 @@
+package guru.springframework.sfgrestbrewery.reorder;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.domain.BeerReorder;
+import guru.springframework.sfgrestbrewery.lifecycle.BackgroundTasks;
+import guru.springframework.sfgrestbrewery.replication.ReadRouting;
+import guru.springframework.sfgrestbrewery.repositories.BeerReorderOutbox;
+import guru.springframework.sfgrestbrewery.repositories.BeerTableScanner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the beers whose quantity on hand is below the threshold of their style ({@link ReorderThresholds}) and
+ * writes a reorder for each to the {@code beer_reorder} outbox, then publishes it on {@link #reorders()}.
+ * <p>
+ * Runs every {@code brewery.reorder.interval}. The table is read in keyset batches of
+ * {@code brewery.reorder.batch-size} from the replica if there is one, and up to {@code brewery.reorder.concurrency}
+ * batches are written to the outbox at a time. The scan is paced to at most {@code brewery.reorder.max-rows-per-second}
+ * so it never takes more of the database than that from the request path. A beer that was reordered within
+ * {@code brewery.reorder.suppress-for} is not reordered again.
+ * <p>
+ * Metrics: {@code brewery.reorder.scan} (run time), {@code brewery.reorder.rows.scanned},
+ * {@code brewery.reorder.reorders} and {@code brewery.reorder.scan.rows.per.second} of the last run.
+ */
+@Slf4j
+@Component
+public class LowStockReorderScanner {
+
+    private final BeerTableScanner beerTableScanner;
+    private final BeerReorderOutbox outbox;
+    private final ReorderThresholds thresholds;
+    private final BackgroundTasks backgroundTasks;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final int concurrency;
+    private final int maxRowsPerSecond;
+    private final Duration suppressFor;
+
+    private final Sinks.Many<BeerReorder> reorders = Sinks.many().multicast().directBestEffort();
+    private final AtomicBoolean scanning = new AtomicBoolean();
+
+    private final Timer scanTimer;
+    private final Counter rowsScanned;
+    private final Counter reordersCreated;
+    private final AtomicLong lastRowsPerSecond = new AtomicLong();
+
+    public LowStockReorderScanner(BeerTableScanner beerTableScanner,
+                                  BeerReorderOutbox outbox,
+                                  ReorderThresholds thresholds,
+                                  BackgroundTasks backgroundTasks,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${brewery.reorder.enabled:true}") boolean enabled,
+                                  @Value("${brewery.reorder.batch-size:500}") int batchSize,
+                                  @Value("${brewery.reorder.concurrency:2}") int concurrency,
+                                  @Value("${brewery.reorder.max-rows-per-second:5000}") int maxRowsPerSecond,
+                                  @Value("${brewery.reorder.suppress-for:PT24H}") Duration suppressFor) {
+        this.beerTableScanner = beerTableScanner;
+        this.outbox = outbox;
+        this.thresholds = thresholds;
+        this.backgroundTasks = backgroundTasks;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.suppressFor = suppressFor;
+
+        this.scanTimer = meterRegistry.timer("brewery.reorder.scan");
+        this.rowsScanned = meterRegistry.counter("brewery.reorder.rows.scanned");
+        this.reordersCreated = meterRegistry.counter("brewery.reorder.reorders");
+        meterRegistry.gauge("brewery.reorder.scan.rows.per.second", lastRowsPerSecond);
+    }
+
+    @Scheduled(initialDelayString = "${brewery.reorder.interval:PT1H}", fixedDelayString = "${brewery.reorder.interval:PT1H}")
+    public void scheduledScan() {
+        if (enabled) {
+            backgroundTasks.track("reorder scan", scan()); //so shutdown waits for the outbox writes
+        }
+    }
+
+    /**
+     * The reorders of the scans from now on. Subscribers that can't keep up miss reorders, the outbox has them all.
+     */
+    public Flux<BeerReorder> reorders() {
+        return reorders.asFlux();
+    }
+
+    /**
+     * Runs one scan, unless one is running already, and completes with the number of reorders it created.
+     */
+    public Mono<Long> scan() {
+        if (!scanning.compareAndSet(false, true)) {
+            return Mono.empty(); //one scan at a time
+        }
+
+        long started = System.nanoTime();
+        LocalDateTime suppressedSince = LocalDateTime.now().minus(suppressFor);
+        AtomicLong rows = new AtomicLong();
+
+        return beerTableScanner.scanBatches(batchSize)
+                .contextWrite(ReadRouting::preferReplica)
+                .concatMap(batch -> pace(started, rows.addAndGet(batch.size())).thenReturn(batch))
+                .flatMap(batch -> reorder(batch, suppressedSince), concurrency)
+                .reduce(0L, Long::sum)
+                .doOnNext(created -> {
+                    long elapsed = System.nanoTime() - started;
+                    scanTimer.record(Duration.ofNanos(elapsed));
+                    rowsScanned.increment(rows.get());
+                    lastRowsPerSecond.set(elapsed == 0 ? 0 : rows.get() * 1_000_000_000L / elapsed);
+                    log.debug("Reorder scan read {} beers in {} ms, {} reorders", rows.get(), elapsed / 1_000_000, created);
+                })
+                .doOnError(e -> log.error("Reorder scan failed", e))
+                .doFinally(signal -> scanning.set(false));
+    }
+
+    /**
+     * Holds the next batch back until reading {@code rows} rows since {@code started} is within the budget.
+     */
+    private Mono<Void> pace(long started, long rows) {
+        if (maxRowsPerSecond <= 0) {
+            return Mono.empty();
+        }
+        long dueNanos = rows * 1_000_000_000L / maxRowsPerSecond;
+        long waitNanos = dueNanos - (System.nanoTime() - started);
+        return waitNanos <= 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(waitNanos)).then();
+    }
+
+    private Mono<Long> reorder(List<Beer> batch, LocalDateTime suppressedSince) {
+        List<Beer> lowStock = batch.stream()
+                .filter(this::isBelowThreshold)
+                .collect(Collectors.toList());
+        if (lowStock.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        Set<Integer> ids = lowStock.stream().map(Beer::getId).collect(Collectors.toSet());
+        return outbox.reorderedSince(ids, suppressedSince)
+                .collect(Collectors.toCollection(HashSet::new))
+                .flatMap(alreadyReordered -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    List<BeerReorder> created = lowStock.stream()
+                            .filter(beer -> !alreadyReordered.contains(beer.getId()))
+                            .map(beer -> BeerReorder.builder()
+                                    .beerId(beer.getId())
+                                    .beerStyle(beer.getBeerStyle())
+                                    .quantityOnHand(beer.getQuantityOnHand())
+                                    .reorderThreshold(thresholds.thresholdFor(beer.getBeerStyle()))
+                                    .createdAt(now)
+                                    .build())
+                            .collect(Collectors.toList());
+
+                    return outbox.appendAll(created)
+                            .then(Mono.fromSupplier(() -> {
+                                reordersCreated.increment(created.size());
+                                synchronized (reorders) { //batches finish on different threads
+                                    created.forEach(reorders::tryEmitNext);
+                                }
+                                return (long) created.size();
+                            }));
+                });
+    }
+
+    private boolean isBelowThreshold(Beer beer) {
+        //beers without a quantity on hand aren't stocked by us
+        return beer.getQuantityOnHand() != null && beer.getQuantityOnHand() < thresholds.thresholdFor(beer.getBeerStyle());
+    }
+}
@@ -0,0 +1,31 @@
+package guru.springframework.sfgrestbrewery.reorder;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The quantity on hand below which a beer is reordered, per style: {@code brewery.reorder.threshold.IPA=25}, and
+ * {@code brewery.reorder.threshold.default} (10) for the styles without one. A threshold of 0 turns reorders off
+ * for the style.
+ */
+@Component
+public class ReorderThresholds {
+
+    private final Map<BeerStyleEnum, Integer> thresholds = new EnumMap<>(BeerStyleEnum.class);
+    private final int defaultThreshold;
+
+    public ReorderThresholds(Environment environment) {
+        this.defaultThreshold = environment.getProperty("brewery.reorder.threshold.default", Integer.class, 10);
+        for (BeerStyleEnum style : BeerStyleEnum.values()) {
+            thresholds.put(style, environment.getProperty("brewery.reorder.threshold." + style.name(), Integer.class, defaultThreshold));
+        }
+    }
+
+    public int thresholdFor(BeerStyleEnum style) {
+        return style == null ? defaultThreshold : thresholds.get(style);
+    }
+}
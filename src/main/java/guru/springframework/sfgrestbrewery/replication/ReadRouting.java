@@ -0,0 +1,34 @@
+package guru.springframework.sfgrestbrewery.replication;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Which database a query should run on, carried in the Reactor context. Reads opt in to the replica with
+ * {@code .contextWrite(ReadRouting::preferReplica)}; everything else, and any read from a client that was pinned to
+ * the primary by {@link ReadYourWritesFilter}, runs on the primary.
+ */
+public final class ReadRouting {
+
+    public enum Role {
+        PRIMARY, REPLICA
+    }
+
+    private static final String ROLE_KEY = ReadRouting.class.getName() + ".role";
+    private static final String PINNED_KEY = ReadRouting.class.getName() + ".pinned";
+
+    private ReadRouting() {
+    }
+
+    public static Context preferReplica(Context context) {
+        return context.hasKey(PINNED_KEY) ? context : context.put(ROLE_KEY, Role.REPLICA);
+    }
+
+    public static Context pinToPrimary(Context context) {
+        return context.put(PINNED_KEY, Boolean.TRUE);
+    }
+
+    static Role roleOf(ContextView context) {
+        return context.getOrDefault(ROLE_KEY, Role.PRIMARY);
+    }
+}
@@ -0,0 +1,56 @@
+package guru.springframework.sfgrestbrewery.replication;
+
+import guru.springframework.sfgrestbrewery.cache.ExpiringLruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Read-your-writes for clients that identify themselves with {@code brewery.replica.client-id-header}: for
+ * {@code brewery.replica.read-your-writes-window} after a write all requests of that client read from the primary,
+ * so they see the write even while the replica is behind.
+ */
+@Component
+@ConditionalOnProperty(value = "brewery.replica.enabled", havingValue = "true")
+public class ReadYourWritesFilter implements WebFilter {
+
+    private final String clientIdHeader;
+    private final ExpiringLruCache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(@Value("${brewery.replica.client-id-header:X-Client-Id}") String clientIdHeader,
+                                @Value("${brewery.replica.read-your-writes-window:PT5S}") Duration window,
+                                @Value("${brewery.replica.max-tracked-clients:100000}") int maxTrackedClients) {
+        this.clientIdHeader = clientIdHeader;
+        this.recentWriters = new ExpiringLruCache<>(maxTrackedClients, window);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String clientId = exchange.getRequest().getHeaders().getFirst(clientIdHeader);
+        if (clientId == null) {
+            return chain.filter(exchange);
+        }
+
+        HttpMethod method = exchange.getRequest().getMethod();
+        boolean write = method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS;
+        if (write) {
+            recentWriters.put(clientId, Boolean.TRUE);
+        }
+        if (!write && recentWriters.get(clientId) == null) {
+            return chain.filter(exchange);
+        }
+
+        Mono<Void> handled = chain.filter(exchange);
+        if (write) {
+            handled = handled.doOnSuccess(done -> recentWriters.put(clientId, Boolean.TRUE)); //the window starts once it is written
+        }
+        return handled.contextWrite(ReadRouting::pinToPrimary);
+    }
+}
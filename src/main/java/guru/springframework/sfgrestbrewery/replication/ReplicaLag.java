@@ -0,0 +1,47 @@
+package guru.springframework.sfgrestbrewery.replication;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * How far the replica is behind: the changes written to the primary and not applied to the replica yet, oldest
+ * first. The replica is only read from once it has been copied and while its oldest missing change is younger than
+ * {@code brewery.replica.max-lag}.
+ */
+public class ReplicaLag {
+
+    private final long maxLagNanos;
+    private final Queue<Long> pendingSince = new ConcurrentLinkedQueue<>(); //changes are applied in order
+
+    private volatile boolean copied;
+
+    public ReplicaLag(Duration maxLag) {
+        this.maxLagNanos = maxLag.toNanos();
+    }
+
+    void markCopied() {
+        copied = true;
+    }
+
+    void changePending() {
+        pendingSince.add(System.nanoTime());
+    }
+
+    void changeApplied() {
+        pendingSince.poll();
+    }
+
+    public Duration getLag() {
+        Long oldest = pendingSince.peek();
+        return oldest == null ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldest);
+    }
+
+    public boolean isReadable() {
+        if (!copied) {
+            return false;
+        }
+        Long oldest = pendingSince.peek();
+        return oldest == null || System.nanoTime() - oldest < maxLagNanos;
+    }
+}
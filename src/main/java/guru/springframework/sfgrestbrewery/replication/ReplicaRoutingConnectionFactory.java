@@ -0,0 +1,61 @@
+package guru.springframework.sfgrestbrewery.replication;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Hands out replica connections to queries whose context prefers the replica, as long as the replica is in sync
+ * closely enough; primary connections to everything else.
+ */
+public class ReplicaRoutingConnectionFactory extends AbstractRoutingConnectionFactory implements Disposable {
+
+    private final ConnectionFactory primary;
+    private final ConnectionFactory replica;
+    private final ReplicaLag replicaLag;
+
+    public ReplicaRoutingConnectionFactory(ConnectionFactory primary, ConnectionFactory replica, ReplicaLag replicaLag) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaLag = replicaLag;
+
+        setTargetConnectionFactories(Map.of(ReadRouting.Role.PRIMARY, primary, ReadRouting.Role.REPLICA, replica));
+        setDefaultTargetConnectionFactory(primary);
+        afterPropertiesSet();
+    }
+
+    public ConnectionFactory getPrimary() {
+        return primary;
+    }
+
+    public ConnectionFactory getReplica() {
+        return replica;
+    }
+
+    public ReplicaLag getReplicaLag() {
+        return replicaLag;
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> Mono.just(
+                ReadRouting.roleOf(context) == ReadRouting.Role.REPLICA && replicaLag.isReadable()
+                        ? ReadRouting.Role.REPLICA
+                        : ReadRouting.Role.PRIMARY));
+    }
+
+    /**
+     * Stands in for the connection pool it replaced, which is disposed when the context closes.
+     */
+    @Override
+    public void dispose() {
+        for (ConnectionFactory target : new ConnectionFactory[]{primary, replica}) {
+            if (target instanceof Disposable) {
+                ((Disposable) target).dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package guru.springframework.sfgrestbrewery.replication;
+
+import guru.springframework.sfgrestbrewery.cache.BeerNearCache;
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerStorageFormat;
+import guru.springframework.sfgrestbrewery.services.BeerChangeFeedEvent;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Stands in for database replication between the two H2 databases: copies the beer table to the replica once the
+ * application is ready, then re-copies every beer that changes, on this instance or (through the change feed) any
+ * other. Changes are applied in order, each one no earlier than {@code brewery.replica.lag} after it was made, to
+ * simulate a replica that is behind.
+ * <p>
+ * A beer is evicted from the {@link BeerNearCache} again once its change reached the replica, a lookup served by
+ * the replica in the meantime may have cached the old row.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+@ConditionalOnProperty(value = "brewery.replica.enabled", havingValue = "true")
+public class ReplicaSync {
+
+    private static class PendingChange {
+        final Integer beerId;
+        final long madeAtNanos = System.nanoTime();
+
+        PendingChange(Integer beerId) {
+            this.beerId = beerId;
+        }
+    }
+
+    private final DatabaseClient primary;
+    private final DatabaseClient replica;
+    private final ReplicaLag replicaLag;
+    private final R2dbcConverter converter;
+    private final BeerNearCache beerNearCache;
+    private final Resource schema;
+    private final Duration lag;
+
+    private final Sinks.Many<PendingChange> changes = Sinks.many().unicast().onBackpressureBuffer();
+
+    public ReplicaSync(ReplicaRoutingConnectionFactory connectionFactory,
+                       R2dbcConverter converter,
+                       BeerNearCache beerNearCache,
+                       BeerStorageFormat storageFormat,
+                       @Value("${brewery.replica.lag:PT0S}") Duration lag) {
+        this.primary = DatabaseClient.create(connectionFactory.getPrimary());
+        this.replica = DatabaseClient.create(connectionFactory.getReplica());
+        this.replicaLag = connectionFactory.getReplicaLag();
+        this.converter = converter;
+        this.beerNearCache = beerNearCache;
+        this.schema = storageFormat.getSchema();
+        this.lag = lag;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        new ResourceDatabasePopulator(schema).populate(replica.getConnectionFactory())
+                .then(replica.sql("DELETE FROM beer").then())
+                .thenMany(primary.sql("SELECT * FROM beer ORDER BY id")
+                        .map((row, metadata) -> converter.read(Beer.class, row, metadata))
+                        .all()
+                        .concatMap(this::upsert))
+                .count()
+                .doOnNext(copied -> {
+                    log.info("Copied {} beers to the replica", copied);
+                    replicaLag.markCopied();
+                })
+                .doOnError(e -> log.error("Could not copy the beer table to the replica, reads stay on the primary", e))
+                .onErrorResume(e -> Mono.empty())
+                //changes made during the copy have been buffered and are applied after it
+                .thenMany(changes.asFlux().concatMap(this::apply))
+                .subscribe();
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        enqueue(event.getBeerId());
+    }
+
+    @EventListener
+    public void onBeerChangeFeed(BeerChangeFeedEvent event) {
+        enqueue(event.getBeerId());
+    }
+
+    private synchronized void enqueue(Integer beerId) {
+        replicaLag.changePending();
+        changes.tryEmitNext(new PendingChange(beerId));
+    }
+
+    private Mono<Void> apply(PendingChange change) {
+        Duration wait = lag.minusNanos(System.nanoTime() - change.madeAtNanos);
+
+        return (wait.isNegative() || wait.isZero() ? Mono.just(0L) : Mono.delay(wait))
+                .then(primary.sql("SELECT * FROM beer WHERE id = :id")
+                        .bind("id", change.beerId)
+                        .map((row, metadata) -> converter.read(Beer.class, row, metadata))
+                        .one())
+                .flatMap(this::upsert)
+                .switchIfEmpty(Mono.defer(() -> replica.sql("DELETE FROM beer WHERE id = :id") //gone from the primary
+                        .bind("id", change.beerId)
+                        .then()
+                        .then(Mono.<Beer>empty())))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100)))
+                .doOnError(e -> log.error("Could not apply the change of beer {} to the replica", change.beerId, e))
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> {
+                    replicaLag.changeApplied();
+                    beerNearCache.evict(change.beerId);
+                })
+                .then();
+    }
+
+    private Mono<Beer> upsert(Beer beer) {
+        //the columns as the converter writes them, whichever row format the table has
+        OutboundRow row = new OutboundRow();
+        converter.write(beer, row);
+
+        StringJoiner columns = new StringJoiner(", ");
+        StringJoiner values = new StringJoiner(", ");
+        row.keySet().forEach(column -> {
+            columns.add(column.getReference());
+            values.add(":" + column.getReference());
+        });
+
+        DatabaseClient.GenericExecuteSpec spec = replica.sql("MERGE INTO beer (" + columns + ") KEY (id) VALUES (" + values + ")");
+        for (Map.Entry<SqlIdentifier, Parameter> column : row.entrySet()) {
+            Parameter value = column.getValue();
+            spec = value.hasValue()
+                    ? spec.bind(column.getKey().getReference(), value.getValue())
+                    : spec.bindNull(column.getKey().getReference(), value.getType());
+        }
+        return spec.then().thenReturn(beer);
+    }
+}
@@ -0,0 +1,42 @@
+package guru.springframework.sfgrestbrewery.replication;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Splits reads from writes: the auto-configured connection factory becomes the primary of a
+ * {@link ReplicaRoutingConnectionFactory} whose replica is {@code brewery.replica.url}, so everything built on it
+ * (repositories, templates, the transaction manager) routes by the Reactor context. {@link ReplicaSync} keeps the
+ * replica in step.
+ * <p>
+ * The beer shards of {@code brewery.sharding} have connection factories of their own and are not routed.
+ */
+@Configuration
+@ConditionalOnProperty(value = "brewery.replica.enabled", havingValue = "true")
+public class ReplicationConfig {
+
+    @Bean
+    static BeanPostProcessor replicaRoutingPostProcessor(Environment environment) {
+        String replicaUrl = environment.getRequiredProperty("brewery.replica.url");
+        Duration maxLag = environment.getProperty("brewery.replica.max-lag", Duration.class, Duration.ofSeconds(5));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("connectionFactory".equals(beanName) && bean instanceof ConnectionFactory
+                        && !(bean instanceof ReplicaRoutingConnectionFactory)) {
+                    return new ReplicaRoutingConnectionFactory((ConnectionFactory) bean,
+                            ConnectionFactories.get(replicaUrl), new ReplicaLag(maxLag));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.BeerChange;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * The {@code beer_change} table. The service appends a row in the same transaction as every write, and every
+ * instance reads the rows after its own high-water mark to find out what the others changed.
+ */
+@Component
+public class BeerChangeLog {
+
+    private final DatabaseClient databaseClient;
+    private final String instanceId;
+
+    public BeerChangeLog(DatabaseClient databaseClient,
+                         @Value("${brewery.instance-id:#{null}}") String instanceId) {
+        this.databaseClient = databaseClient;
+        this.instanceId = instanceId != null ? instanceId : UUID.randomUUID().toString();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public Mono<Void> append(BeerChangedEvent event) {
+        return databaseClient.sql("INSERT INTO beer_change (beer_id, change_type, instance_id, changed_at) "
+                        + "VALUES (:beerId, :changeType, :instanceId, :changedAt)")
+                .bind("beerId", event.getBeerId())
+                .bind("changeType", event.getType().name())
+                .bind("instanceId", instanceId)
+                .bind("changedAt", LocalDateTime.now())
+                .then();
+    }
+
+    /**
+     * Appends all the changes with one multi-row insert.
+     */
+    public Mono<Void> appendAll(List<BeerChangedEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.empty();
+        }
+
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < events.size(); i++) {
+            values.add("(:beerId" + i + ", :changeType" + i + ", :instanceId, :changedAt)");
+        }
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("INSERT INTO beer_change "
+                        + "(beer_id, change_type, instance_id, changed_at) VALUES " + values)
+                .bind("instanceId", instanceId)
+                .bind("changedAt", LocalDateTime.now());
+        for (int i = 0; i < events.size(); i++) {
+            insert = insert.bind("beerId" + i, events.get(i).getBeerId())
+                    .bind("changeType" + i, events.get(i).getType().name());
+        }
+        return insert.then();
+    }
+
+    public Flux<BeerChange> readAfter(long seq, int limit) {
+        return databaseClient.sql("SELECT * FROM beer_change WHERE seq > :seq ORDER BY seq LIMIT :limit")
+                .bind("seq", seq)
+                .bind("limit", limit)
+                .map(row -> BeerChange.builder()
+                        .seq(row.get("seq", Long.class))
+                        .beerId(row.get("beer_id", Integer.class))
+                        .changeType(BeerChangedEvent.Type.valueOf(row.get("change_type", String.class)))
+                        .instanceId(row.get("instance_id", String.class))
+                        .changedAt(row.get("changed_at", LocalDateTime.class))
+                        .build())
+                .all();
+    }
+
+    public Mono<Long> highWaterMark() {
+        return databaseClient.sql("SELECT COALESCE(MAX(seq), 0) FROM beer_change")
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    public Mono<Integer> purgeBefore(LocalDateTime cutoff) {
+        return databaseClient.sql("DELETE FROM beer_change WHERE changed_at < :cutoff")
+                .bind("cutoff", cutoff)
+                .fetch()
+                .rowsUpdated();
+    }
+}
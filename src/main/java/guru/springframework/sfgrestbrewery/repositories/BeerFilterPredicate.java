@@ -0,0 +1,96 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * One condition a {@link BeerFilter} can add to a listing query. Which predicates apply to a filter is its shape,
+ * a bit per predicate, and the SQL of a query only depends on the shape, the values are bound as parameters.
+ */
+enum BeerFilterPredicate {
+
+    BEER_NAME("beer_name = :beerName", "beerName",
+            filter -> hasText(filter.getBeerName()), (filter, format) -> filter.getBeerName()),
+    NAME_PREFIX("beer_name LIKE :namePrefix ESCAPE '!'", "namePrefix",
+            filter -> hasText(filter.getNamePrefix()), (filter, format) -> escapeLike(filter.getNamePrefix()) + "%"),
+    STYLES("beer_style IN (:beerStyles)", "beerStyles",
+            filter -> filter.getBeerStyles() != null && !filter.getBeerStyles().isEmpty(),
+            (filter, format) -> filter.getBeerStyles().stream().map(format::styleValue).collect(Collectors.toList())),
+    MIN_PRICE("price >= :minPrice", "minPrice",
+            filter -> filter.getMinPrice() != null, (filter, format) -> format.priceBound(filter.getMinPrice(), true)),
+    MAX_PRICE("price <= :maxPrice", "maxPrice",
+            filter -> filter.getMaxPrice() != null, (filter, format) -> format.priceBound(filter.getMaxPrice(), false)),
+    IN_STOCK("quantity_on_hand > 0", null,
+            filter -> Boolean.TRUE.equals(filter.getInStock()), null),
+    OUT_OF_STOCK("(quantity_on_hand IS NULL OR quantity_on_hand <= 0)", null,
+            filter -> Boolean.FALSE.equals(filter.getInStock()), null),
+    MIN_QUANTITY("quantity_on_hand >= :minQuantityOnHand", "minQuantityOnHand",
+            filter -> filter.getMinQuantityOnHand() != null, (filter, format) -> filter.getMinQuantityOnHand()),
+    MAX_QUANTITY("quantity_on_hand <= :maxQuantityOnHand", "maxQuantityOnHand",
+            filter -> filter.getMaxQuantityOnHand() != null, (filter, format) -> filter.getMaxQuantityOnHand()),
+    CREATED_FROM("created_date >= :createdFrom", "createdFrom",
+            filter -> filter.getCreatedFrom() != null, (filter, format) -> filter.getCreatedFrom()),
+    CREATED_TO("created_date < :createdTo", "createdTo",
+            filter -> filter.getCreatedTo() != null, (filter, format) -> filter.getCreatedTo()),
+    MODIFIED_FROM("last_modified_date >= :modifiedFrom", "modifiedFrom",
+            filter -> filter.getModifiedFrom() != null, (filter, format) -> filter.getModifiedFrom()),
+    MODIFIED_TO("last_modified_date < :modifiedTo", "modifiedTo",
+            filter -> filter.getModifiedTo() != null, (filter, format) -> filter.getModifiedTo());
+
+    private static final BeerFilterPredicate[] VALUES = values();
+
+    private final String sql;
+    private final String parameter; //null when the condition has nothing to bind
+    private final Predicate<BeerFilter> appliesTo;
+    private final BiFunction<BeerFilter, BeerStorageFormat, Object> value;
+
+    BeerFilterPredicate(String sql, String parameter, Predicate<BeerFilter> appliesTo,
+                        BiFunction<BeerFilter, BeerStorageFormat, Object> value) {
+        this.sql = sql;
+        this.parameter = parameter;
+        this.appliesTo = appliesTo;
+        this.value = value;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * The value to bind, in the way {@code format} stores it.
+     */
+    Object valueOf(BeerFilter filter, BeerStorageFormat format) {
+        return value.apply(filter, format);
+    }
+
+    static int shapeOf(BeerFilter filter) {
+        int shape = 0;
+        if (filter != null) {
+            for (BeerFilterPredicate predicate : VALUES) {
+                if (predicate.appliesTo.test(filter)) {
+                    shape |= 1 << predicate.ordinal();
+                }
+            }
+        }
+        return shape;
+    }
+
+    static boolean isSet(int shape, BeerFilterPredicate predicate) {
+        return (shape & 1 << predicate.ordinal()) != 0;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
@@ -0,0 +1,170 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.sharding.BeerShards;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
+import org.springframework.data.relational.core.sql.IdentifierProcessing;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Runs {@link BeerFilter} listings. The SQL for a filter shape and sort order is built on first use and cached as a
+ * {@link BeerQueryPlan}, every later listing with the same combination of criteria only binds its values.
+ */
+@Slf4j
+@Component
+public class BeerFilterQueries {
+
+    //shapes times validated sort orders is a few thousand at most, the cap only guards against callers building
+    //sorts on the fly
+    private static final int MAX_CACHED_PLANS = 4096;
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+    private final RelationalPersistentEntity<?> beerEntity;
+    private final BeerStorageFormat storageFormat;
+
+    private final Map<BeerQueryPlan.Key, BeerQueryPlan> plans = new ConcurrentHashMap<>();
+
+    private final BeerShards beerShards; //null unless sharding is enabled
+
+    public BeerFilterQueries(R2dbcEntityTemplate template, ObjectProvider<BeerShards> beerShards,
+                             BeerStorageFormat storageFormat) {
+        this.databaseClient = template.getDatabaseClient();
+        this.converter = template.getConverter();
+        this.storageFormat = storageFormat;
+        this.beerShards = beerShards.getIfAvailable();
+
+        MappingContext<? extends RelationalPersistentEntity<?>, ? extends RelationalPersistentProperty> mappingContext =
+                converter.getMappingContext();
+        this.beerEntity = mappingContext.getRequiredPersistentEntity(Beer.class);
+    }
+
+    public Flux<Beer> find(BeerFilter filter, Pageable pageable) {
+        if (beerShards != null) {
+            return scatterGather(filter, pageable);
+        }
+        return execute(databaseClient, planFor(filter, pageable.getSort()), filter, pageable.getPageSize(), pageable.getOffset());
+    }
+
+    /**
+     * Every shard that can hold matching rows is asked for its first {@code offset + page size} rows in parallel,
+     * the sorted streams are merged k-way in the same order and the page is cut out of the merged stream.
+     */
+    private Flux<Beer> scatterGather(BeerFilter filter, Pageable pageable) {
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("id"); //merging needs an order
+        BeerQueryPlan plan = planFor(filter, sort);
+        long rowsPerShard = pageable.getOffset() + pageable.getPageSize();
+
+        List<Flux<Beer>> perShard = beerShards.shardsFor(filter).stream()
+                .map(shard -> execute(shard.getDatabaseClient(), plan, filter, rowsPerShard, 0))
+                .collect(Collectors.toList());
+
+        return BeerShards.mergeOrdered(comparatorFor(sort), perShard)
+                .skip(pageable.getOffset())
+                .take(pageable.getPageSize());
+    }
+
+    private Flux<Beer> execute(DatabaseClient client, BeerQueryPlan plan, BeerFilter filter, long limit, long offset) {
+        DatabaseClient.GenericExecuteSpec spec = client.sql(plan.getSql());
+        for (BeerFilterPredicate predicate : plan.getPredicates()) {
+            if (predicate.getParameter() != null) {
+                spec = spec.bind(predicate.getParameter(), predicate.valueOf(filter, storageFormat));
+            }
+        }
+
+        return spec.bind("limit", limit)
+                .bind("offset", offset)
+                .map((row, metadata) -> converter.read(Beer.class, row, metadata))
+                .all();
+    }
+
+    BeerQueryPlan planFor(BeerFilter filter, Sort sort) {
+        BeerQueryPlan.Key key = new BeerQueryPlan.Key(BeerFilterPredicate.shapeOf(filter), sort);
+
+        BeerQueryPlan plan = plans.get(key);
+        if (plan != null) {
+            return plan;
+        }
+        if (plans.size() >= MAX_CACHED_PLANS) {
+            return compile(key);
+        }
+        return plans.computeIfAbsent(key, this::compile);
+    }
+
+    int cachedPlans() {
+        return plans.size();
+    }
+
+    private BeerQueryPlan compile(BeerQueryPlan.Key key) {
+        List<BeerFilterPredicate> predicates = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM beer");
+
+        StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+        for (BeerFilterPredicate predicate : BeerFilterPredicate.values()) {
+            if (BeerFilterPredicate.isSet(key.getShape(), predicate)) {
+                predicates.add(predicate);
+                where.add(predicate.getSql());
+            }
+        }
+        sql.append(where);
+
+        StringJoiner orderBy = new StringJoiner(", ", " ORDER BY ", "").setEmptyValue("");
+        for (Sort.Order order : key.getSort()) {
+            orderBy.add(columnOf(order.getProperty()) + " " + order.getDirection().name());
+        }
+        sql.append(orderBy).append(" LIMIT :limit OFFSET :offset");
+
+        log.debug("Compiled listing plan {}: {}", key, sql);
+        return new BeerQueryPlan(key, sql.toString(), List.copyOf(predicates));
+    }
+
+    private String columnOf(String property) {
+        return propertyOf(property).getColumnName().getReference(IdentifierProcessing.NONE);
+    }
+
+    /**
+     * The order the database sorts in: H2 puts nulls first in ascending order and last in descending order.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<Beer> comparatorFor(Sort sort) {
+        Comparator<Beer> comparator = null;
+        for (Sort.Order order : sort) {
+            RelationalPersistentProperty property = propertyOf(order.getProperty());
+            Comparator<Beer> next = Comparator.comparing(
+                    beer -> (Comparable) beerEntity.getPropertyAccessor(beer).getProperty(property),
+                    Comparator.nullsFirst(Comparator.<Comparable>naturalOrder()));
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    private RelationalPersistentProperty propertyOf(String property) {
+        RelationalPersistentProperty persistentProperty = beerEntity.getPersistentProperty(property);
+        if (persistentProperty == null) {
+            throw new IllegalArgumentException("Cannot sort beers by unknown property " + property);
+        }
+        return persistentProperty;
+    }
+}
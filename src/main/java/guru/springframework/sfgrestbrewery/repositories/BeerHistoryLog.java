@@ -0,0 +1,94 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.BeerHistoryEntry;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The {@code beer_history} table. Only ever appended to, a batch at a time with one multi-row insert.
+ */
+@Component
+public class BeerHistoryLog {
+
+    private final DatabaseClient databaseClient;
+
+    public BeerHistoryLog(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Void> appendAll(List<BeerHistoryEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < entries.size(); i++) {
+            values.add("(:beerId" + i + ", :changeType" + i + ", :priceBefore" + i + ", :priceAfter" + i
+                    + ", :quantityBefore" + i + ", :quantityAfter" + i + ", :changedAt" + i + ")");
+        }
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("INSERT INTO beer_history (beer_id, change_type, "
+                + "price_before, price_after, quantity_on_hand_before, quantity_on_hand_after, changed_at) VALUES " + values);
+        for (int i = 0; i < entries.size(); i++) {
+            BeerHistoryEntry entry = entries.get(i);
+            insert = bindOrNull(insert, "priceBefore" + i, entry.getPriceBefore(), BigDecimal.class);
+            insert = bindOrNull(insert, "priceAfter" + i, entry.getPriceAfter(), BigDecimal.class);
+            insert = bindOrNull(insert, "quantityBefore" + i, entry.getQuantityOnHandBefore(), Integer.class);
+            insert = bindOrNull(insert, "quantityAfter" + i, entry.getQuantityOnHandAfter(), Integer.class);
+            insert = insert.bind("beerId" + i, entry.getBeerId())
+                    .bind("changeType" + i, entry.getChangeType().name())
+                    .bind("changedAt" + i, entry.getChangedAt());
+        }
+        return insert.then();
+    }
+
+    /**
+     * The changes of a beer from {@code from} (inclusive) to {@code to} (exclusive), either may be null, newest
+     * first.
+     */
+    public Flux<BeerHistoryEntry> findByBeerId(Integer beerId, LocalDateTime from, LocalDateTime to, Pageable page) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM beer_history WHERE beer_id = :beerId");
+        if (from != null) {
+            sql.append(" AND changed_at >= :from");
+        }
+        if (to != null) {
+            sql.append(" AND changed_at < :to");
+        }
+        sql.append(" ORDER BY changed_at DESC, id DESC LIMIT :limit OFFSET :offset");
+
+        DatabaseClient.GenericExecuteSpec select = databaseClient.sql(sql.toString())
+                .bind("beerId", beerId)
+                .bind("limit", page.getPageSize())
+                .bind("offset", page.getOffset());
+        if (from != null) {
+            select = select.bind("from", from);
+        }
+        if (to != null) {
+            select = select.bind("to", to);
+        }
+        return select.map(row -> BeerHistoryEntry.builder()
+                        .id(row.get("id", Long.class))
+                        .beerId(row.get("beer_id", Integer.class))
+                        .changeType(BeerChangedEvent.Type.valueOf(row.get("change_type", String.class)))
+                        .priceBefore(row.get("price_before", BigDecimal.class))
+                        .priceAfter(row.get("price_after", BigDecimal.class))
+                        .quantityOnHandBefore(row.get("quantity_on_hand_before", Integer.class))
+                        .quantityOnHandAfter(row.get("quantity_on_hand_after", Integer.class))
+                        .changedAt(row.get("changed_at", LocalDateTime.class))
+                        .build())
+                .all();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindOrNull(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                                Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+}
@@ -0,0 +1,79 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Hands out values of {@code beer_id_seq} from memory, fetching them from the database a block at a time.
+ * <p>
+ * The sequence counts in steps of its {@code INCREMENT BY} (see schema.sql), so every value the database hands out
+ * reserves the block from it up to the next step for whoever asked. A request for more values than are left reserves
+ * as many blocks as it needs in a single query. Blocks left over when the application stops are lost, the ids are
+ * unique but not gapless. The increment is read along with every block, so it can be changed in the schema alone.
+ */
+public class BeerIdAllocator {
+
+    private static final String RESERVE_SQL = "SELECT NEXT VALUE FOR beer_id_seq, s.INCREMENT"
+            + " FROM SYSTEM_RANGE(1, :blocks), INFORMATION_SCHEMA.SEQUENCES s WHERE s.SEQUENCE_NAME = 'BEER_ID_SEQ'";
+
+    private final DatabaseClient databaseClient;
+    private final Deque<long[]> blocks = new ArrayDeque<>(); //{next, end} of the reserved blocks
+    private volatile long blockSize = 1; //until the first block tells
+
+    public BeerIdAllocator(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Long> next() {
+        return next(1).map(values -> values[0]);
+    }
+
+    /**
+     * {@code count} values, from memory if there are enough left, otherwise with one query for the blocks missing.
+     */
+    public Mono<long[]> next(int count) {
+        return Mono.defer(() -> {
+            long[] values = new long[count];
+            return fill(values, take(values, 0)).thenReturn(values);
+        });
+    }
+
+    private Mono<Void> fill(long[] values, int filled) {
+        if (filled == values.length) {
+            return Mono.empty();
+        }
+        long missingBlocks = (values.length - filled + blockSize - 1) / blockSize;
+        return reserve(missingBlocks)
+                .then(Mono.defer(() -> fill(values, take(values, filled)))); //another caller may have taken some
+    }
+
+    private synchronized int take(long[] values, int filled) {
+        while (filled < values.length && !blocks.isEmpty()) {
+            long[] block = blocks.peekFirst();
+            while (filled < values.length && block[0] < block[1]) {
+                values[filled++] = block[0]++;
+            }
+            if (block[0] == block[1]) {
+                blocks.pollFirst();
+            }
+        }
+        return filled;
+    }
+
+    private Mono<Void> reserve(long count) {
+        return databaseClient.sql(RESERVE_SQL)
+                .bind("blocks", count)
+                .map(row -> new long[]{row.get(0, Long.class), row.get(1, Long.class)})
+                .all()
+                .doOnNext(this::addBlock)
+                .then();
+    }
+
+    private synchronized void addBlock(long[] startAndSize) {
+        blockSize = startAndSize[1];
+        blocks.addLast(new long[]{startAndSize[0], startAndSize[0] + startAndSize[1]});
+    }
+}
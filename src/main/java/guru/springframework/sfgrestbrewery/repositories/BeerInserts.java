@@ -0,0 +1,128 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.sharding.BeerShard;
+import guru.springframework.sfgrestbrewery.sharding.BeerShards;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts new beers with ids taken from a {@link BeerIdAllocator} before the insert, instead of having the database
+ * generate them: a batch of beers is one statement with a set of bindings per beer, one round trip, and nothing has
+ * to be read back. With sharding every shard gets the statement for the beers placed on it, with ids from its own
+ * sequence (see {@link BeerShards}).
+ */
+@Component
+public class BeerInserts {
+
+    private final R2dbcEntityTemplate template;
+    private final R2dbcConverter converter;
+    private final BeerIdAllocator idAllocator;
+
+    private final BeerShards beerShards; //null unless sharding is enabled
+
+    public BeerInserts(R2dbcEntityTemplate template, ObjectProvider<BeerShards> beerShards) {
+        this.template = template;
+        this.converter = template.getConverter();
+        this.idAllocator = new BeerIdAllocator(template.getDatabaseClient());
+        this.beerShards = beerShards.getIfAvailable();
+    }
+
+    public Mono<Beer> insert(Beer beer) {
+        return insertAll(List.of(beer)).single();
+    }
+
+    /**
+     * Copies of the beers with their new ids, in order.
+     */
+    public Flux<Beer> insertAll(List<Beer> beers) {
+        if (beers.isEmpty()) {
+            return Flux.empty();
+        }
+        if (beerShards == null) {
+            return idAllocator.next(beers.size())
+                    .flatMapMany(ids -> insert(template.getDatabaseClient(), withIds(beers, ids)));
+        }
+
+        Map<BeerShard, List<Integer>> positionsByShard = new LinkedHashMap<>();
+        for (int i = 0; i < beers.size(); i++) {
+            positionsByShard.computeIfAbsent(beerShards.placementFor(beers.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+
+        Beer[] inserted = new Beer[beers.size()];
+        return Flux.fromIterable(positionsByShard.entrySet())
+                .flatMap(entry -> {
+                    List<Integer> positions = entry.getValue();
+                    List<Beer> shardBeers = positions.stream().map(beers::get).collect(Collectors.toList());
+                    return beerShards.nextIds(entry.getKey(), shardBeers.size())
+                            .flatMapMany(ids -> insert(entry.getKey().getDatabaseClient(), withIds(shardBeers, ids)))
+                            .index()
+                            .doOnNext(beer -> inserted[positions.get(beer.getT1().intValue())] = beer.getT2());
+                })
+                .thenMany(Flux.defer(() -> Flux.fromArray(inserted)));
+    }
+
+    private static List<Beer> withIds(List<Beer> beers, long[] ids) {
+        List<Beer> withIds = new ArrayList<>(beers.size());
+        for (int i = 0; i < beers.size(); i++) {
+            withIds.add(beers.get(i).toBuilder().id(Math.toIntExact(ids[i])).build());
+        }
+        return withIds;
+    }
+
+    private Flux<Beer> insert(DatabaseClient client, List<Beer> beers) {
+        List<OutboundRow> rows = beers.stream().map(this::toRow).collect(Collectors.toList());
+        List<SqlIdentifier> columns = new ArrayList<>(rows.get(0).keySet());
+
+        StringBuilder sql = new StringBuilder("INSERT INTO beer (");
+        StringBuilder values = new StringBuilder(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append(columns.get(i).getReference());
+            values.append(i > 0 ? ", " : "").append('$').append(i + 1);
+        }
+        String insertSql = sql.append(values).append(')').toString();
+
+        return client.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(insertSql);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                for (int column = 0; column < columns.size(); column++) {
+                    bind(statement, column, rows.get(i).get(columns.get(column)));
+                }
+            }
+            return Flux.from(statement.execute()).concatMap(Result::getRowsUpdated);
+        }).thenMany(Flux.fromIterable(beers));
+    }
+
+    private OutboundRow toRow(Beer beer) {
+        OutboundRow row = new OutboundRow();
+        converter.write(beer, row);
+        return row;
+    }
+
+    private static void bind(Statement statement, int index, Parameter parameter) {
+        if (parameter.hasValue()) {
+            statement.bind(index, parameter.getValue());
+        } else {
+            statement.bindNull(index, parameter.getType());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import guru.springframework.sfgrestbrewery.sharding.BeerShard;
+import guru.springframework.sfgrestbrewery.sharding.BeerShards;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
+/**
+ * Reads and reprices many beers at once, for bulk price updates.
+ * <p>
+ * The prices of a batch are written with one statement and a set of bindings per beer, so the database gets the
+ * batch in one round trip. Every update is conditional on the price still being what it was when the beer was
+ * read: a beer repriced by someone else in between is not overwritten and reports no row updated. With sharding
+ * every shard gets the statement for its own beers.
+ */
+@Component
+public class BeerPriceUpdates {
+
+    private static final String UPDATE_SQL = "UPDATE beer SET price = $1 WHERE id = $2 AND price IS NOT DISTINCT FROM $3";
+    private static final SqlIdentifier PRICE = SqlIdentifier.unquoted("price");
+
+    private final R2dbcEntityTemplate template;
+    private final R2dbcConverter converter;
+
+    private final BeerShards beerShards; //null unless sharding is enabled
+
+    public BeerPriceUpdates(R2dbcEntityTemplate template, ObjectProvider<BeerShards> beerShards) {
+        this.template = template;
+        this.converter = template.getConverter();
+        this.beerShards = beerShards.getIfAvailable();
+    }
+
+    public Flux<Beer> findAllByIdOrUpc(Collection<Integer> beerIds, Collection<String> upcs) {
+        if (beerIds.isEmpty() && upcs.isEmpty()) {
+            return Flux.empty();
+        }
+        Criteria criteria = beerIds.isEmpty() ? where("upc").in(upcs)
+                : upcs.isEmpty() ? where("id").in(beerIds)
+                : where("id").in(beerIds).or("upc").in(upcs);
+
+        if (beerShards == null) {
+            return template.select(Beer.class).matching(query(criteria)).all();
+        }
+        return Flux.fromIterable(beerShards.getShards())
+                .flatMap(shard -> shard.getTemplate().select(Beer.class).matching(query(criteria)).all());
+    }
+
+    /**
+     * Writes the price of every {@code after} that still has the price of its {@code before}, and emits for each
+     * change in order whether it was written.
+     */
+    public Flux<Boolean> updatePrices(List<BeerChangedEvent> changes) {
+        if (beerShards == null) {
+            return update(template.getDatabaseClient(), changes);
+        }
+
+        Map<BeerShard, List<Integer>> positionsByShard = new LinkedHashMap<>();
+        for (int i = 0; i < changes.size(); i++) {
+            positionsByShard.computeIfAbsent(beerShards.ownerOf(changes.get(i).getBeerId()), shard -> new ArrayList<>()).add(i);
+        }
+
+        Boolean[] updated = new Boolean[changes.size()];
+        return Flux.fromIterable(positionsByShard.entrySet())
+                .flatMap(entry -> {
+                    List<BeerChangedEvent> shardChanges = new ArrayList<>();
+                    entry.getValue().forEach(position -> shardChanges.add(changes.get(position)));
+                    return update(entry.getKey().getDatabaseClient(), shardChanges)
+                            .index()
+                            .doOnNext(result -> updated[entry.getValue().get(result.getT1().intValue())] = result.getT2());
+                })
+                .thenMany(Flux.defer(() -> Flux.fromArray(updated)));
+    }
+
+    private Flux<Boolean> update(DatabaseClient client, List<BeerChangedEvent> changes) {
+        if (changes.isEmpty()) {
+            return Flux.empty();
+        }
+        return client.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(UPDATE_SQL);
+            for (int i = 0; i < changes.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                BeerChangedEvent change = changes.get(i);
+                bind(statement, 0, priceColumn(change.getAfter()));
+                statement.bind(1, change.getBeerId());
+                bind(statement, 2, priceColumn(change.getBefore()));
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(Result::getRowsUpdated)
+                    .map(rows -> rows > 0);
+        });
+    }
+
+    /**
+     * The price as stored, which is not the {@link java.math.BigDecimal} with the compact format.
+     */
+    private Parameter priceColumn(Beer beer) {
+        OutboundRow row = new OutboundRow();
+        converter.write(beer, row);
+        return row.get(PRICE);
+    }
+
+    private static void bind(Statement statement, int index, Parameter parameter) {
+        if (parameter.hasValue()) {
+            statement.bind(index, parameter.getValue());
+        } else {
+            statement.bindNull(index, parameter.getType());
+        }
+    }
+}
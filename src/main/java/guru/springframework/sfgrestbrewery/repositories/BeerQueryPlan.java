@@ -0,0 +1,24 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import lombok.Value;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * Parameterized listing SQL for one filter shape and sort order. Only the values change between executions, so a
+ * plan is built once and reused, and the database sees the same statement text every time.
+ */
+@Value
+class BeerQueryPlan {
+
+    @Value
+    static class Key {
+        int shape;
+        Sort sort;
+    }
+
+    Key key;
+    String sql;
+    List<BeerFilterPredicate> predicates;
+}
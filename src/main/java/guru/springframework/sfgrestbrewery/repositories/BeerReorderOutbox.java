@@ -0,0 +1,84 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.BeerReorder;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The {@code beer_reorder} outbox. The reorder scan appends a batch of reorders with one multi-row insert, and
+ * consumers read the rows after the last id they processed.
+ */
+@Component
+public class BeerReorderOutbox {
+
+    private final DatabaseClient databaseClient;
+
+    public BeerReorderOutbox(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Void> appendAll(List<BeerReorder> reorders) {
+        if (reorders.isEmpty()) {
+            return Mono.empty();
+        }
+
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < reorders.size(); i++) {
+            values.add("(:beerId" + i + ", :beerStyle" + i + ", :quantityOnHand" + i + ", :reorderThreshold" + i + ", :createdAt" + i + ")");
+        }
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("INSERT INTO beer_reorder "
+                + "(beer_id, beer_style, quantity_on_hand, reorder_threshold, created_at) VALUES " + values);
+        for (int i = 0; i < reorders.size(); i++) {
+            BeerReorder reorder = reorders.get(i);
+            insert = reorder.getBeerStyle() == null
+                    ? insert.bindNull("beerStyle" + i, String.class)
+                    : insert.bind("beerStyle" + i, reorder.getBeerStyle().name());
+            insert = insert.bind("beerId" + i, reorder.getBeerId())
+                    .bind("quantityOnHand" + i, reorder.getQuantityOnHand())
+                    .bind("reorderThreshold" + i, reorder.getReorderThreshold())
+                    .bind("createdAt" + i, reorder.getCreatedAt());
+        }
+        return insert.then();
+    }
+
+    /**
+     * The beers among {@code beerIds} that already have a reorder created at or after {@code since}.
+     */
+    public Flux<Integer> reorderedSince(Collection<Integer> beerIds, LocalDateTime since) {
+        if (beerIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql("SELECT DISTINCT beer_id FROM beer_reorder WHERE beer_id IN (:beerIds) AND created_at >= :since")
+                .bind("beerIds", beerIds)
+                .bind("since", since)
+                .map(row -> row.get("beer_id", Integer.class))
+                .all();
+    }
+
+    public Flux<BeerReorder> readAfter(long id, int limit) {
+        return databaseClient.sql("SELECT * FROM beer_reorder WHERE id > :id ORDER BY id LIMIT :limit")
+                .bind("id", id)
+                .bind("limit", limit)
+                .map(row -> BeerReorder.builder()
+                        .id(row.get("id", Long.class))
+                        .beerId(row.get("beer_id", Integer.class))
+                        .beerStyle(styleOf(row.get("beer_style", String.class)))
+                        .quantityOnHand(row.get("quantity_on_hand", Integer.class))
+                        .reorderThreshold(row.get("reorder_threshold", Integer.class))
+                        .createdAt(row.get("created_at", LocalDateTime.class))
+                        .build())
+                .all();
+    }
+
+    private static BeerStyleEnum styleOf(String style) {
+        return style == null ? null : BeerStyleEnum.valueOf(style);
+    }
+}
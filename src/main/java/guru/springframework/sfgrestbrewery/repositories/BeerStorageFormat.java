@@ -0,0 +1,70 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.compact.CompactBeerCodec;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * How the beer table stores its values, which the hand written queries have to bind in. With
+ * {@code brewery.storage.compact=true} the table is created from schema-compact.sql, prices are cents, upcs numbers
+ * and styles small codes (see {@link CompactBeerCodec}); otherwise schema.sql with decimals and strings. The entity
+ * is the same either way, the mapping is done by the converters of {@code CompactStorageConfig}.
+ */
+@Component
+public class BeerStorageFormat {
+
+    private final boolean compact;
+    private final Resource schema;
+
+    public BeerStorageFormat(@Value("${brewery.storage.compact:false}") boolean compact, ResourceLoader resourceLoader) {
+        this.compact = compact;
+        this.schema = resourceLoader.getResource(compact ? "classpath:/schema-compact.sql" : "classpath:/schema.sql");
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public Resource getSchema() {
+        return schema;
+    }
+
+    public Object styleValue(BeerStyleEnum beerStyle) {
+        return compact ? CompactBeerCodec.toStyleCode(beerStyle) : beerStyle.name();
+    }
+
+    /**
+     * The value to compare the price column with for a range limit, {@code lower} for a minimum.
+     */
+    public Object priceBound(BigDecimal limit, boolean lower) {
+        return compact ? CompactBeerCodec.toCentsBound(limit, lower) : limit;
+    }
+
+    /**
+     * Refuses, with a 400, a beer whose values this format can't store exactly.
+     */
+    public Beer requireStorable(Beer beer) {
+        if (compact) {
+            if (beer.getPrice() != null) {
+                CompactBeerCodec.toCents(beer.getPrice());
+            }
+            if (beer.getUpc() != null) {
+                CompactBeerCodec.toUpcNumber(beer.getUpc());
+            }
+        }
+        return beer;
+    }
+
+    /**
+     * False for upcs no stored beer can have, a lookup of one needs no query.
+     */
+    public boolean canStoreUpc(String upc) {
+        return !compact || CompactBeerCodec.isCompactUpc(upc);
+    }
+}
@@ -0,0 +1,78 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.sharding.BeerShards;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the whole beer table in primary key order, one batch at a time. Every batch is a keyset query
+ * ({@code id > last id of the previous batch}), so it is an index range scan no matter how far into the table it
+ * is, and the next batch is only queried once the previous one has been requested downstream. At most a batch or
+ * two is held in memory whatever the table size.
+ * <p>
+ * R2DBC 0.8 has no fetch size on a statement, the batch size is the bounded fetch. With sharding every shard is
+ * scanned this way and the scans are merged in id order.
+ */
+@Component
+public class BeerTableScanner {
+
+    private static final Comparator<Beer> BY_ID = Comparator.comparing(Beer::getId);
+    private static final String BATCH_SQL = "SELECT * FROM beer WHERE id > :lastId ORDER BY id LIMIT :limit";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    private final BeerShards beerShards; //null unless sharding is enabled
+
+    public BeerTableScanner(R2dbcEntityTemplate template, ObjectProvider<BeerShards> beerShards) {
+        this.databaseClient = template.getDatabaseClient();
+        this.converter = template.getConverter();
+        this.beerShards = beerShards.getIfAvailable();
+    }
+
+    public Flux<Beer> scan(int batchSize) {
+        return scanBatches(batchSize).flatMapIterable(batch -> batch);
+    }
+
+    public Flux<List<Beer>> scanBatches(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (beerShards == null) {
+            return scanBatches(databaseClient, batchSize);
+        }
+
+        //every shard is scanned in id order, merging them keeps the order across shards
+        List<Flux<Beer>> perShard = beerShards.getShards().stream()
+                .map(shard -> scanBatches(shard.getDatabaseClient(), batchSize).flatMapIterable(batch -> batch))
+                .collect(Collectors.toList());
+        return BeerShards.mergeOrdered(BY_ID, perShard).buffer(batchSize);
+    }
+
+    private Flux<List<Beer>> scanBatches(DatabaseClient client, int batchSize) {
+        return batchAfter(client, 0, batchSize)
+                .expand(batch -> batch.size() < batchSize
+                        ? Mono.empty()
+                        : batchAfter(client, batch.get(batch.size() - 1).getId(), batchSize))
+                .filter(batch -> !batch.isEmpty());
+    }
+
+    private Mono<List<Beer>> batchAfter(DatabaseClient client, int lastId, int batchSize) {
+        return client.sql(BATCH_SQL)
+                .bind("lastId", lastId)
+                .bind("limit", batchSize)
+                .map((row, metadata) -> converter.read(Beer.class, row, metadata))
+                .all()
+                .collectList();
+    }
+}
@@ -0,0 +1,118 @@
+package guru.springframework.sfgrestbrewery.repositories.compact;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The column values of the compact row format: prices as a {@code long} of cents, upcs (always 13 digits, leading
+ * zeros included) as a {@code long}, styles as a small integer code. Every conversion is exact, values that have no
+ * exact compact form are refused rather than rounded.
+ */
+public final class CompactBeerCodec {
+
+    public static final int PRICE_SCALE = 2;
+    public static final int UPC_DIGITS = 13;
+
+    //digits before the point a price may have, any more might not fit a long of cents
+    private static final int MAX_PRICE_DIGITS = 16;
+
+    //the code of a style is its position here, never reorder, only append
+    private static final BeerStyleEnum[] STYLES_BY_CODE = {
+            BeerStyleEnum.LAGER, BeerStyleEnum.PILSNER, BeerStyleEnum.STOUT, BeerStyleEnum.GOSE, BeerStyleEnum.PORTER,
+            BeerStyleEnum.ALE, BeerStyleEnum.WHEAT, BeerStyleEnum.IPA, BeerStyleEnum.PALE_ALE, BeerStyleEnum.SAISON
+    };
+    private static final Map<BeerStyleEnum, Short> CODES_BY_STYLE = new EnumMap<>(BeerStyleEnum.class);
+
+    static {
+        for (short code = 0; code < STYLES_BY_CODE.length; code++) {
+            CODES_BY_STYLE.put(STYLES_BY_CODE[code], code);
+        }
+        if (CODES_BY_STYLE.size() != BeerStyleEnum.values().length) {
+            throw new IllegalStateException("Every beer style needs a compact code");
+        }
+    }
+
+    private CompactBeerCodec() {
+    }
+
+    public static long toCents(BigDecimal price) {
+        //checked before scaling, which takes as long as the exponent is large
+        BigDecimal exact = price.stripTrailingZeros();
+        if (exact.scale() > PRICE_SCALE || integerDigits(exact) > MAX_PRICE_DIGITS) {
+            throw new ServerWebInputException("price " + price + " has more than " + PRICE_SCALE + " decimals or is too large");
+        }
+        return exact.setScale(PRICE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * The cents bound of a price range limit, which may be between two cents: rounded up for a lower limit, down
+     * for an upper one, so the range matches the same prices.
+     */
+    public static long toCentsBound(BigDecimal limit, boolean lower) {
+        if (integerDigits(limit) > MAX_PRICE_DIGITS) {
+            throw new ServerWebInputException("price limit " + limit + " is too large");
+        }
+        if (integerDigits(limit) <= -PRICE_SCALE) { //less than a cent either way
+            return lower ? (limit.signum() > 0 ? 1 : 0) : (limit.signum() < 0 ? -1 : 0);
+        }
+        BigDecimal cents = limit.setScale(PRICE_SCALE, lower ? RoundingMode.CEILING : RoundingMode.FLOOR);
+        return cents.unscaledValue().longValueExact();
+    }
+
+    /**
+     * The digits before the point, negative for the zeros after it of a value less than 1/10.
+     */
+    private static int integerDigits(BigDecimal value) {
+        return value.precision() - value.scale();
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, PRICE_SCALE);
+    }
+
+    public static boolean isCompactUpc(String upc) {
+        if (upc == null || upc.length() != UPC_DIGITS) {
+            return false;
+        }
+        for (int i = 0; i < UPC_DIGITS; i++) {
+            char c = upc.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long toUpcNumber(String upc) {
+        if (!isCompactUpc(upc)) {
+            throw new ServerWebInputException("upc must be " + UPC_DIGITS + " digits");
+        }
+        long number = 0;
+        for (int i = 0; i < UPC_DIGITS; i++) {
+            number = number * 10 + (upc.charAt(i) - '0');
+        }
+        return number;
+    }
+
+    public static String fromUpcNumber(long upc) {
+        char[] digits = new char[UPC_DIGITS];
+        for (int i = UPC_DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + upc % 10);
+            upc /= 10;
+        }
+        return new String(digits);
+    }
+
+    public static short toStyleCode(BeerStyleEnum style) {
+        return CODES_BY_STYLE.get(style);
+    }
+
+    public static BeerStyleEnum fromStyleCode(int code) {
+        return STYLES_BY_CODE[code];
+    }
+}
@@ -0,0 +1,35 @@
+package guru.springframework.sfgrestbrewery.repositories.compact;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import io.r2dbc.spi.Row;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reads a beer from a row of the compact format (see schema-compact.sql).
+ */
+@ReadingConverter
+public class CompactBeerReadingConverter implements Converter<Row, Beer> {
+
+    @Override
+    public Beer convert(Row row) {
+        Short style = row.get("beer_style", Short.class);
+        Long upc = row.get("upc", Long.class);
+        Long price = row.get("price", Long.class);
+        Integer version = row.get("version", Integer.class); //an integer column, the entity has a long
+
+        return Beer.builder()
+                .id(row.get("id", Integer.class))
+                .version(version == null ? null : version.longValue())
+                .beerName(row.get("beer_name", String.class))
+                .beerStyle(style == null ? null : CompactBeerCodec.fromStyleCode(style))
+                .upc(upc == null ? null : CompactBeerCodec.fromUpcNumber(upc))
+                .quantityOnHand(row.get("quantity_on_hand", Integer.class))
+                .price(price == null ? null : CompactBeerCodec.fromCents(price))
+                .createdDate(row.get("created_date", LocalDateTime.class))
+                .lastModifiedDate(row.get("last_modified_date", LocalDateTime.class))
+                .build();
+    }
+}
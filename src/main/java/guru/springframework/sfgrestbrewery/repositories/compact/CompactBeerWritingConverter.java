@@ -0,0 +1,34 @@
+package guru.springframework.sfgrestbrewery.repositories.compact;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.r2dbc.core.Parameter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Writes a beer as a row of the compact format (see schema-compact.sql).
+ */
+@WritingConverter
+public class CompactBeerWritingConverter implements Converter<Beer, OutboundRow> {
+
+    @Override
+    public OutboundRow convert(Beer beer) {
+        OutboundRow row = new OutboundRow();
+        row.put("id", Parameter.fromOrEmpty(beer.getId(), Integer.class));
+        row.put("version", Parameter.fromOrEmpty(beer.getVersion(), Long.class));
+        row.put("beer_name", Parameter.fromOrEmpty(beer.getBeerName(), String.class));
+        row.put("beer_style", Parameter.fromOrEmpty(beer.getBeerStyle() == null ? null
+                : CompactBeerCodec.toStyleCode(beer.getBeerStyle()), Short.class));
+        row.put("upc", Parameter.fromOrEmpty(beer.getUpc() == null ? null
+                : CompactBeerCodec.toUpcNumber(beer.getUpc()), Long.class));
+        row.put("quantity_on_hand", Parameter.fromOrEmpty(beer.getQuantityOnHand(), Integer.class));
+        row.put("price", Parameter.fromOrEmpty(beer.getPrice() == null ? null
+                : CompactBeerCodec.toCents(beer.getPrice()), Long.class));
+        row.put("created_date", Parameter.fromOrEmpty(beer.getCreatedDate(), LocalDateTime.class));
+        row.put("last_modified_date", Parameter.fromOrEmpty(beer.getLastModifiedDate(), LocalDateTime.class));
+        return row;
+    }
+}
@@ -0,0 +1,25 @@
+package guru.springframework.sfgrestbrewery.repositories.compact;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+
+import java.util.List;
+
+/**
+ * Maps beers to and from the compact row format, {@code brewery.storage.compact=true}. Replaces the custom
+ * conversions Spring Boot would create, the dialect's own converters are kept.
+ */
+@Configuration
+@ConditionalOnProperty(value = "brewery.storage.compact", havingValue = "true")
+public class CompactStorageConfig {
+
+    @Bean
+    R2dbcCustomConversions r2dbcCustomConversions(ConnectionFactory connectionFactory) {
+        return R2dbcCustomConversions.of(DialectResolver.getDialect(connectionFactory),
+                List.of(new CompactBeerReadingConverter(), new CompactBeerWritingConverter()));
+    }
+}
@@ -0,0 +1,219 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many calls of one kind may run at once, adjusted from their latency the way a gradient limiter does: every
+ * {@code windowSize} calls the average latency of the window is compared with the long term average, and the limit
+ * shrinks by that ratio when calls are getting slower (a queue is building up somewhere behind us) and grows by
+ * a few slots, the square root of the limit, while they are not. The long term average slowly follows the short one,
+ * so a lasting change of the load becomes the new normal. A call that timed out shrinks the limit by a tenth.
+ * <p>
+ * Calls over the limit wait up to {@code maxQueueWait} for a slot in a queue of at most {@code maxQueueSize},
+ * and are rejected when the queue is full or the wait runs out.
+ */
+class AdaptiveConcurrencyLimit {
+
+    /**
+     * Held while the call runs, {@link #release} it exactly once.
+     */
+    class Permit {
+        private final long startedNanos = System.nanoTime();
+        private boolean released;
+
+        void release(boolean timedOut) {
+            List<Waiter> admitted;
+            synchronized (AdaptiveConcurrencyLimit.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                inFlight--;
+                onSample(System.nanoTime() - startedNanos, timedOut);
+                admitted = admitWaiting();
+            }
+            admitted.forEach(Waiter::admit);
+        }
+
+        private void abandon() {
+            List<Waiter> admitted;
+            synchronized (AdaptiveConcurrencyLimit.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                inFlight--;
+                admitted = admitWaiting();
+            }
+            admitted.forEach(Waiter::admit);
+        }
+    }
+
+    private static class Waiter {
+        final MonoSink<Permit> sink;
+        Disposable giveUp;
+        Permit permit;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        void admit() {
+            sink.success(permit); //outside the lock, the caller goes on running on this thread
+        }
+    }
+
+    static class RejectedException extends RuntimeException {
+        RejectedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double LONG_RTT_WEIGHT = 0.05;
+    private static final double TIMEOUT_BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSize;
+    private final int maxQueueSize;
+    private final Duration maxQueueWait;
+
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double longRttNanos;
+    private long windowRttNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit, int windowSize,
+                             int maxQueueSize, Duration maxQueueWait) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSize = windowSize;
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    /**
+     * A permit right away when under the limit, otherwise once one is released, or a {@link RejectedException}.
+     */
+    Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            sink.onCancel(() -> leaveQueue(waiter));
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    waiter.permit = grant();
+                } else if (waiting.size() < maxQueueSize) {
+                    waiting.addLast(waiter);
+                    waiter.giveUp = Schedulers.parallel().schedule(() -> giveUp(waiter),
+                            maxQueueWait.toNanos(), TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+            if (waiter.permit != null) {
+                waiter.admit();
+            } else {
+                sink.error(new RejectedException(name + " concurrency limit reached"));
+            }
+        }).doOnDiscard(Permit.class, Permit::abandon); //granted just as the caller went away
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private Permit grant() {
+        inFlight++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        return new Permit();
+    }
+
+    private void giveUp(Waiter waiter) {
+        synchronized (this) {
+            if (!waiting.remove(waiter)) {
+                return;
+            }
+        }
+        waiter.sink.error(new RejectedException(
+                "Waited " + maxQueueWait.toMillis() + "ms for the " + name + " concurrency limit"));
+    }
+
+    private synchronized void leaveQueue(Waiter waiter) {
+        if (waiting.remove(waiter)) {
+            waiter.giveUp.dispose();
+        }
+    }
+
+    private List<Waiter> admitWaiting() {
+        List<Waiter> admitted = new ArrayList<>();
+        while (inFlight < (int) limit && !waiting.isEmpty()) {
+            Waiter waiter = waiting.pollFirst();
+            waiter.giveUp.dispose();
+            waiter.permit = grant();
+            admitted.add(waiter);
+        }
+        return admitted;
+    }
+
+    private void onSample(long rttNanos, boolean timedOut) {
+        if (timedOut) {
+            limit = Math.max(minLimit, limit * TIMEOUT_BACKOFF);
+            return;
+        }
+
+        windowRttNanos += rttNanos;
+        windowSamples++;
+        if (windowSamples < windowSize) {
+            return;
+        }
+
+        double shortRtt = (double) windowRttNanos / windowSamples;
+        boolean saturated = windowMaxInFlight * 2 >= limit;
+        windowRttNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = inFlight;
+
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+            return;
+        }
+        longRttNanos = longRttNanos * (1 - LONG_RTT_WEIGHT) + shortRtt * LONG_RTT_WEIGHT;
+        if (longRttNanos > shortRtt * 2) {
+            longRttNanos = shortRtt * 2; //recover quickly once the slow spell is over
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, RTT_TOLERANCE * longRttNanos / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        if (newLimit > limit && !saturated) {
+            return; //not using what we have, latency says nothing about more
+        }
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
@@ -0,0 +1,125 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the routes it filters under the {@link AdaptiveConcurrencyLimit} of reads (GET, HEAD) or writes, so that
+ * under overload the calls over the limit are turned away with a 503 and a {@code Retry-After} right away, instead of
+ * all of them piling up on the database until they time out. A call holds its slot until its response is written.
+ */
+@Slf4j
+public class ConcurrencyLimitFilter implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimit reads;
+    private final AdaptiveConcurrencyLimit writes;
+    private final Counter readsRejected;
+    private final Counter writesRejected;
+
+    ConcurrencyLimitFilter(boolean enabled, AdaptiveConcurrencyLimit reads, AdaptiveConcurrencyLimit writes,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.reads = reads;
+        this.writes = writes;
+        this.readsRejected = meterRegistry.counter("brewery.concurrency.rejected", "kind", "read");
+        this.writesRejected = meterRegistry.counter("brewery.concurrency.rejected", "kind", "write");
+
+        register(meterRegistry, "read", reads);
+        register(meterRegistry, "write", writes);
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        if (!enabled) {
+            return next.handle(request);
+        }
+
+        boolean read = request.method() == HttpMethod.GET || request.method() == HttpMethod.HEAD;
+        AdaptiveConcurrencyLimit limit = read ? reads : writes;
+
+        return limit.acquire()
+                .flatMap(permit -> next.handle(request)
+                        .map(response -> (ServerResponse) new ReleasingResponse(response, permit))
+                        .doOnError(e -> permit.release(isTimeout(e)))
+                        .doOnCancel(() -> permit.release(false))
+                        .switchIfEmpty(Mono.fromRunnable(() -> permit.release(false))))
+                .onErrorResume(AdaptiveConcurrencyLimit.RejectedException.class, e -> {
+                    log.debug("Rejecting {} {}: {}", request.method(), request.path(), e.getMessage());
+                    (read ? readsRejected : writesRejected).increment();
+                    return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                            .build();
+                });
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        return error instanceof ResponseStatusException
+                && ((ResponseStatusException) error).getStatus() == HttpStatus.GATEWAY_TIMEOUT;
+    }
+
+    private static void register(MeterRegistry meterRegistry, String kind, AdaptiveConcurrencyLimit limit) {
+        Tags tags = Tags.of("kind", kind);
+        meterRegistry.gauge("brewery.concurrency.limit", tags, limit, AdaptiveConcurrencyLimit::getLimit);
+        meterRegistry.gauge("brewery.concurrency.in.flight", tags, limit, AdaptiveConcurrencyLimit::getInFlight);
+        meterRegistry.gauge("brewery.concurrency.queued", tags, limit, AdaptiveConcurrencyLimit::getWaiting);
+    }
+
+    /**
+     * Lets go of the slot once the body has been written, a streamed body may still be reading from the database.
+     */
+    private static class ReleasingResponse implements ServerResponse {
+
+        private final ServerResponse response;
+        private final AdaptiveConcurrencyLimit.Permit permit;
+
+        ReleasingResponse(ServerResponse response, AdaptiveConcurrencyLimit.Permit permit) {
+            this.response = response;
+            this.permit = permit;
+        }
+
+        @Override
+        public HttpStatus statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public int rawStatusCode() {
+            return response.rawStatusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return response.headers();
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> cookies() {
+            return response.cookies();
+        }
+
+        @Override
+        public Mono<Void> writeTo(ServerWebExchange exchange, Context context) {
+            return response.writeTo(exchange, context)
+                    .doOnSuccess(done -> permit.release(false))
+                    .doOnError(e -> permit.release(isTimeout(e)))
+                    .doOnCancel(() -> permit.release(false));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import guru.springframework.sfgrestbrewery.cache.ExpiringLruCache;
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.R2dbcNonTransientResourceException;
+import io.r2dbc.spi.R2dbcTransientException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how long the service waits for the database.
+ * <ul>
+ *     <li>Every call gets the timeout of its kind (lookup, listing, write), shortened to what is left of the request
+ *     deadline, see {@link RequestResilienceFilter}. Running out ends in a 504.</li>
+ *     <li>Lookups, which are idempotent, can be hedged: if the first attempt has not answered after the 95th
+ *     percentile latency of the recent lookups, a second one is sent and whichever answers first, found or not, wins.</li>
+ *     <li>Lookups that fail because the database is timing out or overloaded are answered with the last known good
+ *     copy of the beer, if there is one, and the response is marked stale.</li>
+ * </ul>
+ */
+@Slf4j
+public class DatabaseCallGuard {
+
+    private static class KnownGood {
+        final Beer beer;
+        final long readAtNanos = System.nanoTime();
+
+        KnownGood(Beer beer) {
+            this.beer = beer.toBuilder().build();
+        }
+    }
+
+    private final Duration lookupTimeout;
+    private final Duration listTimeout;
+    private final Duration writeTimeout;
+
+    private final boolean hedgingEnabled;
+    private final Duration initialHedgeDelay;
+    private final Duration minHedgeDelay;
+    private final Map<String, LatencyRing> latencies = new ConcurrentHashMap<>();
+
+    private final boolean fallbackEnabled;
+    private final ExpiringLruCache<String, KnownGood> lastKnownGood;
+
+    private final Counter timeouts;
+    private final Counter hedges;
+    private final Counter fallbacks;
+
+    public DatabaseCallGuard(Duration lookupTimeout, Duration listTimeout, Duration writeTimeout,
+                             boolean hedgingEnabled, Duration initialHedgeDelay, Duration minHedgeDelay,
+                             boolean fallbackEnabled, int fallbackMaxSize, Duration fallbackTtl,
+                             MeterRegistry meterRegistry) {
+        this.lookupTimeout = lookupTimeout;
+        this.listTimeout = listTimeout;
+        this.writeTimeout = writeTimeout;
+        this.hedgingEnabled = hedgingEnabled;
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.minHedgeDelay = minHedgeDelay;
+        this.fallbackEnabled = fallbackEnabled;
+        this.lastKnownGood = new ExpiringLruCache<>(fallbackMaxSize, fallbackTtl);
+
+        this.timeouts = meterRegistry.counter("brewery.db.timeouts");
+        this.hedges = meterRegistry.counter("brewery.db.hedged.requests");
+        this.fallbacks = meterRegistry.counter("brewery.db.stale.responses");
+    }
+
+    /**
+     * A single beer lookup, {@code key} names it for the latency statistics and the last known good copy,
+     * e.g. {@code "id:42"}.
+     */
+    public Mono<Beer> lookup(String operation, String key, Supplier<Mono<Beer>> query) {
+        LatencyRing latency = latencies.computeIfAbsent(operation, op -> new LatencyRing(256, 32));
+
+        //not finding the beer is an answer too, it ends the race and counts for the latency like any other
+        Mono<Optional<Beer>> attempt = Mono.defer(() -> {
+            long started = System.nanoTime();
+            return query.get()
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doOnNext(answer -> latency.record(System.nanoTime() - started));
+        });
+
+        Mono<Optional<Beer>> call = attempt;
+        if (hedgingEnabled) {
+            Duration hedgeDelay = hedgeDelay(latency);
+            call = Mono.firstWithSignal(attempt, Mono.delay(hedgeDelay).doOnNext(tick -> hedges.increment()).then(attempt));
+        }
+
+        return withDeadline(call, lookupTimeout)
+                .flatMap(Mono::justOrEmpty)
+                .doOnNext(this::remember)
+                .onErrorResume(this::isOverload, e -> fallback(key, e));
+    }
+
+    public <T> Flux<T> list(Flux<T> query) {
+        return Flux.deferContextual(context -> query.timeout(timeoutFor(listTimeout, context)))
+                .onErrorMap(TimeoutException.class, this::gatewayTimeout);
+    }
+
+    public <T> Mono<T> write(Mono<T> write) {
+        return withDeadline(write, writeTimeout);
+    }
+
+    @EventListener
+    public void onBeerChanged(BeerChangedEvent event) {
+        if (event.getBefore() != null) {
+            lastKnownGood.remove("id:" + event.getBefore().getId());
+            lastKnownGood.remove("upc:" + event.getBefore().getUpc());
+        }
+        if (event.getAfter() != null) {
+            remember(event.getAfter());
+        }
+    }
+
+    private <T> Mono<T> withDeadline(Mono<T> call, Duration timeout) {
+        return Mono.deferContextual(context -> call.timeout(timeoutFor(timeout, context)))
+                .onErrorMap(TimeoutException.class, this::gatewayTimeout);
+    }
+
+    private static Duration timeoutFor(Duration timeout, ContextView context) {
+        Duration remaining = RequestContext.remaining(context).orElse(timeout);
+        if (remaining.isNegative() || remaining.isZero()) {
+            return Duration.ofNanos(1); //out of time already, fail right away
+        }
+        return remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+
+    private Duration hedgeDelay(LatencyRing latency) {
+        long p95 = latency.p95Nanos();
+        if (p95 < 0) {
+            return initialHedgeDelay;
+        }
+        return Duration.ofNanos(Math.max(p95, minHedgeDelay.toNanos()));
+    }
+
+    private void remember(Beer beer) {
+        if (fallbackEnabled) {
+            KnownGood knownGood = new KnownGood(beer);
+            lastKnownGood.put("id:" + beer.getId(), knownGood);
+            if (beer.getUpc() != null) {
+                lastKnownGood.put("upc:" + beer.getUpc(), knownGood);
+            }
+        }
+    }
+
+    private Mono<Beer> fallback(String key, Throwable error) {
+        KnownGood knownGood = fallbackEnabled ? lastKnownGood.get(key) : null;
+        if (knownGood == null) {
+            return Mono.error(error);
+        }
+
+        Duration age = Duration.ofNanos(System.nanoTime() - knownGood.readAtNanos);
+        log.warn("Serving {} from the last known good copy ({} old): {}", key, age, error.toString());
+        fallbacks.increment();
+        return Mono.deferContextual(context -> {
+            RequestContext.markStale(context, age);
+            return Mono.just(knownGood.beer.toBuilder().build());
+        });
+    }
+
+    private boolean isOverload(Throwable error) {
+        Throwable cause = error instanceof ResponseStatusException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof TimeoutException
+                || cause instanceof TransientDataAccessException
+                || cause instanceof DataAccessResourceFailureException
+                || cause instanceof R2dbcTransientException
+                || cause instanceof R2dbcNonTransientResourceException;
+    }
+
+    private ResponseStatusException gatewayTimeout(Throwable timeout) {
+        timeouts.increment();
+        return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Database call timed out", timeout);
+    }
+}
@@ -0,0 +1,40 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import java.util.Arrays;
+
+/**
+ * The latencies of the last few hundred calls of one operation, and their 95th percentile, recomputed every few
+ * samples so reading it is free.
+ */
+class LatencyRing {
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private final int minSamples;
+    private long recorded;
+    private volatile long p95Nanos = -1;
+
+    LatencyRing(int size, int minSamples) {
+        this.samples = new long[size];
+        this.minSamples = minSamples;
+    }
+
+    synchronized void record(long nanos) {
+        samples[(int) (recorded % samples.length)] = nanos;
+        recorded++;
+
+        if (recorded >= minSamples && recorded % RECOMPUTE_EVERY == 0) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(recorded, samples.length));
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        }
+    }
+
+    /**
+     * -1 until there are enough samples.
+     */
+    long p95Nanos() {
+        return p95Nanos;
+    }
+}
@@ -0,0 +1,72 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * What a request carries down to the database calls in the Reactor context: when it has to be answered by, and a
+ * flag the calls set when they answered from the last known good copy instead of the database.
+ */
+public final class RequestContext {
+
+    private static final String DEADLINE_KEY = RequestContext.class.getName() + ".deadline";
+    private static final String STALENESS_KEY = RequestContext.class.getName() + ".staleness";
+
+    /**
+     * Set on the way up by whatever served stale data, read before the response is committed.
+     */
+    public static class Staleness {
+        private volatile Duration age;
+
+        void markStale(Duration age) {
+            this.age = age;
+        }
+
+        public boolean isStale() {
+            return age != null;
+        }
+
+        public Duration getAge() {
+            return age;
+        }
+    }
+
+    private RequestContext() {
+    }
+
+    public static Context withDeadline(Context context, long deadlineNanos) {
+        return context.put(DEADLINE_KEY, deadlineNanos);
+    }
+
+    /**
+     * For work that runs as long as the request streams, like a bulk update, whose calls are bounded one by one.
+     */
+    public static Context withoutDeadline(Context context) {
+        return context.delete(DEADLINE_KEY);
+    }
+
+    public static Context withStaleness(Context context, Staleness staleness) {
+        return context.put(STALENESS_KEY, staleness);
+    }
+
+    /**
+     * Time left until the request's deadline, empty outside a request.
+     */
+    public static Optional<Duration> remaining(ContextView context) {
+        return context.<Long>getOrEmpty(DEADLINE_KEY).map(deadline -> Duration.ofNanos(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Whether something on the way up served stale data for this request.
+     */
+    public static boolean isStale(ContextView context) {
+        return context.<Staleness>getOrEmpty(STALENESS_KEY).map(Staleness::isStale).orElse(false);
+    }
+
+    static void markStale(ContextView context, Duration age) {
+        context.<Staleness>getOrEmpty(STALENESS_KEY).ifPresent(staleness -> staleness.markStale(age));
+    }
+}
@@ -0,0 +1,71 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Gives every request a deadline, {@code X-Request-Timeout} milliseconds if the client sent one (capped at
+ * {@code brewery.request.max-timeout}), {@code brewery.request.default-timeout} otherwise, which the database
+ * calls of {@link DatabaseCallGuard} never outlast. Marks responses served from the last known good copy with
+ * {@code Warning: 110} and an {@code Age} header.
+ */
+@Slf4j
+@Component
+public class RequestResilienceFilter implements WebFilter {
+
+    public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final Duration defaultTimeout;
+    private final Duration maxTimeout;
+
+    public RequestResilienceFilter(@Value("${brewery.request.default-timeout:PT10S}") Duration defaultTimeout,
+                                   @Value("${brewery.request.max-timeout:PT30S}") Duration maxTimeout) {
+        this.defaultTimeout = defaultTimeout;
+        this.maxTimeout = maxTimeout;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long deadline = System.nanoTime() + timeoutOf(exchange).toNanos();
+
+        RequestContext.Staleness staleness = new RequestContext.Staleness();
+        exchange.getResponse().beforeCommit(() -> {
+            if (staleness.isStale()) {
+                HttpHeaders headers = exchange.getResponse().getHeaders();
+                headers.set(HttpHeaders.WARNING, "110 - \"Response is Stale\"");
+                headers.set(HttpHeaders.AGE, String.valueOf(staleness.getAge().toSeconds()));
+            }
+            return Mono.empty();
+        });
+
+        return chain.filter(exchange)
+                .contextWrite(context -> RequestContext.withStaleness(RequestContext.withDeadline(context, deadline), staleness));
+    }
+
+    private Duration timeoutOf(ServerWebExchange exchange) {
+        String requested = exchange.getRequest().getHeaders().getFirst(REQUEST_TIMEOUT_HEADER);
+        if (requested == null) {
+            return defaultTimeout;
+        }
+        long millis;
+        try {
+            millis = Long.parseLong(requested.trim());
+        } catch (NumberFormatException e) {
+            millis = 0;
+        }
+        if (millis <= 0) {
+            log.debug("Ignoring invalid {} header {}", REQUEST_TIMEOUT_HEADER, requested);
+            return defaultTimeout;
+        }
+        Duration timeout = Duration.ofMillis(millis);
+        return timeout.compareTo(maxTimeout) > 0 ? maxTimeout : timeout;
+    }
+}
@@ -0,0 +1,48 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    DatabaseCallGuard databaseCallGuard(@Value("${brewery.db.timeout.lookup:PT1S}") Duration lookupTimeout,
+                                        @Value("${brewery.db.timeout.list:PT3S}") Duration listTimeout,
+                                        @Value("${brewery.db.timeout.write:PT3S}") Duration writeTimeout,
+                                        @Value("${brewery.db.hedge.enabled:false}") boolean hedgingEnabled,
+                                        @Value("${brewery.db.hedge.initial-delay:50ms}") Duration initialHedgeDelay,
+                                        @Value("${brewery.db.hedge.min-delay:5ms}") Duration minHedgeDelay,
+                                        @Value("${brewery.db.fallback.enabled:true}") boolean fallbackEnabled,
+                                        @Value("${brewery.db.fallback.max-size:10000}") int fallbackMaxSize,
+                                        @Value("${brewery.db.fallback.ttl:PT1H}") Duration fallbackTtl,
+                                        MeterRegistry meterRegistry) {
+        return new DatabaseCallGuard(lookupTimeout, listTimeout, writeTimeout,
+                hedgingEnabled, initialHedgeDelay, minHedgeDelay,
+                fallbackEnabled, fallbackMaxSize, fallbackTtl, meterRegistry);
+    }
+
+    @Bean
+    ConcurrencyLimitFilter concurrencyLimitFilter(@Value("${brewery.concurrency.enabled:true}") boolean enabled,
+                                                  @Value("${brewery.concurrency.read.initial-limit:50}") int readInitialLimit,
+                                                  @Value("${brewery.concurrency.read.min-limit:8}") int readMinLimit,
+                                                  @Value("${brewery.concurrency.read.max-limit:500}") int readMaxLimit,
+                                                  @Value("${brewery.concurrency.write.initial-limit:20}") int writeInitialLimit,
+                                                  @Value("${brewery.concurrency.write.min-limit:4}") int writeMinLimit,
+                                                  @Value("${brewery.concurrency.write.max-limit:200}") int writeMaxLimit,
+                                                  @Value("${brewery.concurrency.window-size:20}") int windowSize,
+                                                  @Value("${brewery.concurrency.max-queue-size:100}") int maxQueueSize,
+                                                  @Value("${brewery.concurrency.max-queue-wait:50ms}") Duration maxQueueWait,
+                                                  MeterRegistry meterRegistry) {
+        return new ConcurrencyLimitFilter(enabled,
+                new AdaptiveConcurrencyLimit("read", readInitialLimit, readMinLimit, readMaxLimit,
+                        windowSize, maxQueueSize, maxQueueWait),
+                new AdaptiveConcurrencyLimit("write", writeInitialLimit, writeMinLimit, writeMaxLimit,
+                        windowSize, maxQueueSize, maxQueueWait),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,26 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.BeerChange;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Published for a change another instance wrote to the shared database, read from the change log. Unlike
+ * {@link BeerChangedEvent} it only says which beer changed, listeners re-read the row if they need it.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BeerChangeFeedEvent {
+
+    private final BeerChange change;
+
+    public Integer getBeerId() {
+        return change.getBeerId();
+    }
+
+    public BeerChangedEvent.Type getType() {
+        return change.getChangeType();
+    }
+}
@@ -0,0 +1,46 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the {@link BeerService} write paths after a change has been written to the database, so that
+ * in-memory views of the catalog can be kept current without re-reading it. Carries copies of the row before
+ * and after the change: {@code before} is null for {@link Type#CREATED}, {@code after} is null for
+ * {@link Type#DELETED}.
+ */
+@Getter
+@ToString
+public class BeerChangedEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+    private final Beer before;
+    private final Beer after;
+
+    private BeerChangedEvent(Type type, Beer before, Beer after) {
+        this.type = type;
+        this.before = before == null ? null : before.toBuilder().build();
+        this.after = after == null ? null : after.toBuilder().build();
+    }
+
+    public static BeerChangedEvent created(Beer after) {
+        return new BeerChangedEvent(Type.CREATED, null, after);
+    }
+
+    public static BeerChangedEvent updated(Beer before, Beer after) {
+        return new BeerChangedEvent(Type.UPDATED, before, after);
+    }
+
+    public static BeerChangedEvent deleted(Beer before) {
+        return new BeerChangedEvent(Type.DELETED, before, null);
+    }
+
+    public Integer getBeerId() {
+        return after != null ? after.getId() : before.getId();
+    }
+}
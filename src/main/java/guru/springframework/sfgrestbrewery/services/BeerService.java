@@ -1,10 +1,14 @@
 package guru.springframework.sfgrestbrewery.services;
 
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateResultDto;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
@@ -15,6 +19,8 @@ import java.util.UUID;
 public interface BeerService {
     Mono<BeerPagedList> listBeers(String beerName, BeerStyleEnum beerStyle, PageRequest pageRequest, Boolean showInventoryOnHand);
 
+    Mono<BeerPagedList> listBeers(BeerFilter filter, PageRequest pageRequest, Boolean showInventoryOnHand);
+
     Mono<BeerDto> getById(Integer beerId, Boolean showInventoryOnHand);
 
     Mono<BeerDto> saveNewBeer(BeerDto beerDto);
@@ -25,6 +31,8 @@ public interface BeerService {
 
     Mono<BeerDto> getByUpc(String upc);
 
+    Flux<BeerPriceUpdateResultDto> updatePrices(Flux<BeerPriceUpdateDto> updates);
+
     void deleteBeerById(Integer beerId);
 
     Mono<Void> reactiveDeleteById(Integer beerId);
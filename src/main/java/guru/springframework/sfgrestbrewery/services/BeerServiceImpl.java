@@ -1,29 +1,50 @@
 package guru.springframework.sfgrestbrewery.services;
 
+import guru.springframework.sfgrestbrewery.cache.BeerExistenceFilter;
+import guru.springframework.sfgrestbrewery.cache.BeerNearCache;
 import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.lifecycle.BackgroundTasks;
+import guru.springframework.sfgrestbrewery.monitoring.RequestTimings;
+import guru.springframework.sfgrestbrewery.repositories.BeerChangeLog;
+import guru.springframework.sfgrestbrewery.repositories.BeerFilterQueries;
+import guru.springframework.sfgrestbrewery.repositories.BeerInserts;
+import guru.springframework.sfgrestbrewery.repositories.BeerPriceUpdates;
+import guru.springframework.sfgrestbrewery.replication.ReadRouting;
+import guru.springframework.sfgrestbrewery.resilience.DatabaseCallGuard;
+import guru.springframework.sfgrestbrewery.resilience.RequestContext;
 import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.repositories.BeerStorageFormat;
 import guru.springframework.sfgrestbrewery.web.controller.NotFoundException;
 import guru.springframework.sfgrestbrewery.web.mappers.BeerMapper;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateResultDto;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
-import org.springframework.data.relational.core.query.Query;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
-import static org.springframework.data.r2dbc.query.Criteria.where;
-
-import static org.springframework.data.relational.core.query.Query.empty;
-import static org.springframework.data.relational.core.query.Query.query;
+import static guru.springframework.sfgrestbrewery.monitoring.RequestTimings.Phase.MAP;
 
 /**
  * Created by jt on 2019-04-20.
@@ -35,105 +56,280 @@ public class BeerServiceImpl implements BeerService {
     private final BeerRepository beerRepository;
     private final BeerMapper beerMapper;
 
-    private final R2dbcEntityTemplate template;
+    private final BeerFilterQueries beerFilterQueries;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BeerChangeLog beerChangeLog;
+    private final BeerNearCache beerNearCache;
+    private final BeerExistenceFilter beerExistenceFilter;
+    private final BeerStorageFormat beerStorageFormat;
+    private final TransactionalOperator transactionalOperator;
+    private final DatabaseCallGuard databaseCallGuard;
+    private final BeerPriceUpdates beerPriceUpdates;
+    private final BeerInserts beerInserts;
+    private final BackgroundTasks backgroundTasks;
+
+    @Value("${brewery.bulk-price.batch-size:500}")
+    private int priceBatchSize;
+
+    @Value("${brewery.bulk-price.write-concurrency:4}")
+    private int priceWriteConcurrency;
 
-    @Cacheable(cacheNames = "beerListCache", condition = "#showInventoryOnHand == false ")
     @Override
     public Mono<BeerPagedList> listBeers(String beerName, BeerStyleEnum beerStyle, PageRequest pageRequest, Boolean showInventoryOnHand) {
-        //Mono is returned because this method is simply returning one object
-        Query query = null; //a query that will be used to perform the search
-
-        if (!StringUtils.isEmpty(beerName) && !StringUtils.isEmpty(beerStyle)){
-            //search both
-            query = query(where("beerName").is(beerName).and("beerStyle").is(beerStyle));
-        }else if (!StringUtils.isEmpty(beerName) && StringUtils.isEmpty(beerStyle)){
-            //search beerServiceName
-            query = query(where("beerName").is(beerName));
-        }else if (StringUtils.isEmpty(beerName) && !StringUtils.isEmpty(beerStyle)){
-            //search beerService Style
-            query = query(where("beerStyle").is(beerStyle));
-        }else {
-            query = empty();
-        }
+        return listBeers(BeerFilter.of(beerName, beerStyle), pageRequest, showInventoryOnHand);
+    }
 
-        //template is going to do a reactive query against the database
-        //query.with(pageRequest) -> is going to get the limit and offset for paging functionality
-        //.map(beerMapper::beerToBeerDto) --> converts each beer into a beerDto
-        //.all -> return a flux of beers coming out of the database
+    @Cacheable(cacheNames = "beerListCache", condition = "#showInventoryOnHand == false ")
+    @Override
+    public Mono<BeerPagedList> listBeers(BeerFilter filter, PageRequest pageRequest, Boolean showInventoryOnHand) {
+        //Mono is returned because this method is simply returning one object
+        //the query for this combination of criteria and sort order is built once and cached, see BeerFilterQueries
+        //.handle(...beerMapper::beerToBeerDto) --> converts each beer into a beerDto, timed for Server-Timing
         //collect(Collectors.toList()) -> collects into a List
         //finally the 'map'  is used to convert the list of beers into a beer page list.
-        return template.select(Beer.class)
-                .matching(query.with(pageRequest))
-                .all()
-                .map(beerMapper::beerToBeerDto)
+        return databaseCallGuard.list(beerFilterQueries.find(filter, pageRequest)
+                        .contextWrite(ReadRouting::preferReplica)) //a replica if there is one, see ReplicationConfig
+                .handle(RequestTimings.timed(MAP, beerMapper::beerToBeerDto))
                 .collect(Collectors.toList())
-                .map(beers -> new BeerPagedList(beers, PageRequest.of(
-                        pageRequest.getPageNumber(),
-                        pageRequest.getPageSize()),
-                        beers.size()));
+                .map(beers -> new BeerPagedList(beers, pageRequest, beers.size()));
     }
 
-    @Cacheable(cacheNames = "beerCache", key = "#beerId", condition = "#showInventoryOnHand == false ")
     @Override
     public Mono<BeerDto> getById(Integer beerId, Boolean showInventoryOnHand) {
+        Mono<Beer> beer = Mono.defer(() -> {
+            Beer cached = beerNearCache.getById(beerId);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            long generation = beerNearCache.generation(); //taken before the read, see BeerNearCache
+            //the near cache is filled from actual reads only, never from the stale fallback of the guard
+            return beerExistenceFilter.byId(beerId, () -> databaseCallGuard.lookup("getById", "id:" + beerId,
+                    () -> beerRepository.findById(beerId)
+                            .contextWrite(ReadRouting::preferReplica)
+                            .doOnNext(found -> beerNearCache.put(generation, found))));
+        });
+
         if (showInventoryOnHand) {
-            return beerRepository.findById(beerId).map(beerMapper::beerToBeerDtoWithInventory);
+            return beer.handle(RequestTimings.timed(MAP, beerMapper::beerToBeerDtoWithInventory));
         } else {
-            return beerRepository.findById(beerId).map(beerMapper::beerToBeerDto);
+            return beer.handle(RequestTimings.timed(MAP, beerMapper::beerToBeerDto));
         }
     }
 
     @Override
     public Mono<BeerDto> saveNewBeer(BeerDto beerDto) {
-        return beerRepository
-                .save(beerMapper.beerDtoToBeer(beerDto))
-                .map(beerMapper::beerToBeerDto);
+        return Mono.fromSupplier(() -> beerStorageFormat.requireStorable(beerMapper.beerDtoToBeer(beerDto)))
+                .flatMap(beerInserts::insert) //the id is allocated up front, see BeerIdAllocator
+                .flatMap(saved -> logChange(BeerChangedEvent.created(saved)))
+                .as(transactionalOperator::transactional)
+                .as(databaseCallGuard::write)
+                .doOnNext(eventPublisher::publishEvent) //after commit
+                .map(event -> beerMapper.beerToBeerDto(event.getAfter()));
     }
 
     @Override
     public Mono<BeerDto> saveNewBeerMono(Mono<BeerDto> beerDto) {
-        return beerDto.map(beerMapper::beerDtoToBeer)
-                .flatMap(beerRepository::save)
-                .map(beerMapper::beerToBeerDto); //when we save something to the repository we actually get a new object back
+        return beerDto.handle(RequestTimings.timed(MAP, beerMapper::beerDtoToBeer))
+                .map(beerStorageFormat::requireStorable)
+                .flatMap(beer -> beerInserts.insert(beer)
+                        .flatMap(saved -> logChange(BeerChangedEvent.created(saved)))
+                        .as(transactionalOperator::transactional)
+                        .as(databaseCallGuard::write))
+                .doOnNext(eventPublisher::publishEvent)
+                .map(event -> beerMapper.beerToBeerDto(event.getAfter())); //when we save something to the repository we actually get a new object back
         // -the result comming out of save is mapped again as a beerDto
     }
 
     @Override
     public Mono<BeerDto> updateBeer(Integer beerId, BeerDto beerDto) {
         return beerRepository.findById(beerId)
+                .as(databaseCallGuard::write)
                 .defaultIfEmpty(Beer.builder().build()) //if nothing comes back a beer object with null 'id' is returned from here
-                .map(beer -> {
+                .flatMap(beer -> {
+                    Beer before = beer.toBuilder().build();
                     beer.setBeerName(beerDto.getBeerName());
                     beer.setBeerStyle(BeerStyleEnum.valueOf(beerDto.getBeerStyle()));
                     beer.setPrice(beerDto.getPrice());
                     beer.setUpc(beerDto.getUpc());
-                    return beer;
-                })
-                .flatMap(updateBeer -> {
-                    if (updateBeer.getId() != null){
-                        return beerRepository.save(updateBeer);
+                    beerStorageFormat.requireStorable(beer);
+
+                    if (beer.getId() != null){
+                        return beerRepository.save(beer)
+                                .flatMap(saved -> logChange(BeerChangedEvent.updated(before, saved)))
+                                .as(transactionalOperator::transactional)
+                                .as(databaseCallGuard::write)
+                                .doOnNext(eventPublisher::publishEvent)
+                                .map(BeerChangedEvent::getAfter);
                     }
-                    return Mono.just(updateBeer);
+                    return Mono.just(beer);
                 })
-                .map(beerMapper::beerToBeerDto);
+                .handle(RequestTimings.timed(MAP, beerMapper::beerToBeerDto));
     }
 
-    @Cacheable(cacheNames = "beerUpcCache")
     @Override
     public Mono<BeerDto> getByUpc(String upc) {
-        return beerRepository.findByUpc(upc).map(beerMapper::beerToBeerDto);
+        return Mono.defer(() -> {
+            Beer cached = beerNearCache.getByUpc(upc);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            if (!beerStorageFormat.canStoreUpc(upc)) {
+                return Mono.empty(); //not a upc the compact format could have stored
+            }
+            long generation = beerNearCache.generation();
+            return beerExistenceFilter.byUpc(upc, () -> databaseCallGuard.lookup("getByUpc", "upc:" + upc,
+                    () -> beerRepository.findByUpc(upc)
+                            .contextWrite(ReadRouting::preferReplica)
+                            .doOnNext(found -> beerNearCache.put(generation, found))));
+        }).handle(RequestTimings.timed(MAP, beerMapper::beerToBeerDto));
+    }
+
+    @Override
+    public Flux<BeerPriceUpdateResultDto> updatePrices(Flux<BeerPriceUpdateDto> updates) {
+        //every batch is one read, one batched conditional update and one change log insert, see BeerPriceUpdates
+        //results come back in request order even though up to priceWriteConcurrency batches are written at a time
+        return updates.index()
+                .buffer(priceBatchSize)
+                .flatMapSequential(batch -> updatePriceBatch(batch)
+                        .contextWrite(RequestContext::withoutDeadline), priceWriteConcurrency); //each batch has the write timeout
+    }
+
+    private Flux<BeerPriceUpdateResultDto> updatePriceBatch(List<Tuple2<Long, BeerPriceUpdateDto>> batch) {
+        BeerPriceUpdateResultDto[] results = new BeerPriceUpdateResultDto[batch.size()];
+        Set<Integer> beerIds = new HashSet<>();
+        Set<String> upcs = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            BeerPriceUpdateDto update = batch.get(i).getT2();
+            if (update.getId() == null && update.getUpc() == null) {
+                results[i] = priceResult(batch.get(i), BeerPriceUpdateResultDto.Status.INVALID, "id or upc is required");
+            } else if (update.getPrice() == null || update.getPrice().signum() < 0) {
+                results[i] = priceResult(batch.get(i), BeerPriceUpdateResultDto.Status.INVALID, "price must be zero or more");
+            } else if (update.getId() != null) {
+                beerIds.add(update.getId());
+            } else if (beerStorageFormat.canStoreUpc(update.getUpc())) {
+                upcs.add(update.getUpc());
+            } else {
+                results[i] = priceResult(batch.get(i), BeerPriceUpdateResultDto.Status.NOT_FOUND, null);
+            }
+        }
+
+        return beerPriceUpdates.findAllByIdOrUpc(beerIds, upcs)
+                .collectList()
+                .flatMap(beers -> {
+                    Map<Integer, Beer> byId = new HashMap<>();
+                    Map<String, Beer> byUpc = new HashMap<>();
+                    beers.forEach(beer -> {
+                        byId.put(beer.getId(), beer);
+                        if (beer.getUpc() != null) {
+                            byUpc.putIfAbsent(beer.getUpc(), beer);
+                        }
+                    });
+
+                    //a beer repriced twice in one batch gets both updates in order, the second expecting the first's price
+                    Map<Integer, Beer> latest = new HashMap<>();
+                    List<BeerChangedEvent> changes = new ArrayList<>();
+                    List<Integer> positions = new ArrayList<>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (results[i] != null) {
+                            continue;
+                        }
+                        BeerPriceUpdateDto update = batch.get(i).getT2();
+                        Beer found = update.getId() != null ? byId.get(update.getId()) : byUpc.get(update.getUpc());
+                        if (found == null) {
+                            results[i] = priceResult(batch.get(i), BeerPriceUpdateResultDto.Status.NOT_FOUND, null);
+                            continue;
+                        }
+
+                        Beer before = latest.getOrDefault(found.getId(), found);
+                        Beer after = before.toBuilder().price(update.getPrice()).build();
+                        try {
+                            beerStorageFormat.requireStorable(after);
+                        } catch (ServerWebInputException e) {
+                            results[i] = priceResult(batch.get(i), BeerPriceUpdateResultDto.Status.INVALID, e.getReason());
+                            continue;
+                        }
+                        latest.put(after.getId(), after);
+                        changes.add(BeerChangedEvent.updated(before, after));
+                        positions.add(i);
+                    }
+
+                    if (changes.isEmpty()) {
+                        return Mono.just(List.<BeerChangedEvent>of());
+                    }
+                    return beerPriceUpdates.updatePrices(changes)
+                            .collectList()
+                            .flatMap(updated -> {
+                                List<BeerChangedEvent> written = new ArrayList<>();
+                                for (int j = 0; j < changes.size(); j++) {
+                                    int position = positions.get(j);
+                                    BeerChangedEvent change = changes.get(j);
+                                    if (updated.get(j)) {
+                                        written.add(change);
+                                        results[position] = priceResult(batch.get(position), change.getAfter(), BeerPriceUpdateResultDto.Status.UPDATED);
+                                    } else {
+                                        results[position] = priceResult(batch.get(position), change.getAfter(), BeerPriceUpdateResultDto.Status.CONFLICT);
+                                    }
+                                }
+                                return beerChangeLog.appendAll(written).thenReturn(written);
+                            })
+                            .as(transactionalOperator::transactional)
+                            .as(databaseCallGuard::write);
+                })
+                .doOnNext(written -> written.forEach(eventPublisher::publishEvent)) //after commit
+                .thenMany(Flux.defer(() -> Flux.fromArray(results)));
+    }
+
+    private static BeerPriceUpdateResultDto priceResult(Tuple2<Long, BeerPriceUpdateDto> update,
+                                                        BeerPriceUpdateResultDto.Status status, String message) {
+        return BeerPriceUpdateResultDto.builder()
+                .index(update.getT1())
+                .id(update.getT2().getId())
+                .upc(update.getT2().getUpc())
+                .price(update.getT2().getPrice())
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    private static BeerPriceUpdateResultDto priceResult(Tuple2<Long, BeerPriceUpdateDto> update, Beer beer,
+                                                        BeerPriceUpdateResultDto.Status status) {
+        return BeerPriceUpdateResultDto.builder()
+                .index(update.getT1())
+                .id(beer.getId())
+                .upc(beer.getUpc())
+                .price(update.getT2().getPrice())
+                .status(status)
+                .build();
     }
 
     @Override
     public void deleteBeerById(Integer beerId) {
-        beerRepository.deleteById(beerId).subscribe();
+        Mono<BeerChangedEvent> delete = beerRepository.findById(beerId)
+                .flatMap(beer -> beerRepository.deleteById(beer.getId())
+                        .then(logChange(BeerChangedEvent.deleted(beer)))
+                        .as(transactionalOperator::transactional))
+                .as(databaseCallGuard::write)
+                .doOnNext(eventPublisher::publishEvent);
+        backgroundTasks.track("deleteBeerById " + beerId, delete); //shutdown waits for it
     }
 
     @Override
     public Mono<Void> reactiveDeleteById(Integer beerId) {
         return beerRepository.findById(beerId)
                 .switchIfEmpty(Mono.error(new NotFoundException()))//emits a mono with a not found exception in case the find operation does not succeed
-                .map(beer -> beer.getId())
-                .flatMap(foundId -> beerRepository.deleteById(foundId));
+                .flatMap(beer -> beerRepository.deleteById(beer.getId())
+                        .then(logChange(BeerChangedEvent.deleted(beer)))
+                        .as(transactionalOperator::transactional))
+                .as(databaseCallGuard::write)
+                .doOnNext(eventPublisher::publishEvent)
+                .then();
+    }
+
+    /**
+     * Appends the change to the change log, in the transaction of the write, so other instances see it too.
+     * The event itself is published once the transaction has committed.
+     */
+    private Mono<BeerChangedEvent> logChange(BeerChangedEvent event) {
+        return beerChangeLog.append(event).thenReturn(event);
     }
 }
@@ -0,0 +1,26 @@
+package guru.springframework.sfgrestbrewery.sharding;
+
+import guru.springframework.sfgrestbrewery.repositories.BeerIdAllocator;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.Value;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * One database holding a partition of the beer table.
+ */
+@Value
+public class BeerShard {
+
+    int index;
+    String url;
+    ConnectionFactory connectionFactory;
+    DatabaseClient databaseClient;
+    R2dbcEntityTemplate template;
+    BeerIdAllocator idAllocator;
+
+    @Override
+    public String toString() {
+        return "shard " + index + " (" + url + ")";
+    }
+}
@@ -0,0 +1,119 @@
+package guru.springframework.sfgrestbrewery.sharding;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerIdAllocator;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * The shards of the beer table and which one a row lives on.
+ * <p>
+ * Ids are allocated per shard as {@code beer_id_seq * shard count + shard index}, so every id is unique across
+ * shards and the owning shard of any id is {@code id % shard count}, whatever the strategy that placed the row:
+ * <ul>
+ *     <li>{@link Strategy#STYLE}: all beers of a style are on one shard, listings filtered by style only query the
+ *     shards of those styles. A beer can't change to a style that lives on another shard.</li>
+ *     <li>{@link Strategy#HASH}: new beers are spread round robin, so rows are placed by their id.</li>
+ * </ul>
+ */
+public class BeerShards {
+
+    public enum Strategy {
+        STYLE, HASH
+    }
+
+    private final List<BeerShard> shards;
+    private final Strategy strategy;
+    private final AtomicInteger nextPlacement = new AtomicInteger();
+
+    public BeerShards(List<BeerShard> shards, Strategy strategy) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.strategy = strategy;
+    }
+
+    public List<BeerShard> getShards() {
+        return shards;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Merges the beers of every shard, each in {@code order} already, into one stream in that order.
+     */
+    public static Flux<Beer> mergeOrdered(Comparator<? super Beer> order, List<Flux<Beer>> perShard) {
+        @SuppressWarnings("unchecked") //no generic arrays, every element is a Flux<Beer>
+        Flux<Beer>[] sources = perShard.toArray(new Flux[0]);
+        return Flux.mergeOrdered(order, sources);
+    }
+
+    public BeerShard ownerOf(Integer beerId) {
+        return shards.get(Math.floorMod(beerId, shards.size()));
+    }
+
+    /**
+     * Where a new beer goes.
+     */
+    public BeerShard placementFor(Beer beer) {
+        if (strategy == Strategy.STYLE) {
+            return forStyle(beer.getBeerStyle());
+        }
+        return shards.get(Math.floorMod(nextPlacement.getAndIncrement(), shards.size()));
+    }
+
+    /**
+     * Whether an existing beer can be saved as it is on the shard it lives on.
+     */
+    public boolean staysOnOwner(Beer beer) {
+        return strategy != Strategy.STYLE || forStyle(beer.getBeerStyle()) == ownerOf(beer.getId());
+    }
+
+    /**
+     * The shards that can hold rows matching the filter.
+     */
+    public List<BeerShard> shardsFor(BeerFilter filter) {
+        if (strategy != Strategy.STYLE || filter == null || filter.getBeerStyles() == null || filter.getBeerStyles().isEmpty()) {
+            return shards;
+        }
+        Set<Integer> indexes = new TreeSet<>();
+        for (BeerStyleEnum beerStyle : filter.getBeerStyles()) {
+            indexes.add(forStyle(beerStyle).getIndex());
+        }
+        return indexes.stream().map(shards::get).collect(Collectors.toList());
+    }
+
+    public Mono<Integer> nextId(BeerShard shard) {
+        return nextIds(shard, 1).map(ids -> Math.toIntExact(ids[0]));
+    }
+
+    /**
+     * {@code count} ids for new beers on the shard, from the blocks of its sequence (see {@link BeerIdAllocator}).
+     */
+    public Mono<long[]> nextIds(BeerShard shard, int count) {
+        return shard.getIdAllocator().next(count)
+                .map(seqs -> {
+                    long[] ids = new long[seqs.length];
+                    for (int i = 0; i < seqs.length; i++) {
+                        ids[i] = seqs[i] * shards.size() + shard.getIndex();
+                    }
+                    return ids;
+                });
+    }
+
+    private BeerShard forStyle(BeerStyleEnum beerStyle) {
+        return beerStyle == null ? shards.get(0) : shards.get(beerStyle.ordinal() % shards.size());
+    }
+}
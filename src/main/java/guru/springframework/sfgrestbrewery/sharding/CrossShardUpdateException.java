@@ -0,0 +1,14 @@
+package guru.springframework.sfgrestbrewery.sharding;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * An update would move a beer to another shard, which would break finding it by id.
+ */
+public class CrossShardUpdateException extends ResponseStatusException {
+
+    public CrossShardUpdateException(Integer beerId) {
+        super(HttpStatus.CONFLICT, "Beer " + beerId + " cannot change to a style stored on another shard");
+    }
+}
@@ -0,0 +1,144 @@
+package guru.springframework.sfgrestbrewery.sharding;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.relational.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
+/**
+ * {@link BeerRepository} over the {@link BeerShards}. Point reads and writes go to the shard that owns the id,
+ * everything else is sent to all shards in parallel and merged in id order.
+ */
+@RequiredArgsConstructor
+public class ShardedBeerRepository implements BeerRepository {
+
+    private static final Comparator<Beer> BY_ID = Comparator.comparing(Beer::getId);
+
+    private final BeerShards beerShards;
+
+    @Override
+    public <S extends Beer> Mono<S> save(S beer) {
+        if (beer.getId() == null) {
+            BeerShard shard = beerShards.placementFor(beer);
+            return beerShards.nextId(shard)
+                    .flatMap(id -> {
+                        beer.setId(id);
+                        return shard.getTemplate().insert(beer);
+                    });
+        }
+        if (!beerShards.staysOnOwner(beer)) {
+            return Mono.error(new CrossShardUpdateException(beer.getId()));
+        }
+        return beerShards.ownerOf(beer.getId()).getTemplate().update(beer);
+    }
+
+    @Override
+    public <S extends Beer> Flux<S> saveAll(Iterable<S> beers) {
+        return Flux.fromIterable(beers).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends Beer> Flux<S> saveAll(Publisher<S> beers) {
+        return Flux.from(beers).concatMap(this::save);
+    }
+
+    @Override
+    public Mono<Beer> findById(Integer beerId) {
+        return beerShards.ownerOf(beerId).getTemplate().selectOne(byId(beerId), Beer.class);
+    }
+
+    @Override
+    public Mono<Beer> findById(Publisher<Integer> beerId) {
+        return Mono.from(beerId).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Integer beerId) {
+        return beerShards.ownerOf(beerId).getTemplate().exists(byId(beerId), Beer.class);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<Integer> beerId) {
+        return Mono.from(beerId).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<Beer> findAll() {
+        List<Flux<Beer>> perShard = beerShards.getShards().stream()
+                .map(shard -> shard.getTemplate().select(Query.empty().sort(Sort.by("id")), Beer.class))
+                .collect(Collectors.toList());
+        return BeerShards.mergeOrdered(BY_ID, perShard);
+    }
+
+    @Override
+    public Flux<Beer> findAllById(Iterable<Integer> beerIds) {
+        return Flux.fromIterable(beerIds).concatMap(this::findById);
+    }
+
+    @Override
+    public Flux<Beer> findAllById(Publisher<Integer> beerIds) {
+        return Flux.from(beerIds).concatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Flux.fromIterable(beerShards.getShards())
+                .flatMap(shard -> shard.getTemplate().count(Query.empty(), Beer.class))
+                .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public Mono<Void> deleteById(Integer beerId) {
+        return beerShards.ownerOf(beerId).getTemplate().delete(byId(beerId), Beer.class).then();
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<Integer> beerId) {
+        return Mono.from(beerId).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(Beer beer) {
+        return deleteById(beer.getId());
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends Beer> beers) {
+        return Flux.fromIterable(beers).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends Beer> beers) {
+        return Flux.from(beers).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Flux.fromIterable(beerShards.getShards())
+                .flatMap(shard -> shard.getTemplate().delete(Query.empty(), Beer.class))
+                .then();
+    }
+
+    @Override
+    public Mono<Beer> findByUpc(String upc) {
+        //upcs are not part of the placement, ask every shard
+        return Flux.fromIterable(beerShards.getShards())
+                .flatMap(shard -> shard.getTemplate().selectOne(query(where("upc").is(upc)), Beer.class))
+                .next();
+    }
+
+    private static Query byId(Integer beerId) {
+        return query(where("id").is(beerId));
+    }
+}
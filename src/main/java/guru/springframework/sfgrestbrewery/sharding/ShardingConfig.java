@@ -0,0 +1,61 @@
+package guru.springframework.sfgrestbrewery.sharding;
+
+import guru.springframework.sfgrestbrewery.repositories.BeerIdAllocator;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.repositories.BeerStorageFormat;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the beer table over the databases in {@code brewery.sharding.urls}, placed by
+ * {@code brewery.sharding.strategy} (see {@link BeerShards}). The default connection factory keeps everything
+ * else, like the change log.
+ * <p>
+ * Writes to a shard are not part of the transaction of the default connection factory.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(value = "brewery.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    BeerShards beerShards(@Value("${brewery.sharding.urls}") List<String> urls,
+                          @Value("${brewery.sharding.strategy:STYLE}") BeerShards.Strategy strategy,
+                          R2dbcConverter converter,
+                          BeerStorageFormat storageFormat) {
+        List<BeerShard> shards = new ArrayList<>();
+        for (String url : urls) {
+            ConnectionFactory connectionFactory = ConnectionFactories.get(url.trim());
+            new ResourceDatabasePopulator(storageFormat.getSchema()).populate(connectionFactory).block(Duration.ofSeconds(30));
+
+            DatabaseClient databaseClient = DatabaseClient.create(connectionFactory);
+            R2dbcEntityTemplate template = new R2dbcEntityTemplate(databaseClient,
+                    DialectResolver.getDialect(connectionFactory), converter);
+            shards.add(new BeerShard(shards.size(), url.trim(), connectionFactory, databaseClient, template,
+                    new BeerIdAllocator(databaseClient)));
+        }
+        log.info("Beer table split by {} over {} shards", strategy, shards.size());
+        return new BeerShards(shards, strategy);
+    }
+
+    @Bean
+    @Primary
+    BeerRepository shardedBeerRepository(BeerShards beerShards) {
+        return new ShardedBeerRepository(beerShards);
+    }
+}
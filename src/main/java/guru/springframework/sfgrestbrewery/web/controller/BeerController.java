@@ -1,18 +1,27 @@
 package guru.springframework.sfgrestbrewery.web.controller;
 
 import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.idempotency.IdempotencyStore;
+import guru.springframework.sfgrestbrewery.web.idempotency.IdempotentResponse;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import guru.springframework.sfgrestbrewery.web.model.BeerSortField;
 import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -28,14 +37,29 @@ public class BeerController {
     private static final Integer DEFAULT_PAGE_NUMBER = 0;
     private static final Integer DEFAULT_PAGE_SIZE = 25;
 
+    private static final String BEER_V1_LOCATION = "http://api.springframework.guru/api/v1/beer/";
+
     private final BeerService beerService;
+    private final IdempotencyStore idempotencyStore;
 
     @GetMapping(produces = { "application/json" }, path = "beer")
     public ResponseEntity<Mono<BeerPagedList>> listBeers(@RequestParam(value = "pageNumber", required = false) Integer pageNumber,
                                                    @RequestParam(value = "pageSize", required = false) Integer pageSize,
                                                    @RequestParam(value = "beerName", required = false) String beerName,
-                                                   @RequestParam(value = "beerStyle", required = false) BeerStyleEnum beerStyle,
-                                                   @RequestParam(value = "showInventoryOnHand", required = false) Boolean showInventoryOnHand){
+                                                   @RequestParam(value = "beerStyle", required = false) Set<BeerStyleEnum> beerStyles,
+                                                   @RequestParam(value = "namePrefix", required = false) String namePrefix,
+                                                   @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+                                                   @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+                                                   @RequestParam(value = "inStock", required = false) String inStock,
+                                                   @RequestParam(value = "minQuantityOnHand", required = false) Integer minQuantityOnHand,
+                                                   @RequestParam(value = "maxQuantityOnHand", required = false) Integer maxQuantityOnHand,
+                                                   @RequestParam(value = "createdFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                                                   @RequestParam(value = "createdTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                                                   @RequestParam(value = "modifiedFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime modifiedFrom,
+                                                   @RequestParam(value = "modifiedTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime modifiedTo,
+                                                   @RequestParam(value = "showInventoryOnHand", required = false) Boolean showInventoryOnHand,
+                                                   @RequestParam(value = "sortBy", required = false) String sortBy,
+                                                   @RequestParam(value = "sortDirection", required = false) String sortDirection){
 
         if (showInventoryOnHand == null) {
             showInventoryOnHand = false;
@@ -49,7 +73,24 @@ public class BeerController {
             pageSize = DEFAULT_PAGE_SIZE;
         }
 
-        return ResponseEntity.ok(beerService.listBeers(beerName, beerStyle, PageRequest.of(pageNumber, pageSize), showInventoryOnHand));
+        BeerFilter filter = BeerFilter.builder()
+                .beerName(beerName)
+                .namePrefix(namePrefix)
+                .beerStyles(beerStyles)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .inStock(BeerFilter.parseInStock(inStock))
+                .minQuantityOnHand(minQuantityOnHand)
+                .maxQuantityOnHand(maxQuantityOnHand)
+                .createdFrom(createdFrom)
+                .createdTo(createdTo)
+                .modifiedFrom(modifiedFrom)
+                .modifiedTo(modifiedTo)
+                .build();
+        filter.validate();
+
+        return ResponseEntity.ok(beerService.listBeers(filter,
+                PageRequest.of(pageNumber, pageSize, BeerSortField.parse(sortBy, sortDirection)), showInventoryOnHand));
     }
 
     @ExceptionHandler
@@ -81,7 +122,15 @@ public class BeerController {
     }
 
     @PostMapping(path = "beer")
-    public ResponseEntity<Void> saveNewBeer(@RequestBody @Validated BeerDto beerDto){
+    public Mono<ResponseEntity<Void>> saveNewBeer(@RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                  @RequestBody @Validated BeerDto beerDto){
+        if (StringUtils.hasText(idempotencyKey)) {
+            //waits for the insert, a retry of the same key has to get the location of the same beer
+            return idempotencyStore.execute("POST /api/v1/beer", idempotencyKey, beerDto,
+                    () -> beerService.saveNewBeer(beerDto)
+                            .map(saved -> IdempotentResponse.of(HttpStatus.CREATED, BEER_V1_LOCATION + saved.getId())))
+                    .map(BeerController::toResponseEntity);
+        }
 
         AtomicInteger atomicIntegerBeerId = new AtomicInteger();
 
@@ -89,15 +138,23 @@ public class BeerController {
             atomicIntegerBeerId.set(saveBeerDto.getId()); //atomicInteger allows us to save the captured id of the saved beer
         });
 
-        return ResponseEntity
+        return Mono.just(ResponseEntity
                 .created(UriComponentsBuilder
-                        .fromHttpUrl("http://api.springframework.guru/api/v1/beer/" + atomicIntegerBeerId.get())
+                        .fromHttpUrl(BEER_V1_LOCATION + atomicIntegerBeerId.get())
                         .build().toUri())
-                .build();
+                .build());
     }
 
     @PutMapping("beer/{beerId}")
-    public ResponseEntity<Void> updateBeerById(@PathVariable("beerId") Integer beerId, @RequestBody @Validated BeerDto beerDto){
+    public Mono<ResponseEntity<Void>> updateBeerById(@RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                     @PathVariable("beerId") Integer beerId, @RequestBody @Validated BeerDto beerDto){
+        if (StringUtils.hasText(idempotencyKey)) {
+            return idempotencyStore.execute("PUT /api/v1/beer/" + beerId, idempotencyKey, beerDto,
+                    () -> beerService.updateBeer(beerId, beerDto)
+                            .map(savedDto -> IdempotentResponse.of(savedDto.getId() != null
+                                    ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND)))
+                    .map(BeerController::toResponseEntity);
+        }
         AtomicBoolean atomicBoolean = new AtomicBoolean(false);
         beerService.updateBeer(beerId,beerDto).subscribe(savedDto ->{
             if (savedDto.getId() != null){
@@ -106,13 +163,24 @@ public class BeerController {
         });//subscribe puts a back pressure, subscribes until a response comes back. Important
         //to trigger the reactive chain
         if (atomicBoolean.get()){
-            return ResponseEntity.noContent().build();
+            return Mono.just(ResponseEntity.noContent().build());
         }else {
-            return ResponseEntity.notFound().build();
+            return Mono.just(ResponseEntity.notFound().build());
         }
 
     }
 
+    private static ResponseEntity<Void> toResponseEntity(IdempotentResponse response){
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatus());
+        if (response.getLocation() != null) {
+            builder.location(UriComponentsBuilder.fromHttpUrl(response.getLocation()).build().toUri());
+        }
+        if (response.isReplayed()) {
+            builder.header(IdempotencyStore.REPLAYED_HEADER, "true");
+        }
+        return builder.build();
+    }
+
     @DeleteMapping("beer/{beerId}")
     public ResponseEntity<Void> deleteBeerById(@PathVariable("beerId") Integer beerId){
 
@@ -0,0 +1,68 @@
+package guru.springframework.sfgrestbrewery.web.functional;
+
+import guru.springframework.sfgrestbrewery.analytics.CatalogAnalytics;
+import guru.springframework.sfgrestbrewery.analytics.ColumnarCatalog;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+@Component
+@RequiredArgsConstructor
+public class BeerAnalyticsHandler {
+    private static final int DEFAULT_SCAN_LIMIT = 100;
+    private static final int MAX_SCAN_LIMIT = 10_000;
+
+    private final CatalogAnalytics catalogAnalytics;
+    private final ObjectProvider<ColumnarCatalog> columnarCatalog; //only with brewery.columnar.enabled
+
+    public Mono<ServerResponse> getStyleStatistics(ServerRequest request){
+        if (!catalogAnalytics.isSeeded()){
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build(); //still running the first scan
+        }
+        return ServerResponse.ok().bodyValue(catalogAnalytics.getStyleStatistics());
+    }
+
+    public Mono<ServerResponse> getStyleStatisticsByStyle(ServerRequest request){
+        BeerStyleEnum beerStyle;
+        try {
+            beerStyle = BeerStyleEnum.valueOf(request.pathVariable("beerStyle").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ServerWebInputException("Unknown beer style " + request.pathVariable("beerStyle")));
+        }
+
+        if (!catalogAnalytics.isSeeded()){
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ServerResponse.ok().bodyValue(catalogAnalytics.getStyleStatistics(beerStyle));
+    }
+
+    public Mono<ServerResponse> scan(ServerRequest request){
+        ColumnarCatalog catalog = columnarCatalog.getIfAvailable();
+        if (catalog == null){
+            return ServerResponse.notFound().build();
+        }
+
+        BeerFilter filter = BeerFilter.fromQueryParams(request.queryParams());
+        int limit;
+        try {
+            limit = request.queryParam("limit").map(Integer::parseInt).orElse(DEFAULT_SCAN_LIMIT);
+        } catch (NumberFormatException e) {
+            return Mono.error(new ServerWebInputException("limit must be a number"));
+        }
+        if (limit < 0 || limit > MAX_SCAN_LIMIT){
+            return Mono.error(new ServerWebInputException("limit must be between 0 and " + MAX_SCAN_LIMIT));
+        }
+
+        if (!catalog.isLoaded()){
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return catalog.scan(filter, limit).flatMap(result -> ServerResponse.ok().bodyValue(result));
+    }
+}
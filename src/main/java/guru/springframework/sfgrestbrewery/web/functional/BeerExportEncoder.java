@@ -0,0 +1,127 @@
+package guru.springframework.sfgrestbrewery.web.functional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes export batches straight into response buffers, one {@link DataBuffer} per batch, so nothing but the
+ * batch in flight is ever held as objects or strings.
+ */
+@Component
+public class BeerExportEncoder {
+
+    public enum Format {
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv"),
+        NDJSON(MediaType.APPLICATION_NDJSON, "ndjson");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    static final String CSV_HEADER = "id,beerName,beerStyle,upc,price,quantityOnHand,createdDate,lastUpdatedDate\n";
+
+    private static final int ESTIMATED_ROW_BYTES = 192;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter beerWriter;
+
+    public BeerExportEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.beerWriter = objectMapper.writerFor(BeerDto.class);
+    }
+
+    public Flux<DataBuffer> encode(Flux<List<BeerDto>> batches, Format format, DataBufferFactory bufferFactory) {
+        Flux<DataBuffer> rows = batches.map(batch -> encodeBatch(batch, format, bufferFactory));
+
+        if (format == Format.CSV) {
+            rows = Flux.concat(Mono.fromCallable(() -> bufferFactory.wrap(CSV_HEADER.getBytes(StandardCharsets.UTF_8))), rows);
+        }
+        return rows.doOnDiscard(DataBuffer.class, DataBufferUtils::release); //buffers dropped on cancel go back to the pool
+    }
+
+    DataBuffer encodeBatch(List<BeerDto> batch, Format format, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(Math.max(batch.size(), 1) * ESTIMATED_ROW_BYTES);
+        boolean encoded = false;
+        try {
+            if (format == Format.CSV) {
+                writeCsv(batch, buffer);
+            } else {
+                writeNdjson(batch, buffer);
+            }
+            encoded = true;
+            return buffer;
+        } finally {
+            if (!encoded) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+
+    private void writeCsv(List<BeerDto> batch, DataBuffer buffer) {
+        StringBuilder row = new StringBuilder(ESTIMATED_ROW_BYTES);
+        for (BeerDto beer : batch) {
+            row.setLength(0);
+            appendCsv(row, beer.getId()).append(',');
+            appendCsv(row, beer.getBeerName()).append(',');
+            appendCsv(row, beer.getBeerStyle()).append(',');
+            appendCsv(row, beer.getUpc()).append(',');
+            appendCsv(row, beer.getPrice() == null ? null : beer.getPrice().toPlainString()).append(',');
+            appendCsv(row, beer.getQuantityOnHand()).append(',');
+            appendCsv(row, beer.getCreatedDate()).append(',');
+            appendCsv(row, beer.getLastUpdatedDate()).append('\n');
+            buffer.write(row, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static StringBuilder appendCsv(StringBuilder row, Object value) {
+        if (value == null) {
+            return row;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return row.append(text);
+        }
+        return row.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    private void writeNdjson(List<BeerDto> batch, DataBuffer buffer) {
+        OutputStream out = buffer.asOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (BeerDto beer : batch) {
+                beerWriter.writeValue(generator, beer);
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package guru.springframework.sfgrestbrewery.web.functional;
+
+import guru.springframework.sfgrestbrewery.repositories.BeerTableScanner;
+import guru.springframework.sfgrestbrewery.web.mappers.BeerMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.util.stream.Collectors;
+
+/**
+ * Streams the whole catalog as CSV or NDJSON in one response. Rows are read in keyset batches and every batch is
+ * encoded into a buffer from the response's own (pooled) buffer factory; the next batch is only read when the
+ * connection has taken the previous one, so a slow client slows the scan down instead of filling memory.
+ */
+@Component
+@RequiredArgsConstructor
+public class BeerExportHandler {
+
+    private final BeerTableScanner beerTableScanner;
+    private final BeerMapper beerMapper;
+    private final BeerExportEncoder beerExportEncoder;
+
+    @Value("${brewery.export.batch-size:500}")
+    private int batchSize;
+
+    public Mono<ServerResponse> exportBeers(ServerRequest request){
+        BeerExportEncoder.Format format;
+        try {
+            format = BeerExportEncoder.Format.valueOf(request.queryParam("format").orElse("ndjson").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ServerWebInputException("Unknown export format " + request.queryParam("format").get()));
+        }
+
+        return ServerResponse.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("beers." + format.getExtension()).build().toString())
+                .body(BodyInserters.fromDataBuffers(beerExportEncoder.encode(
+                        beerTableScanner.scanBatches(batchSize)
+                                .map(batch -> batch.stream().map(beerMapper::beerToBeerDtoWithInventory).collect(Collectors.toList())),
+                        format,
+                        request.exchange().getResponse().bufferFactory())));
+    }
+}
@@ -1,11 +1,30 @@
 package guru.springframework.sfgrestbrewery.web.functional;
 
+import guru.springframework.sfgrestbrewery.cache.BeerJsonCache;
+import guru.springframework.sfgrestbrewery.monitoring.RequestTimings;
+import guru.springframework.sfgrestbrewery.resilience.RequestContext;
 import guru.springframework.sfgrestbrewery.services.BeerService;
 import guru.springframework.sfgrestbrewery.web.controller.NotFoundException;
+import guru.springframework.sfgrestbrewery.web.idempotency.IdempotencyStore;
+import guru.springframework.sfgrestbrewery.web.idempotency.IdempotentResponse;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateResultDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerSortField;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
@@ -13,20 +32,43 @@ import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static guru.springframework.sfgrestbrewery.monitoring.RequestTimings.Phase.VALIDATE;
 
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class BeerHandlerV2 {
+    private static final int DEFAULT_PAGE_NUMBER = 0;
+    private static final int DEFAULT_PAGE_SIZE = 25;
+
     private final BeerService beerService;
     private final Validator validator; //standard spring validator
+    private final IdempotencyStore idempotencyStore;
+    private final BeerJsonCache beerJsonCache;
 
     public Mono<ServerResponse> updateBeer(ServerRequest request){
+        Optional<String> idempotencyKey = idempotencyKeyOf(request);
+        if (idempotencyKey.isPresent()) {
+            Integer beerId = Integer.valueOf(request.pathVariable("beerId"));
+            return request
+                    .bodyToMono(BeerDto.class)
+                    .handle(RequestTimings.timedCheck(VALIDATE, this::validate))
+                    .flatMap(beerDto -> idempotencyStore.execute("PUT " + BeerRouterConfig.BEER_V2_URL + "/" + beerId,
+                            idempotencyKey.get(), beerDto, () -> beerService.updateBeer(beerId, beerDto)
+                                    .map(savedBeerDto -> IdempotentResponse.of(savedBeerDto.getId() != null
+                                            ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND))))
+                    .flatMap(BeerHandlerV2::toServerResponse);
+        }
+
         return request
                 .bodyToMono(BeerDto.class)
-                .doOnNext(this::validate)
+                .handle(RequestTimings.timedCheck(VALIDATE, this::validate))
                 .flatMap(beerDto -> {
                     return beerService.updateBeer(Integer.valueOf(request.pathVariable("beerId")),beerDto);
                 })
@@ -42,9 +84,22 @@ public class BeerHandlerV2 {
     }
 
     public Mono<ServerResponse> saveNewBeer(ServerRequest request){
+        Optional<String> idempotencyKey = idempotencyKeyOf(request);
+        if (idempotencyKey.isPresent()) {
+            //a retry of the same key gets the location of the beer the first request created
+            return request
+                    .bodyToMono(BeerDto.class)
+                    .handle(RequestTimings.timedCheck(VALIDATE, this::validate))
+                    .flatMap(beerDto -> idempotencyStore.execute("POST " + BeerRouterConfig.BEER_V2_URL,
+                            idempotencyKey.get(), beerDto, () -> beerService.saveNewBeerMono(Mono.just(beerDto))
+                                    .map(saved -> IdempotentResponse.of(HttpStatus.OK,
+                                            BeerRouterConfig.BEER_V2_URL + "/" + saved.getId()))))
+                    .flatMap(BeerHandlerV2::toServerResponse);
+        }
+
         Mono<BeerDto> beerDtoMono =  request
                 .bodyToMono( BeerDto.class)
-                .doOnNext(this::validate);
+                .handle(RequestTimings.timedCheck(VALIDATE, this::validate));
         return beerService.saveNewBeerMono(beerDtoMono)
                 .flatMap(beerDto -> {
                     return ServerResponse
@@ -55,6 +110,22 @@ public class BeerHandlerV2 {
 
     }
 
+    private static Optional<String> idempotencyKeyOf(ServerRequest request){
+        return Optional.ofNullable(request.headers().firstHeader(IdempotencyStore.IDEMPOTENCY_KEY_HEADER))
+                .filter(StringUtils::hasText);
+    }
+
+    private static Mono<ServerResponse> toServerResponse(IdempotentResponse response){
+        ServerResponse.BodyBuilder builder = ServerResponse.status(response.getStatus());
+        if (response.getLocation() != null) {
+            builder.header("location", response.getLocation());
+        }
+        if (response.isReplayed()) {
+            builder.header(IdempotencyStore.REPLAYED_HEADER, "true");
+        }
+        return builder.build();
+    }
+
     private void validate(BeerDto beerDto){
         Errors errors = new BeanPropertyBindingResult(beerDto, "beerDto");
         validator.validate(beerDto,errors);
@@ -66,23 +137,129 @@ public class BeerHandlerV2 {
 
     }
 
+    /**
+     * Reprices the beers of a stream of {id or upc, price} lines (NDJSON or a JSON array) and streams back what became
+     * of each line, in order, as NDJSON.
+     */
+    public Mono<ServerResponse> updatePrices(ServerRequest request){
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(beerService.updatePrices(request.bodyToFlux(BeerPriceUpdateDto.class)), BeerPriceUpdateResultDto.class);
+    }
+
+    public Mono<ServerResponse> listBeers(ServerRequest request){
+        int pageNumber = intParam(request, "pageNumber", DEFAULT_PAGE_NUMBER);
+        int pageSize = intParam(request, "pageSize", DEFAULT_PAGE_SIZE);
+        if (pageNumber < 0) {
+            pageNumber = DEFAULT_PAGE_NUMBER;
+        }
+        if (pageSize < 1) {
+            pageSize = DEFAULT_PAGE_SIZE;
+        }
+
+        BeerFilter filter = BeerFilter.fromQueryParams(request.queryParams());
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, BeerSortField.parse(
+                request.queryParam("sortBy").orElse(null), request.queryParam("sortDirection").orElse(null)));
+        Boolean showInventory = Boolean.valueOf(request.queryParam("showInventoryOnHand").orElse("false"));
+
+        return beerService.listBeers(filter, pageRequest, showInventory)
+                .flatMap(beerPagedList -> ServerResponse.ok().bodyValue(beerPagedList));
+    }
+
+    private static int intParam(ServerRequest request, String name, int defaultValue){
+        try {
+            return request.queryParam(name).map(Integer::valueOf).orElse(defaultValue);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException(name + " must be a number");
+        }
+    }
+
     public Mono<ServerResponse> getBeerById(ServerRequest request){
         Integer beerId = Integer.valueOf(request.pathVariable("beerId"));
         Boolean showInventory = Boolean.valueOf(request.queryParam("showInventory").orElse("false"));
 
+        BeerJsonCache.CachedJson cached = beerJsonCache.getById(beerId, showInventory);
+        if (cached != null) {
+            return toServerResponse(request, cached);
+        }
+        long generation = beerJsonCache.generation();
         return beerService.getById(beerId, showInventory)
-                .flatMap(beerDto -> {
-                    return ServerResponse.ok().bodyValue(beerDto);
-                }).switchIfEmpty(ServerResponse.notFound().build());
+                .flatMap(beerDto -> Mono.deferContextual(context ->
+                        toServerResponse(request, context, beerDto, () -> beerJsonCache.putById(generation, beerDto, showInventory))))
+                .switchIfEmpty(ServerResponse.notFound().build());
     }
 
     public Mono<ServerResponse> getBeerByUpc(ServerRequest request){
         String upc = request.pathVariable("upc");
 
+        BeerJsonCache.CachedJson cached = beerJsonCache.getByUpc(upc);
+        if (cached != null) {
+            return toServerResponse(request, cached);
+        }
+        long generation = beerJsonCache.generation();
         return beerService.getByUpc(upc)
-                .flatMap(beerDto -> {
-                    return ServerResponse.ok().bodyValue(beerDto);
-                }).switchIfEmpty(ServerResponse.notFound().build());
+                .flatMap(beerDto -> Mono.deferContextual(context ->
+                        toServerResponse(request, context, beerDto, () -> beerJsonCache.putByUpc(generation, beerDto))))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /**
+     * Puts a looked up beer in the cache and writes the cached bytes, or writes it the usual way when the cache
+     * doesn't keep it, as for the last known good copy of a stale read. Filling the cache is where the beer is
+     * serialized then, so that is the encoding time of its response.
+     */
+    private static Mono<ServerResponse> toServerResponse(ServerRequest request, ContextView context, BeerDto beerDto,
+                                                         Supplier<BeerJsonCache.CachedJson> put){
+        if (RequestContext.isStale(context)) {
+            return ServerResponse.ok().bodyValue(beerDto);
+        }
+        long started = System.nanoTime();
+        BeerJsonCache.CachedJson json = put.get();
+        if (json == null) {
+            return ServerResponse.ok().bodyValue(beerDto);
+        }
+        RequestTimings.record(context, RequestTimings.Phase.ENCODE, System.nanoTime() - started);
+        return toServerResponse(request, json);
+    }
+
+    /**
+     * Writes the cached bytes as they are, gzipped if the client takes it. With Netty underneath the response
+     * gets a view of the off-heap memory of the cache, not a copy.
+     */
+    private static Mono<ServerResponse> toServerResponse(ServerRequest request, BeerJsonCache.CachedJson json){
+        boolean gzip = json.hasGzip() && acceptsGzip(request);
+        ServerResponse.BodyBuilder builder = ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(json.length(gzip))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body((response, context) -> response.writeWith(
+                Mono.fromSupplier(() -> wrap(response.bufferFactory(), json.retainedBytes(gzip)))));
+    }
+
+    private static DataBuffer wrap(DataBufferFactory bufferFactory, ByteBuf bytes){
+        if (bufferFactory instanceof NettyDataBufferFactory) {
+            return ((NettyDataBufferFactory) bufferFactory).wrap(bytes);
+        }
+        try {
+            return bufferFactory.wrap(ByteBufUtil.getBytes(bytes)); //not on Netty, e.g. the mock server of tests
+        } finally {
+            bytes.release();
+        }
+    }
+
+    private static boolean acceptsGzip(ServerRequest request){
+        for (String header : request.headers().header(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : header.split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                    return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+                }
+            }
+        }
+        return false;
     }
 
 
@@ -0,0 +1,57 @@
+package guru.springframework.sfgrestbrewery.web.functional;
+
+import guru.springframework.sfgrestbrewery.domain.BeerHistoryEntry;
+import guru.springframework.sfgrestbrewery.repositories.BeerHistoryLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The price and inventory history of a beer, newest first, optionally limited to {@code from} (inclusive) and
+ * {@code to} (exclusive). Changes show up here up to a flush interval after they were made, see
+ * {@link guru.springframework.sfgrestbrewery.audit.BeerAuditLog}.
+ */
+@Component
+@RequiredArgsConstructor
+public class BeerHistoryHandler {
+
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final BeerHistoryLog beerHistoryLog;
+
+    public Mono<ServerResponse> getBeerHistory(ServerRequest request){
+        Integer beerId;
+        int pageNumber;
+        int pageSize;
+        try {
+            beerId = Integer.valueOf(request.pathVariable("beerId"));
+            pageNumber = request.queryParam("pageNumber").map(Integer::valueOf).orElse(0);
+            pageSize = request.queryParam("pageSize").map(Integer::valueOf).orElse(DEFAULT_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            return Mono.error(new ServerWebInputException("beerId, pageNumber and pageSize must be numbers"));
+        }
+        if (pageNumber < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            return Mono.error(new ServerWebInputException("pageSize must be between 1 and " + MAX_PAGE_SIZE));
+        }
+
+        LocalDateTime from;
+        LocalDateTime to;
+        try {
+            from = request.queryParam("from").map(LocalDateTime::parse).orElse(null);
+            to = request.queryParam("to").map(LocalDateTime::parse).orElse(null);
+        } catch (DateTimeParseException e) {
+            return Mono.error(new ServerWebInputException("from and to must be ISO date-times, e.g. 2021-03-01T00:00:00"));
+        }
+
+        return ServerResponse.ok().body(beerHistoryLog.findByBeerId(beerId, from, to, PageRequest.of(pageNumber, pageSize)),
+                BeerHistoryEntry.class);
+    }
+}
@@ -0,0 +1,48 @@
+package guru.springframework.sfgrestbrewery.web.functional;
+
+import guru.springframework.sfgrestbrewery.domain.BeerReorder;
+import guru.springframework.sfgrestbrewery.reorder.LowStockReorderScanner;
+import guru.springframework.sfgrestbrewery.repositories.BeerReorderOutbox;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reorders of the low-stock scan: the outbox from a given id on, or a server-sent event stream of the reorders
+ * created while connected.
+ */
+@Component
+@RequiredArgsConstructor
+public class BeerReorderHandler {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final BeerReorderOutbox outbox;
+    private final LowStockReorderScanner scanner;
+
+    public Mono<ServerResponse> listReorders(ServerRequest request){
+        long afterId;
+        int limit;
+        try {
+            afterId = request.queryParam("afterId").map(Long::parseLong).orElse(0L);
+            limit = request.queryParam("limit").map(Integer::parseInt).orElse(100);
+        } catch (NumberFormatException e) {
+            return Mono.error(new ServerWebInputException("afterId and limit must be numbers"));
+        }
+        if (limit < 1 || limit > MAX_LIMIT){
+            return Mono.error(new ServerWebInputException("limit must be between 1 and " + MAX_LIMIT));
+        }
+
+        return ServerResponse.ok().body(outbox.readAfter(afterId, limit), BeerReorder.class);
+    }
+
+    public Mono<ServerResponse> streamReorders(ServerRequest request){
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(scanner.reorders(), BeerReorder.class);
+    }
+}
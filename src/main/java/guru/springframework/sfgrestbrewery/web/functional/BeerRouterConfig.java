@@ -1,11 +1,13 @@
 package guru.springframework.sfgrestbrewery.web.functional;
 
+import guru.springframework.sfgrestbrewery.resilience.ConcurrencyLimitFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
 import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
@@ -15,15 +17,55 @@ public class BeerRouterConfig {
     public static final String BEER_V2_URL = "/api/v2/beer";
     public static final String BEER_V2_URL_ID = "/api/v2/beer/{beerId}";
     public static final String BEER_V2_URL_UPC = "/api/v2/beerUpc";
+    public static final String BEER_V2_URL_ANALYTICS = "/api/v2/beerAnalytics";
+    public static final String BEER_V2_URL_EXPORT = "/api/v2/beerExport";
+    public static final String BEER_V2_URL_REORDERS = "/api/v2/beerReorders";
 
     @Bean
-    public RouterFunction<ServerResponse> beerRoutesV2(BeerHandlerV2 handler){
+    public RouterFunction<ServerResponse> beerRoutesV2(BeerHandlerV2 handler, ConcurrencyLimitFilter concurrencyLimits){
         return route()
+                .GET(BEER_V2_URL, accept(APPLICATION_JSON), handler::listBeers)
                 .GET( BEER_V2_URL_ID,accept(APPLICATION_JSON),handler::getBeerById)
                 .GET(BEER_V2_URL_UPC + "/{upc}",accept(APPLICATION_JSON),handler::getBeerByUpc)
                 .POST(BEER_V2_URL, accept(APPLICATION_JSON),handler::saveNewBeer)
                 .PUT(BEER_V2_URL_ID, accept(APPLICATION_JSON),handler::updateBeer)
                 .DELETE(BEER_V2_URL_ID,accept(APPLICATION_JSON),handler::deleteBeer)
+                .filter(concurrencyLimits)
+                .build()
+                .and(route()
+                        .PATCH(BEER_V2_URL, handler::updatePrices) //streams for as long as the body, paced by its own write concurrency
+                        .build());
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> beerHistoryRoutesV2(BeerHistoryHandler handler, ConcurrencyLimitFilter concurrencyLimits){
+        return route()
+                .GET(BEER_V2_URL_ID + "/history", accept(APPLICATION_JSON), handler::getBeerHistory)
+                .filter(concurrencyLimits)
+                .build();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> beerAnalyticsRoutesV2(BeerAnalyticsHandler handler){
+        return route()
+                .GET(BEER_V2_URL_ANALYTICS + "/styles", accept(APPLICATION_JSON), handler::getStyleStatistics)
+                .GET(BEER_V2_URL_ANALYTICS + "/styles/{beerStyle}", accept(APPLICATION_JSON), handler::getStyleStatisticsByStyle)
+                .GET(BEER_V2_URL_ANALYTICS + "/scan", accept(APPLICATION_JSON), handler::scan)
+                .build();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> beerExportRoutesV2(BeerExportHandler handler){
+        return route()
+                .GET(BEER_V2_URL_EXPORT, handler::exportBeers)
+                .build();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> beerReorderRoutesV2(BeerReorderHandler handler){
+        return route()
+                .GET(BEER_V2_URL_REORDERS, accept(APPLICATION_JSON), handler::listReorders)
+                .GET(BEER_V2_URL_REORDERS, accept(TEXT_EVENT_STREAM), handler::streamReorders)
                 .build();
     }
 }
@@ -0,0 +1,14 @@
+package guru.springframework.sfgrestbrewery.web.idempotency;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * An idempotency key sent again with a different request than the one it was first used for.
+ */
+public class IdempotencyKeyReusedException extends ResponseStatusException {
+
+    public IdempotencyKeyReusedException(String key) {
+        super(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key " + key + " was already used for a different request");
+    }
+}
@@ -0,0 +1,75 @@
+package guru.springframework.sfgrestbrewery.web.idempotency;
+
+import guru.springframework.sfgrestbrewery.cache.ExpiringLruCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of each request sent with an {@code Idempotency-Key}, so that retrying it does not create or
+ * update the beer a second time.
+ * <ul>
+ *     <li>The first request with a key runs, and its response is kept for {@code brewery.idempotency.ttl}, at most
+ *     {@code brewery.idempotency.max-keys} keys, least recently used go first.</li>
+ *     <li>A retry while the first request is still running waits for its response instead of running again.</li>
+ *     <li>A retry after it answers gets the same response without touching the database.</li>
+ *     <li>A request that failed is forgotten, so a retry runs it again.</li>
+ *     <li>A key reused with a different request body is refused with a 422.</li>
+ * </ul>
+ * Keys are scoped by the caller, e.g. to the route, so the same key on different routes does not clash.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static class Outcome {
+        final Object fingerprint;
+        final Mono<IdempotentResponse> response;
+
+        Outcome(Object fingerprint, Supplier<Mono<IdempotentResponse>> request, Consumer<Outcome> onError) {
+            this.fingerprint = fingerprint;
+            this.response = Mono.defer(request)
+                    .doOnError(e -> onError.accept(this))
+                    .cache(); //shared with the retries
+        }
+    }
+
+    private final ExpiringLruCache<String, Outcome> outcomes;
+
+    public IdempotencyStore(@Value("${brewery.idempotency.max-keys:10000}") int maxKeys,
+                            @Value("${brewery.idempotency.ttl:PT24H}") Duration ttl) {
+        this.outcomes = new ExpiringLruCache<>(maxKeys, ttl);
+    }
+
+    /**
+     * Runs {@code request} once per {@code scope} and {@code key}. {@code fingerprint} identifies the request, usually
+     * its body, and has to be equal on every retry.
+     */
+    public Mono<IdempotentResponse> execute(String scope, String key, Object fingerprint,
+                                            Supplier<Mono<IdempotentResponse>> request) {
+        return Mono.defer(() -> {
+            String storeKey = scope + " " + key;
+
+            //only this attempt's outcome, the key may hold a newer one by the time it fails
+            Outcome outcome = new Outcome(fingerprint, request, failed -> outcomes.remove(storeKey, failed));
+
+            Outcome existing = outcomes.putIfAbsent(storeKey, outcome);
+            if (existing == null) {
+                return outcome.response;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                return Mono.error(new IdempotencyKeyReusedException(key));
+            }
+            log.debug("Replaying the response of {}", storeKey);
+            return existing.response.map(IdempotentResponse::asReplay);
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package guru.springframework.sfgrestbrewery.web.idempotency;
+
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+
+/**
+ * What was answered to the first request with an idempotency key, enough to answer its retries the same way.
+ * The create and update routes answer with a status and at most a location, no body.
+ */
+@Value
+public class IdempotentResponse {
+
+    HttpStatus status;
+    String location;
+    boolean replayed;
+
+    public static IdempotentResponse of(HttpStatus status) {
+        return new IdempotentResponse(status, null, false);
+    }
+
+    public static IdempotentResponse of(HttpStatus status, String location) {
+        return new IdempotentResponse(status, location, false);
+    }
+
+    IdempotentResponse asReplay() {
+        return new IdempotentResponse(status, location, true);
+    }
+}
@@ -0,0 +1,143 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Criteria for beer listings. Every field is optional and the ones that are set are combined with AND.
+ * Date ranges include the start and exclude the end.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerFilter {
+
+    //digits a price limit may have on either side of the point, far beyond any price
+    private static final int MAX_PRICE_DIGITS = 16;
+
+    private String beerName; //exact match
+    private String namePrefix;
+    private Set<BeerStyleEnum> beerStyles;
+
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    private Boolean inStock;
+    private Integer minQuantityOnHand;
+    private Integer maxQuantityOnHand;
+
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    private LocalDateTime modifiedFrom;
+    private LocalDateTime modifiedTo;
+
+    public static BeerFilter of(String beerName, BeerStyleEnum beerStyle) {
+        return BeerFilter.builder()
+                .beerName(beerName)
+                .beerStyles(beerStyle == null ? null : EnumSet.of(beerStyle))
+                .build();
+    }
+
+    /**
+     * Reads the filter from listing query parameters, the same names the v1 controller takes. {@code beerStyle}
+     * can be repeated to match any of several styles.
+     */
+    public static BeerFilter fromQueryParams(MultiValueMap<String, String> params) {
+        Set<BeerStyleEnum> beerStyles = null;
+        List<String> styles = params.get("beerStyle");
+        if (styles != null && !styles.isEmpty()) {
+            beerStyles = EnumSet.noneOf(BeerStyleEnum.class);
+            for (String style : styles) {
+                beerStyles.add(parse("beerStyle", style, BeerStyleEnum::valueOf));
+            }
+        }
+
+        BeerFilter filter = BeerFilter.builder()
+                .beerName(params.getFirst("beerName"))
+                .namePrefix(params.getFirst("namePrefix"))
+                .beerStyles(beerStyles)
+                .minPrice(parse("minPrice", params.getFirst("minPrice"), BeerFilter::parsePrice))
+                .maxPrice(parse("maxPrice", params.getFirst("maxPrice"), BeerFilter::parsePrice))
+                .inStock(parseInStock(params.getFirst("inStock")))
+                .minQuantityOnHand(parse("minQuantityOnHand", params.getFirst("minQuantityOnHand"), Integer::valueOf))
+                .maxQuantityOnHand(parse("maxQuantityOnHand", params.getFirst("maxQuantityOnHand"), Integer::valueOf))
+                .createdFrom(parse("createdFrom", params.getFirst("createdFrom"), LocalDateTime::parse))
+                .createdTo(parse("createdTo", params.getFirst("createdTo"), LocalDateTime::parse))
+                .modifiedFrom(parse("modifiedFrom", params.getFirst("modifiedFrom"), LocalDateTime::parse))
+                .modifiedTo(parse("modifiedTo", params.getFirst("modifiedTo"), LocalDateTime::parse))
+                .build();
+        filter.validate();
+        return filter;
+    }
+
+    public void validate() {
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new ServerWebInputException("minPrice is greater than maxPrice");
+        }
+        if (minQuantityOnHand != null && maxQuantityOnHand != null && minQuantityOnHand > maxQuantityOnHand) {
+            throw new ServerWebInputException("minQuantityOnHand is greater than maxQuantityOnHand");
+        }
+        if (createdFrom != null && createdTo != null && createdFrom.isAfter(createdTo)) {
+            throw new ServerWebInputException("createdFrom is after createdTo");
+        }
+        if (modifiedFrom != null && modifiedTo != null && modifiedFrom.isAfter(modifiedTo)) {
+            throw new ServerWebInputException("modifiedFrom is after modifiedTo");
+        }
+    }
+
+    /**
+     * Refuses exponents no price has, such as {@code 1e99999999}, which the queries would spend long on.
+     */
+    private static BigDecimal parsePrice(String value) {
+        BigDecimal price = new BigDecimal(value);
+        if (price.precision() - price.scale() > MAX_PRICE_DIGITS || price.scale() > MAX_PRICE_DIGITS) {
+            throw new IllegalArgumentException(value);
+        }
+        return price;
+    }
+
+    /**
+     * The {@code inStock} parameter, parsed the same for every listing API: true or false in any case, nothing
+     * (or blank) for no criterion, anything else is a 400.
+     */
+    public static Boolean parseInStock(String value) {
+        return parse("inStock", value, BeerFilter::parseBoolean);
+    }
+
+    /**
+     * Unlike {@link Boolean#valueOf(String)}, anything but true or false is an error rather than false.
+     */
+    private static Boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return Boolean.TRUE;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException(value);
+    }
+
+    private static <T> T parse(String name, String value, Function<String, T> parser) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return parser.apply(value.trim());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ServerWebInputException("Invalid value for " + name + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One line of a bulk price update: the new price of the beer with the given id, or else the given upc.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerPriceUpdateDto {
+
+    private Integer id;
+    private String upc;
+
+    private BigDecimal price;
+}
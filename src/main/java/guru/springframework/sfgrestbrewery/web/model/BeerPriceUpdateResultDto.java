@@ -0,0 +1,33 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * What became of one line of a bulk price update, {@code index} is its position in the request (from 0).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerPriceUpdateResultDto {
+
+    public enum Status {
+        UPDATED,
+        NOT_FOUND,
+        CONFLICT, //the price changed while the update ran, retry it
+        INVALID
+    }
+
+    private long index;
+    private Integer id;
+    private String upc;
+    private BigDecimal price;
+
+    private Status status;
+    private String message;
+}
@@ -0,0 +1,29 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Totals over the beers matching a scan of the columnar catalog, and the ids of the first of them.
+ * Prices only cover beers that have one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerScanResultDto {
+
+    private long beerCount;
+    private long totalQuantityOnHand;
+
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private BigDecimal inventoryValue; //sum of price * quantity on hand
+
+    private List<Integer> beerIds; //lowest ids first, at most the requested limit
+}
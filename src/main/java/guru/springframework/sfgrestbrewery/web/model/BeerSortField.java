@@ -0,0 +1,62 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.web.server.ServerWebInputException;
+
+/**
+ * The orderings a beer listing can be requested in. Every one of them has a composite index on
+ * {@code (column, id)} in both directions (see schema.sql), and the id is always added as the last sort key,
+ * so the database walks the index instead of sorting and pages never overlap.
+ */
+public enum BeerSortField {
+
+    PRICE("price", "price"),
+    NAME("beerName", "beer_name"),
+    CREATED_DATE("createdDate", "created_date"),
+    QUANTITY_ON_HAND("quantityOnHand", "quantity_on_hand");
+
+    private final String property;
+    private final String column;
+
+    BeerSortField(String property, String column) {
+        this.property = property;
+        this.column = column;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Sort toSort(Sort.Direction direction) {
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+
+    /**
+     * Validates the {@code sortBy} and {@code sortDirection} request parameters, accepting either the property
+     * name ({@code createdDate}) or the constant ({@code CREATED_DATE}). Unsorted requests are ordered by id so
+     * paging is stable.
+     */
+    public static Sort parse(String sortBy, String sortDirection) {
+        Sort.Direction direction = Sort.Direction.ASC;
+        if (sortDirection != null && !sortDirection.isBlank()) {
+            direction = Sort.Direction.fromOptionalString(sortDirection.trim())
+                    .orElseThrow(() -> new ServerWebInputException("sortDirection must be asc or desc"));
+        }
+
+        if (sortBy == null || sortBy.isBlank()) {
+            return Sort.by(direction, "id");
+        }
+
+        for (BeerSortField field : values()) {
+            if (field.name().equalsIgnoreCase(sortBy.trim()) || field.property.equalsIgnoreCase(sortBy.trim())
+                    || (field == NAME && "name".equalsIgnoreCase(sortBy.trim()))) {
+                return field.toSort(direction);
+            }
+        }
+        throw new ServerWebInputException("sortBy must be one of price, name, createdDate, quantityOnHand");
+    }
+}
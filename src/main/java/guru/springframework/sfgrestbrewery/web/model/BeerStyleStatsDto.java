@@ -0,0 +1,29 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Catalog statistics for one beer style. Prices only cover beers that have one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BeerStyleStatsDto {
+
+    private BeerStyleEnum beerStyle;
+
+    private long beerCount;
+    private long totalQuantityOnHand;
+
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private BigDecimal meanPrice;
+
+    private BigDecimal inventoryValue; //sum of price * quantity on hand
+}
@@ -1,6 +1,10 @@
+-- ids of new beers, the application takes them a block of INCREMENT BY at a time before it inserts (see BeerIdAllocator);
+-- the default keeps an insert without an id off the blocks handed out, with sharding see BeerShards
+CREATE SEQUENCE IF NOT EXISTS beer_id_seq INCREMENT BY 100;
+
 CREATE TABLE if NOT EXISTS beer
 (
-    id                   integer               NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    id                   integer               DEFAULT NEXT VALUE FOR beer_id_seq NOT NULL PRIMARY KEY,
     beer_name            varchar(255),
     beer_style           varchar(255),
     upc                  varchar(25),
@@ -9,4 +13,54 @@ CREATE TABLE if NOT EXISTS beer
     price                     decimal,
     created_date            timestamp,
     last_modified_date      timestamp
-);
\ No newline at end of file
+);
+
+-- listing sort orders, one index per direction so each sort is read in index order (see BeerSortField)
+CREATE INDEX IF NOT EXISTS beer_price_idx ON beer (price, id);
+CREATE INDEX IF NOT EXISTS beer_price_desc_idx ON beer (price DESC, id DESC);
+CREATE INDEX IF NOT EXISTS beer_name_idx ON beer (beer_name, id);
+CREATE INDEX IF NOT EXISTS beer_name_desc_idx ON beer (beer_name DESC, id DESC);
+CREATE INDEX IF NOT EXISTS beer_created_date_idx ON beer (created_date, id);
+CREATE INDEX IF NOT EXISTS beer_created_date_desc_idx ON beer (created_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS beer_quantity_on_hand_idx ON beer (quantity_on_hand, id);
+CREATE INDEX IF NOT EXISTS beer_quantity_on_hand_desc_idx ON beer (quantity_on_hand DESC, id DESC);
+
+-- single beer lookups by upc (BeerRepository.findByUpc)
+CREATE INDEX IF NOT EXISTS beer_upc_idx ON beer (upc);
+
+-- change log appended by every service write, read by each instance to invalidate its near cache (see BeerChangeLog)
+CREATE TABLE if NOT EXISTS beer_change
+(
+    seq                  bigint                NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    beer_id              integer               NOT NULL,
+    change_type          varchar(16)           NOT NULL,
+    instance_id          varchar(64)           NOT NULL,
+    changed_at           timestamp             NOT NULL
+);
+CREATE INDEX IF NOT EXISTS beer_change_changed_at_idx ON beer_change (changed_at);
+
+-- outbox of the low-stock reorder scan, consumers read it in id order (see LowStockReorderScanner)
+CREATE TABLE if NOT EXISTS beer_reorder
+(
+    id                   bigint                NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    beer_id              integer               NOT NULL,
+    beer_style           varchar(32),
+    quantity_on_hand     integer               NOT NULL,
+    reorder_threshold    integer               NOT NULL,
+    created_at           timestamp             NOT NULL
+);
+CREATE INDEX IF NOT EXISTS beer_reorder_beer_id_idx ON beer_reorder (beer_id, created_at);
+
+-- append-only history of price and inventory changes, written in batches behind the writes (see BeerAuditLog)
+CREATE TABLE if NOT EXISTS beer_history
+(
+    id                       bigint                NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    beer_id                  integer               NOT NULL,
+    change_type              varchar(16)           NOT NULL,
+    price_before             decimal,
+    price_after              decimal,
+    quantity_on_hand_before  integer,
+    quantity_on_hand_after   integer,
+    changed_at               timestamp             NOT NULL
+);
+CREATE INDEX IF NOT EXISTS beer_history_beer_id_idx ON beer_history (beer_id, changed_at);
@@ -0,0 +1,104 @@
+package guru.springframework.sfgrestbrewery.analytics;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleStatsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class CatalogAnalyticsTest {
+
+    BeerRepository beerRepository;
+    CatalogAnalytics catalogAnalytics;
+
+    Beer cheapIpa;
+    Beer dearIpa;
+
+    @BeforeEach
+    void setUp() {
+        cheapIpa = beer(1, BeerStyleEnum.IPA, "5.00", 10);
+        dearIpa = beer(2, BeerStyleEnum.IPA, "9.50", 4);
+
+        beerRepository = mock(BeerRepository.class);
+        given(beerRepository.findAll()).willReturn(Flux.just(cheapIpa, dearIpa, beer(3, BeerStyleEnum.STOUT, "7.25", 1)));
+
+        catalogAnalytics = new CatalogAnalytics(beerRepository);
+        catalogAnalytics.rescan().block();
+    }
+
+    @Test
+    void seedsFromScan() {
+        BeerStyleStatsDto ipa = catalogAnalytics.getStyleStatistics(BeerStyleEnum.IPA);
+
+        assertThat(catalogAnalytics.isSeeded()).isTrue();
+        assertThat(ipa.getBeerCount()).isEqualTo(2);
+        assertThat(ipa.getTotalQuantityOnHand()).isEqualTo(14);
+        assertThat(ipa.getMinPrice()).isEqualByComparingTo("5.00");
+        assertThat(ipa.getMaxPrice()).isEqualByComparingTo("9.50");
+        assertThat(ipa.getMeanPrice()).isEqualByComparingTo("7.25");
+        assertThat(ipa.getInventoryValue()).isEqualByComparingTo("88.00");
+        assertThat(catalogAnalytics.getStyleStatistics(BeerStyleEnum.LAGER).getBeerCount()).isZero();
+    }
+
+    @Test
+    void appliesChanges() {
+        Beer restyled = cheapIpa.toBuilder().beerStyle(BeerStyleEnum.STOUT).price(new BigDecimal("6.00")).build();
+        catalogAnalytics.onBeerChanged(BeerChangedEvent.updated(cheapIpa, restyled));
+        catalogAnalytics.onBeerChanged(BeerChangedEvent.deleted(dearIpa));
+        catalogAnalytics.onBeerChanged(BeerChangedEvent.created(beer(4, BeerStyleEnum.IPA, "3.10", 2)));
+
+        BeerStyleStatsDto ipa = catalogAnalytics.getStyleStatistics(BeerStyleEnum.IPA);
+        BeerStyleStatsDto stout = catalogAnalytics.getStyleStatistics(BeerStyleEnum.STOUT);
+
+        assertThat(ipa.getBeerCount()).isEqualTo(1);
+        assertThat(ipa.getMinPrice()).isEqualByComparingTo("3.10");
+        assertThat(ipa.getMaxPrice()).isEqualByComparingTo("3.10");
+        assertThat(stout.getBeerCount()).isEqualTo(2);
+        assertThat(stout.getMinPrice()).isEqualByComparingTo("6.00");
+        assertThat(stout.getMaxPrice()).isEqualByComparingTo("7.25");
+        assertThat(stout.getInventoryValue()).isEqualByComparingTo("67.25");
+    }
+
+    @Test
+    void countsChangesMadeDuringARescanOnce() {
+        Beer stout = beer(3, BeerStyleEnum.STOUT, "7.25", 1);
+        Beer repriced = cheapIpa.toBuilder().price(new BigDecimal("6.00")).build();
+        given(beerRepository.findAll()).willReturn(Flux.just(cheapIpa).concatWith(Flux.defer(() -> {
+            //the scan has read the first beer but not the others
+            catalogAnalytics.onBeerChanged(BeerChangedEvent.updated(cheapIpa, repriced));
+            catalogAnalytics.onBeerChanged(BeerChangedEvent.deleted(dearIpa));
+            catalogAnalytics.onBeerChanged(BeerChangedEvent.updated(stout, stout.toBuilder().quantityOnHand(3).build()));
+            return Flux.just(dearIpa, stout);
+        })));
+
+        catalogAnalytics.rescan().block();
+
+        BeerStyleStatsDto ipa = catalogAnalytics.getStyleStatistics(BeerStyleEnum.IPA);
+        BeerStyleStatsDto stouts = catalogAnalytics.getStyleStatistics(BeerStyleEnum.STOUT);
+
+        assertThat(ipa.getBeerCount()).isEqualTo(1);
+        assertThat(ipa.getMinPrice()).isEqualByComparingTo("6.00");
+        assertThat(ipa.getInventoryValue()).isEqualByComparingTo("60.00");
+        assertThat(stouts.getBeerCount()).isEqualTo(1);
+        assertThat(stouts.getTotalQuantityOnHand()).isEqualTo(3);
+    }
+
+    private static Beer beer(int id, BeerStyleEnum style, String price, int quantity) {
+        return Beer.builder()
+                .id(id)
+                .beerName("Beer " + id)
+                .beerStyle(style)
+                .price(new BigDecimal(price))
+                .quantityOnHand(quantity)
+                .build();
+    }
+}
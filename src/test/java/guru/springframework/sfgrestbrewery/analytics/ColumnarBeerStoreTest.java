@@ -0,0 +1,135 @@
+package guru.springframework.sfgrestbrewery.analytics;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerScanResultDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnarBeerStoreTest {
+
+    private static final BeerStyleEnum[] STYLES = BeerStyleEnum.values();
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void scansMatchAPlainLoopOverTheRows() {
+        Random random = new Random(42);
+        List<Beer> beers = new ArrayList<>();
+        ColumnarBeerStore store = new ColumnarBeerStore();
+        for (int id = 1; id <= 300_000; id++) {
+            Beer beer = Beer.builder()
+                    .id(id)
+                    .beerStyle(STYLES[random.nextInt(STYLES.length)])
+                    .price(random.nextInt(20) == 0 ? null : BigDecimal.valueOf(random.nextInt(5_000), 2))
+                    .quantityOnHand(random.nextInt(20) == 0 ? null : random.nextInt(500))
+                    .build();
+            beers.add(beer);
+            store.upsert(beer);
+        }
+
+        BeerFilter filter = BeerFilter.builder()
+                .beerStyles(EnumSet.of(BeerStyleEnum.IPA, BeerStyleEnum.STOUT))
+                .minPrice(new BigDecimal("10.00"))
+                .maxPrice(new BigDecimal("30.00"))
+                .inStock(true)
+                .build();
+        assertMatchesLoop(store, beers, filter, beer -> (beer.getBeerStyle() == BeerStyleEnum.IPA || beer.getBeerStyle() == BeerStyleEnum.STOUT)
+                && beer.getPrice() != null && beer.getPrice().compareTo(new BigDecimal("10.00")) >= 0
+                && beer.getPrice().compareTo(new BigDecimal("30.00")) <= 0
+                && beer.getQuantityOnHand() != null && beer.getQuantityOnHand() > 0);
+
+        BeerFilter quantities = BeerFilter.builder().minQuantityOnHand(100).maxQuantityOnHand(120).build();
+        assertMatchesLoop(store, beers, quantities, beer -> beer.getQuantityOnHand() != null
+                && beer.getQuantityOnHand() >= 100 && beer.getQuantityOnHand() <= 120);
+
+        assertMatchesLoop(store, beers, new BeerFilter(), beer -> true);
+    }
+
+    @Test
+    void updatesAndDeletesAreSeenByTheNextScan() {
+        ColumnarBeerStore store = new ColumnarBeerStore();
+        for (int id = 1; id <= 5_000; id++) {
+            store.upsert(Beer.builder().id(id).beerStyle(BeerStyleEnum.ALE).price(new BigDecimal("2.50")).quantityOnHand(1).build());
+        }
+
+        store.upsert(Beer.builder().id(7).beerStyle(BeerStyleEnum.GOSE).price(new BigDecimal("9.99")).quantityOnHand(3).build());
+        for (int id = 2_000; id <= 5_000; id++) { //enough to compact the columns
+            store.delete(id);
+        }
+
+        BeerScanResultDto ales = store.scan(BeerFilter.of(null, BeerStyleEnum.ALE), 3, pool);
+        assertThat(ales.getBeerCount()).isEqualTo(1_998);
+        assertThat(ales.getBeerIds()).containsExactly(1, 2, 3);
+
+        BeerScanResultDto goses = store.scan(BeerFilter.of(null, BeerStyleEnum.GOSE), 10, pool);
+        assertThat(goses.getBeerIds()).containsExactly(7);
+        assertThat(goses.getInventoryValue()).isEqualByComparingTo("29.97");
+
+        store.upsert(Beer.builder().id(5_000).beerStyle(BeerStyleEnum.GOSE).price(new BigDecimal("1.00")).quantityOnHand(0).build());
+        goses = store.scan(BeerFilter.of(null, BeerStyleEnum.GOSE), 10, pool);
+        assertThat(goses.getBeerIds()).containsExactly(7, 5_000);
+        assertThat(goses.getMinPrice()).isEqualByComparingTo("1.00");
+        assertThat(store.size()).isEqualTo(2_000);
+    }
+
+    @Test
+    void rejectsCriteriaOnColumnsThatAreNotProjected() {
+        ColumnarBeerStore store = new ColumnarBeerStore();
+        assertThrows(ServerWebInputException.class,
+                () -> store.scan(BeerFilter.builder().namePrefix("Mango").build(), 10, pool));
+    }
+
+    @Test
+    void rejectsPriceLimitsOutOfRange() {
+        ColumnarBeerStore store = new ColumnarBeerStore();
+        assertThrows(ServerWebInputException.class,
+                () -> store.scan(BeerFilter.builder().minPrice(new BigDecimal("1e30")).build(), 10, pool));
+        assertThrows(ServerWebInputException.class,
+                () -> store.scan(BeerFilter.builder().maxPrice(new BigDecimal("1e99999999")).build(), 10, pool));
+    }
+
+    private static void assertMatchesLoop(ColumnarBeerStore store, List<Beer> beers, BeerFilter filter, Predicate<Beer> matches) {
+        List<Beer> expected = beers.stream().filter(matches).collect(Collectors.toList());
+
+        BeerScanResultDto result = store.scan(filter, 50, pool);
+
+        assertThat(result.getBeerCount()).isEqualTo(expected.size());
+        assertThat(result.getTotalQuantityOnHand()).isEqualTo(expected.stream()
+                .mapToLong(beer -> beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand()).sum());
+        assertThat(result.getInventoryValue()).isEqualByComparingTo(expected.stream()
+                .filter(beer -> beer.getPrice() != null && beer.getQuantityOnHand() != null)
+                .map(beer -> beer.getPrice().multiply(BigDecimal.valueOf(beer.getQuantityOnHand())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        assertThat(result.getMinPrice()).isEqualByComparingTo(expected.stream()
+                .map(Beer::getPrice).filter(price -> price != null).min(BigDecimal::compareTo).get());
+        assertThat(result.getMaxPrice()).isEqualByComparingTo(expected.stream()
+                .map(Beer::getPrice).filter(price -> price != null).max(BigDecimal::compareTo).get());
+        assertThat(result.getBeerIds()).isEqualTo(expected.stream().limit(50).map(Beer::getId).collect(Collectors.toList()));
+    }
+}
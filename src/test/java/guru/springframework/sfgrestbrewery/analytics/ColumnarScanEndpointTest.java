@@ -0,0 +1,31 @@
+package guru.springframework.sfgrestbrewery.analytics;
+
+import guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+
+@AutoConfigureWebTestClient
+@SpringBootTest(properties = {"brewery.columnar.enabled=true",
+        "spring.r2dbc.url=r2dbc:h2:mem:///columnar_scan;DB_CLOSE_DELAY=-1"})
+class ColumnarScanEndpointTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Test
+    void priceLimitOutOfRangeIsABadRequest() {
+        for (String minPrice : new String[]{"1e30", "1e99999999"}) {
+            webTestClient.mutate().responseTimeout(Duration.ofSeconds(5)).build()
+                    .get().uri(BeerRouterConfig.BEER_V2_URL_ANALYTICS + "/scan?minPrice=" + minPrice)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+    }
+}
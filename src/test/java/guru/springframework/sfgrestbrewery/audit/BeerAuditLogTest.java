@@ -0,0 +1,112 @@
+package guru.springframework.sfgrestbrewery.audit;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.domain.BeerHistoryEntry;
+import guru.springframework.sfgrestbrewery.repositories.BeerHistoryLog;
+import guru.springframework.sfgrestbrewery.services.BeerChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class BeerAuditLogTest {
+
+    BeerHistoryLog historyLog;
+    SimpleMeterRegistry meterRegistry;
+    List<List<BeerHistoryEntry>> written;
+    AtomicBoolean failing;
+
+    @BeforeEach
+    void setUp() {
+        historyLog = mock(BeerHistoryLog.class);
+        meterRegistry = new SimpleMeterRegistry();
+        written = new ArrayList<>();
+        failing = new AtomicBoolean();
+        given(historyLog.appendAll(any())).willAnswer(invocation -> Mono.defer(() -> {
+            if (failing.get()) {
+                return Mono.error(new IllegalStateException("database down"));
+            }
+            written.add(new ArrayList<>(invocation.getArgument(0)));
+            return Mono.empty();
+        }));
+    }
+
+    @Test
+    void recordsOnlyPriceAndInventoryChanges() {
+        Beer beer = beer(1, "5.00", 10);
+
+        assertThat(BeerAuditLog.toEntry(BeerChangedEvent.created(beer))).isNotNull();
+        assertThat(BeerAuditLog.toEntry(BeerChangedEvent.updated(beer, beer.toBuilder().beerName("Renamed").build()))).isNull();
+        assertThat(BeerAuditLog.toEntry(BeerChangedEvent.updated(beer, beer.toBuilder().price(new BigDecimal("5.0")).build()))).isNull();
+
+        BeerHistoryEntry repriced = BeerAuditLog.toEntry(BeerChangedEvent.updated(beer, beer.toBuilder().price(new BigDecimal("6.00")).build()));
+        assertThat(repriced.getPriceBefore()).isEqualByComparingTo("5.00");
+        assertThat(repriced.getPriceAfter()).isEqualByComparingTo("6.00");
+        assertThat(repriced.getQuantityOnHandAfter()).isEqualTo(10);
+
+        BeerHistoryEntry deleted = BeerAuditLog.toEntry(BeerChangedEvent.deleted(beer));
+        assertThat(deleted.getPriceAfter()).isNull();
+        assertThat(deleted.getChangeType()).isEqualTo(BeerChangedEvent.Type.DELETED);
+    }
+
+    @Test
+    void dropsWhatDoesNotFitInTheQueue() {
+        BeerAuditLog auditLog = new BeerAuditLog(historyLog, meterRegistry, 5, 10);
+
+        for (int id = 1; id <= 7; id++) {
+            auditLog.onBeerChanged(BeerChangedEvent.created(beer(id, "1.00", 1)));
+        }
+        auditLog.flush().block();
+
+        assertThat(meterRegistry.counter("brewery.audit.dropped").count()).isEqualTo(2);
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0)).extracting(BeerHistoryEntry::getBeerId).containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void writesAFullBatchWithoutWaitingForTheSchedule() throws InterruptedException {
+        BeerAuditLog auditLog = new BeerAuditLog(historyLog, meterRegistry, 100, 3);
+
+        for (int id = 1; id <= 7; id++) {
+            auditLog.onBeerChanged(BeerChangedEvent.created(beer(id, "1.00", 1)));
+        }
+        for (int i = 0; i < 200 && meterRegistry.counter("brewery.audit.recorded").count() < 6; i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(meterRegistry.counter("brewery.audit.recorded").count()).isGreaterThanOrEqualTo(6);
+        assertThat(written).allSatisfy(batch -> assertThat(batch.size()).isLessThanOrEqualTo(3));
+    }
+
+    @Test
+    void keepsAFailedBatchAndDrainsItOnShutdown() throws InterruptedException {
+        BeerAuditLog auditLog = new BeerAuditLog(historyLog, meterRegistry, 100, 50);
+        auditLog.onBeerChanged(BeerChangedEvent.created(beer(1, "1.00", 1)));
+        auditLog.onBeerChanged(BeerChangedEvent.updated(beer(1, "1.00", 1), beer(1, "2.00", 1)));
+
+        failing.set(true);
+        auditLog.flush().block();
+        assertThat(written).isEmpty();
+        assertThat(meterRegistry.counter("brewery.audit.write.failures").count()).isEqualTo(1);
+
+        failing.set(false);
+        assertThat(auditLog.drain(Duration.ofSeconds(5))).isZero();
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0)).hasSize(2);
+    }
+
+    private static Beer beer(int id, String price, Integer quantityOnHand) {
+        return Beer.builder().id(id).beerName("Beer " + id).price(new BigDecimal(price)).quantityOnHand(quantityOnHand).build();
+    }
+}
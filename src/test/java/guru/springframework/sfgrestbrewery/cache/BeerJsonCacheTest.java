@@ -0,0 +1,123 @@
+package guru.springframework.sfgrestbrewery.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerJsonCacheTest {
+
+    ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    BeerNearCache beerNearCache;
+
+    @BeforeEach
+    void setUp() {
+        beerNearCache = new BeerNearCache(true, 100, Duration.ofMinutes(5), Duration.ofMinutes(1));
+        beerNearCache.markInSync();
+    }
+
+    @Test
+    void servesTheJsonAndGzipBytesOffHeap() throws IOException {
+        BeerJsonCache cache = cache(DataSize.ofKilobytes(64));
+        BeerDto beer = beer(1, "0631234200036", "Mango Bobs Mango Bobs Mango Bobs Mango Bobs");
+
+        cache.putById(cache.generation(), beer, false);
+        BeerJsonCache.CachedJson cached = cache.getById(1, false);
+
+        String expected = objectMapper.writeValueAsString(beer);
+        ByteBuf json = cached.retainedBytes(false);
+        assertThat(json.isDirect()).isTrue();
+        assertThat(json.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+        json.release();
+
+        assertThat(cached.hasGzip()).isTrue();
+        ByteBuf gzip = cached.retainedBytes(true);
+        byte[] compressed = new byte[gzip.readableBytes()];
+        gzip.readBytes(compressed).release();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(expected);
+        }
+
+        assertThat(cache.getById(1, true)).isNull(); //with inventory is another response
+    }
+
+    @Test
+    void changeEvictsEveryResponseOfTheBeer() {
+        BeerJsonCache cache = cache(DataSize.ofKilobytes(64));
+        BeerDto beer = beer(1, "0631234200036", "Mango Bobs");
+        cache.putById(cache.generation(), beer, false);
+        cache.putById(cache.generation(), beer, true);
+        cache.putByUpc(cache.generation(), beer);
+        cache.putById(cache.generation(), beer(2, "9122089364369", "Galaxy Cat"), false);
+
+        cache.evict(1);
+
+        assertThat(cache.getById(1, false)).isNull();
+        assertThat(cache.getById(1, true)).isNull();
+        assertThat(cache.getByUpc("0631234200036")).isNull();
+        assertThat(cache.getById(2, false)).isNotNull();
+    }
+
+    @Test
+    void readThatRacedAnEvictionIsNotKept() {
+        BeerJsonCache cache = cache(DataSize.ofKilobytes(64));
+        long generation = cache.generation();
+
+        cache.evict(1);
+
+        assertThat(cache.putById(generation, beer(1, "0631234200036", "Mango Bobs"), false)).isNull();
+        assertThat(cache.getById(1, false)).isNull();
+    }
+
+    @Test
+    void nothingIsEncodedWhileTheCacheDoesNotServe() {
+        BeerDto beer = beer(1, "0631234200036", "Mango Bobs");
+        BeerJsonCache disabled = new BeerJsonCache(false, DataSize.ofKilobytes(64), Duration.ofMinutes(5), objectMapper,
+                beerNearCache, new SimpleMeterRegistry());
+        assertThat(disabled.putById(disabled.generation(), beer, false)).isNull();
+
+        BeerNearCache notInSync = new BeerNearCache(true, 100, Duration.ofMinutes(5), Duration.ofMinutes(1));
+        BeerJsonCache outOfSync = new BeerJsonCache(true, DataSize.ofKilobytes(64), Duration.ofMinutes(5), objectMapper,
+                notInSync, new SimpleMeterRegistry());
+        assertThat(outOfSync.putById(outOfSync.generation(), beer, false)).isNull();
+
+        BeerJsonCache tooSmall = cache(DataSize.ofBytes(10));
+        assertThat(tooSmall.putById(tooSmall.generation(), beer, false)).isNull();
+    }
+
+    @Test
+    void leastRecentlyUsedGoesFirstWhenOverTheByteLimit() {
+        BeerJsonCache cache = cache(DataSize.ofBytes(1000));
+        for (int id = 1; id <= 20; id++) {
+            cache.putById(cache.generation(), beer(id, "0631234200036", "Beer " + id), false);
+            cache.getById(1, false); //keep the first one hot
+        }
+
+        assertThat(cache.getBytes()).isLessThanOrEqualTo(1000);
+        assertThat(cache.getById(1, false)).isNotNull();
+        assertThat(cache.getById(2, false)).isNull();
+        assertThat(cache.getById(20, false)).isNotNull();
+    }
+
+    private BeerJsonCache cache(DataSize maxBytes) {
+        return new BeerJsonCache(true, maxBytes, Duration.ofMinutes(5), objectMapper, beerNearCache, new SimpleMeterRegistry());
+    }
+
+    private static BeerDto beer(int id, String upc, String name) {
+        return BeerDto.builder().id(id).beerName(name).beerStyle(BeerStyleEnum.ALE.name()).upc(upc)
+                .price(new BigDecimal("12.95")).build();
+    }
+}
@@ -0,0 +1,131 @@
+package guru.springframework.sfgrestbrewery.cache;
+
+import guru.springframework.sfgrestbrewery.SfgReactiveBreweryApplication;
+import guru.springframework.sfgrestbrewery.services.BeerChangeFeedEvent;
+import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two application contexts on the same in-memory database stand in for two replicas of the service.
+ */
+class BeerNearCacheInvalidationTest {
+
+    private static final Duration STALENESS_WINDOW = Duration.ofSeconds(3);
+
+    ConfigurableApplicationContext first;
+    ConfigurableApplicationContext second;
+    List<BeerChangeFeedEvent> feedEventsSeenByFirst = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        first = start("first");
+        first.addApplicationListener((ApplicationListener<PayloadApplicationEvent<?>>) event -> {
+            if (event.getPayload() instanceof BeerChangeFeedEvent) {
+                feedEventsSeenByFirst.add((BeerChangeFeedEvent) event.getPayload());
+            }
+        });
+        second = start("second");
+    }
+
+    @AfterEach
+    void tearDown() {
+        second.close();
+        first.close();
+    }
+
+    @Test
+    void updateOnOneInstanceEvictsTheOther() throws InterruptedException {
+        BeerService firstService = first.getBean(BeerService.class);
+        BeerService secondService = second.getBean(BeerService.class);
+        BeerNearCache firstCache = first.getBean(BeerNearCache.class);
+
+        awaitServing(firstCache);
+        BeerDto cached = firstService.getById(2, false).block();
+        assertThat(firstCache.getById(2)).isNotNull();
+
+        BigDecimal newPrice = cached.getPrice().add(BigDecimal.ONE);
+        secondService.updateBeer(2, BeerDto.builder().beerName(cached.getBeerName()).beerStyle(cached.getBeerStyle())
+                .upc(cached.getUpc()).price(newPrice).build()).block();
+
+        long deadline = System.nanoTime() + STALENESS_WINDOW.toNanos();
+        while (firstService.getById(2, false).block().getPrice().compareTo(newPrice) != 0) {
+            assertThat(System.nanoTime()).as("stale price served past the staleness window").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+        assertThat(feedEventsSeenByFirst).anyMatch(event -> event.getBeerId() == 2);
+    }
+
+    @Test
+    void ownWritesEvictImmediately() throws InterruptedException {
+        BeerService firstService = first.getBean(BeerService.class);
+        awaitServing(first.getBean(BeerNearCache.class));
+
+        BeerDto cached = firstService.getByUpc(firstService.getById(3, false).block().getUpc()).block();
+        BigDecimal newPrice = cached.getPrice().add(BigDecimal.TEN);
+        firstService.updateBeer(3, BeerDto.builder().beerName(cached.getBeerName()).beerStyle(cached.getBeerStyle())
+                .upc(cached.getUpc()).price(newPrice).build()).block();
+
+        assertThat(firstService.getById(3, false).block().getPrice()).isEqualByComparingTo(newPrice);
+        assertThat(firstService.getByUpc(cached.getUpc()).block().getPrice()).isEqualByComparingTo(newPrice);
+    }
+
+    @Test
+    void existenceFilterAnswersUnknownUpcsAndSeesBeersCreatedElsewhere() throws InterruptedException {
+        BeerService firstService = first.getBean(BeerService.class);
+        BeerService secondService = second.getBean(BeerService.class);
+        BeerExistenceFilter firstFilter = first.getBean(BeerExistenceFilter.class);
+        MeterRegistry meterRegistry = first.getBean(MeterRegistry.class);
+
+        for (int i = 0; i < 100 && !firstFilter.isServing(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(firstFilter.isServing()).isTrue();
+
+        assertThat(firstService.getByUpc("0000000000000").block()).isNull();
+        assertThat(meterRegistry.counter("brewery.bloom.lookups", "key", "upc", "result", "negative").count())
+                .isGreaterThanOrEqualTo(1);
+
+        secondService.saveNewBeer(BeerDto.builder().beerName("Bloom Pils").beerStyle("PILSNER")
+                .upc("1111111111116").price(BigDecimal.TEN).build()).block();
+
+        long deadline = System.nanoTime() + STALENESS_WINDOW.toNanos();
+        while (firstService.getByUpc("1111111111116").block() == null) {
+            assertThat(System.nanoTime()).as("new beer not found past the staleness window").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static void awaitServing(BeerNearCache cache) throws InterruptedException {
+        for (int i = 0; i < 100 && !cache.isServing(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(cache.isServing()).isTrue();
+    }
+
+    private static ConfigurableApplicationContext start(String instanceId) {
+        return new SpringApplicationBuilder(SfgReactiveBreweryApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("brewery.instance-id=" + instanceId,
+                        "brewery.cache.poll-interval=PT0.2S",
+                        "brewery.bloom.check-interval=PT0.2S",
+                        "brewery.eventloop.monitor.enabled=false",
+                        "spring.jmx.enabled=false")
+                .run();
+    }
+}
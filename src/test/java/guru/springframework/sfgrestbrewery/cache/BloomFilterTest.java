@@ -0,0 +1,45 @@
+package guru.springframework.sfgrestbrewery.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegativesAndAboutTheExpectedFalsePositives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(BloomFilter.hash(String.format("%013d", i)));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain(BloomFilter.hash(String.format("%013d", i)))).isTrue();
+        }
+
+        int falsePositives = 0;
+        for (int i = 10_000; i < 110_000; i++) {
+            if (filter.mightContain(BloomFilter.hash(String.format("%013d", i)))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.expectedFalsePositiveProbability()).isBetween(0.005, 0.02);
+    }
+
+    @Test
+    void sequentialIdsSpreadToo() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (int id = 1; id <= 1_000; id++) {
+            filter.put(BloomFilter.hash(id));
+        }
+
+        int falsePositives = 0;
+        for (int id = 1_001; id <= 101_000; id++) {
+            if (filter.mightContain(BloomFilter.hash(id))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+}
@@ -0,0 +1,68 @@
+package guru.springframework.sfgrestbrewery.lifecycle;
+
+import guru.springframework.sfgrestbrewery.audit.BeerAuditLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class GracefulShutdownTest {
+
+    BackgroundTasks backgroundTasks;
+    BeerAuditLog beerAuditLog;
+    SimpleMeterRegistry meterRegistry;
+    GracefulShutdown gracefulShutdown;
+
+    @BeforeEach
+    void setUp() {
+        backgroundTasks = new BackgroundTasks();
+        beerAuditLog = mock(BeerAuditLog.class);
+        meterRegistry = new SimpleMeterRegistry();
+        gracefulShutdown = new GracefulShutdown(new InFlightRequests(), backgroundTasks, beerAuditLog, meterRegistry,
+                Duration.ofMillis(500), Duration.ofSeconds(1));
+    }
+
+    @Test
+    void waitsForBackgroundTasksThenFlushesTheHistory() throws InterruptedException {
+        AtomicBoolean slowDone = new AtomicBoolean();
+        backgroundTasks.track("slow", Mono.delay(Duration.ofMillis(100)).doOnNext(tick -> slowDone.set(true)));
+        backgroundTasks.track("stuck", Mono.never());
+        given(beerAuditLog.getQueued()).willReturn(7);
+        given(beerAuditLog.drain(any())).willReturn(2);
+
+        gracefulShutdown.start();
+        gracefulShutdown.onClose();
+        gracefulShutdown.stop();
+
+        assertThat(slowDone).isTrue();
+        assertThat(backgroundTasks.getRunning()).isZero();
+        assertThat(meterRegistry.counter("brewery.shutdown.drained", "what", "tasks").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("brewery.shutdown.dropped", "what", "tasks").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("brewery.shutdown.drained", "what", "history").count()).isEqualTo(5);
+        assertThat(meterRegistry.counter("brewery.shutdown.dropped", "what", "history").count()).isEqualTo(2);
+        assertThat(gracefulShutdown.isRunning()).isFalse();
+    }
+
+    @Test
+    void tasksThatCompleteRightAwayAreNotTracked() throws InterruptedException {
+        backgroundTasks.track("done", Mono.just(1));
+        backgroundTasks.track("failed", Mono.error(new IllegalStateException("boom")));
+
+        assertThat(backgroundTasks.getRunning()).isZero();
+        assertThat(backgroundTasks.awaitIdle(Duration.ZERO)).isZero();
+    }
+
+    @Test
+    void runsAfterTheWebServerHasStopped() {
+        //the graceful shutdown of the server is in the default phase, stopping it one below
+        assertThat(gracefulShutdown.getPhase()).isLessThan(Integer.MAX_VALUE - 1);
+    }
+}
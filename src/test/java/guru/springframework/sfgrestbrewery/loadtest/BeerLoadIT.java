@@ -0,0 +1,83 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test against the application started on a random port. Not part of the unit test run, start it with
+ * {@code mvn test -Dtest=BeerLoadIT} plus any of the {@code loadtest.*} properties of {@link LoadTestSettings}.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"logging.level.reactor.netty.http=info",
+                "logging.level.org.springframework.data.r2dbc=info",
+                "logging.level.org.springframework.r2dbc=info",
+                "logging.level.io.r2dbc=info",
+                "logging.level.guru.springframework.sfgrestbrewery=info"})
+public class BeerLoadIT {
+
+    @LocalServerPort
+    int port;
+
+    LoadTestSettings settings;
+    ConnectionProvider connectionProvider;
+    WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        settings = LoadTestSettings.fromSystemProperties();
+
+        connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(settings.getConnections())
+                .pendingAcquireMaxCount(-1) //an open loop generator queues instead of failing the request
+                .pendingAcquireTimeout(Duration.ofSeconds(30))
+                .build();
+
+        webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void runLoadMix() throws Exception {
+        List<BeerDto> catalog = webClient.get().uri("/api/v1/beer?pageSize=100")
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(BeerPagedList.class)
+                .map(BeerPagedList::getContent)
+                .block(Duration.ofSeconds(10));
+
+        LoadTestResult result = new LoadGenerator(webClient, catalog, settings).run();
+        Path summary = result.writeReports();
+
+        log.info("{} requests in {} ({} req/s), {} failures, report written to {}",
+                result.getTotalRequests(), result.getElapsed(), String.format("%.1f", result.getThroughput()),
+                result.getTotalFailures(), summary.toAbsolutePath());
+
+        assertThat(result.getTotalRequests()).isPositive();
+        assertThat(result.getTotalFailures()).isZero();
+    }
+}
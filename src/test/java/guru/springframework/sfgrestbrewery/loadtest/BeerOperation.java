@@ -0,0 +1,79 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The requests a load test can mix. Each one picks its target from the beers that were in the
+ * catalog when the run started and resolves to the HTTP status code.
+ */
+public enum BeerOperation {
+
+    V1_LIST {
+        @Override
+        Mono<Integer> execute(WebClient webClient, List<BeerDto> catalog) {
+            return status(webClient.get().uri("/api/v1/beer").accept(MediaType.APPLICATION_JSON));
+        }
+    },
+    V1_GET_BY_ID {
+        @Override
+        Mono<Integer> execute(WebClient webClient, List<BeerDto> catalog) {
+            return status(webClient.get().uri("/api/v1/beer/{beerId}", pick(catalog).getId())
+                    .accept(MediaType.APPLICATION_JSON));
+        }
+    },
+    V1_GET_BY_UPC {
+        @Override
+        Mono<Integer> execute(WebClient webClient, List<BeerDto> catalog) {
+            return status(webClient.get().uri("/api/v1/beerUpc/{upc}", pick(catalog).getUpc())
+                    .accept(MediaType.APPLICATION_JSON));
+        }
+    },
+    V2_GET_BY_ID {
+        @Override
+        Mono<Integer> execute(WebClient webClient, List<BeerDto> catalog) {
+            return status(webClient.get().uri(BeerRouterConfig.BEER_V2_URL_ID, pick(catalog).getId())
+                    .accept(MediaType.APPLICATION_JSON));
+        }
+    },
+    V2_GET_BY_UPC {
+        @Override
+        Mono<Integer> execute(WebClient webClient, List<BeerDto> catalog) {
+            return status(webClient.get().uri(BeerRouterConfig.BEER_V2_URL_UPC + "/{upc}", pick(catalog).getUpc())
+                    .accept(MediaType.APPLICATION_JSON));
+        }
+    },
+    V2_UPDATE {
+        @Override
+        Mono<Integer> execute(WebClient webClient, List<BeerDto> catalog) {
+            BeerDto beer = pick(catalog);
+            BeerDto payload = BeerDto.builder()
+                    .beerName(beer.getBeerName())
+                    .beerStyle(beer.getBeerStyle())
+                    .upc(beer.getUpc())
+                    .price(beer.getPrice())
+                    .build();
+
+            return status(webClient.put().uri(BeerRouterConfig.BEER_V2_URL_ID, beer.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(payload));
+        }
+    };
+
+    abstract Mono<Integer> execute(WebClient webClient, List<BeerDto> catalog);
+
+    private static BeerDto pick(List<BeerDto> catalog) {
+        return catalog.get(ThreadLocalRandom.current().nextInt(catalog.size()));
+    }
+
+    private static Mono<Integer> status(WebClient.RequestHeadersSpec<?> request) {
+        //the body is released rather than decoded, we only time the exchange
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.rawStatusCode()));
+    }
+}
@@ -0,0 +1,155 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a weighted mix of {@link BeerOperation}s against a running server and records the latency of
+ * every request in an HdrHistogram {@link Recorder} per operation.
+ * <p>
+ * In {@link LoadTestSettings.Mode#RATE} mode every request has an intended start time on a fixed schedule
+ * and its latency is measured from that time, not from when it was actually sent. A server stall therefore
+ * shows up in the numbers of all the requests that should have been sent during the stall, instead of being
+ * hidden by the generator waiting for it (coordinated omission).
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final WebClient webClient;
+    private final List<BeerDto> catalog;
+    private final LoadTestSettings settings;
+    private final BeerOperation[] weightedOperations;
+
+    private final Map<BeerOperation, Recorder> recorders = new EnumMap<>(BeerOperation.class);
+    private final Map<BeerOperation, AtomicLong> failures = new EnumMap<>(BeerOperation.class);
+
+    public LoadGenerator(WebClient webClient, List<BeerDto> catalog, LoadTestSettings settings) {
+        if (catalog.isEmpty()) {
+            throw new IllegalArgumentException("Cannot generate load against an empty catalog");
+        }
+        this.webClient = webClient;
+        this.catalog = catalog;
+        this.settings = settings;
+
+        List<BeerOperation> weighted = new ArrayList<>();
+        settings.getMix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(operation);
+            }
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+            failures.put(operation, new AtomicLong());
+        });
+        this.weightedOperations = weighted.toArray(new BeerOperation[0]);
+    }
+
+    public LoadTestResult run() {
+        log.info("Warming up for {}", settings.getWarmup());
+        drive(settings.getWarmup());
+        resetRecorders();
+
+        log.info("Running {} load for {}", settings.getMode(), settings.getDuration());
+        long started = System.nanoTime();
+        drive(settings.getDuration());
+        long elapsed = System.nanoTime() - started;
+
+        Map<BeerOperation, Histogram> histograms = new EnumMap<>(BeerOperation.class);
+        Map<BeerOperation, Long> failureCounts = new EnumMap<>(BeerOperation.class);
+        recorders.forEach((operation, recorder) -> {
+            histograms.put(operation, recorder.getIntervalHistogram());
+            failureCounts.put(operation, failures.get(operation).get());
+        });
+
+        return new LoadTestResult(settings, histograms, failureCounts, Duration.ofNanos(elapsed));
+    }
+
+    private void drive(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            return;
+        }
+
+        Flux<Void> load = settings.getMode() == LoadTestSettings.Mode.RATE
+                ? constantRate(duration)
+                : fixedConcurrency(duration);
+
+        load.blockLast(duration.plus(REQUEST_TIMEOUT).plusSeconds(5));
+    }
+
+    private Flux<Void> constantRate(Duration duration) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.getRate();
+        long totalRequests = duration.toNanos() / intervalNanos;
+        long start = System.nanoTime();
+        AtomicLong scheduled = new AtomicLong();
+
+        //every millisecond release all the requests whose intended start time has passed, a late tick just
+        //releases more of them, so the schedule never slips
+        return Flux.interval(Duration.ofMillis(1))
+                .onBackpressureDrop()
+                .concatMapIterable(tick -> {
+                    long due = Math.min(totalRequests, (System.nanoTime() - start) / intervalNanos + 1);
+                    List<Long> intendedStarts = new ArrayList<>();
+                    for (long i = scheduled.get(); i < due; i++) {
+                        intendedStarts.add(start + i * intervalNanos);
+                    }
+                    scheduled.set(Math.max(scheduled.get(), due));
+                    return intendedStarts;
+                })
+                .take(totalRequests)
+                .onBackpressureBuffer()
+                .flatMap(this::fire, settings.getConcurrency());
+    }
+
+    private Flux<Void> fixedConcurrency(Duration duration) {
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        return Flux.range(0, settings.getConcurrency())
+                .flatMap(worker -> Mono.defer(() -> fire(System.nanoTime()))
+                        .repeat(() -> System.nanoTime() < deadline), settings.getConcurrency());
+    }
+
+    private Mono<Void> fire(long intendedStartNanos) {
+        BeerOperation operation = weightedOperations[ThreadLocalRandom.current().nextInt(weightedOperations.length)];
+
+        return operation.execute(webClient, catalog)
+                .timeout(REQUEST_TIMEOUT)
+                .doOnNext(status -> {
+                    record(operation, intendedStartNanos);
+                    if (status >= 400) {
+                        failures.get(operation).incrementAndGet();
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.debug("{} failed", operation, e);
+                    record(operation, intendedStartNanos);
+                    failures.get(operation).incrementAndGet();
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void record(BeerOperation operation, long intendedStartNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos);
+        recorders.get(operation).recordValue(Math.min(Math.max(micros, 0), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    private void resetRecorders() {
+        recorders.values().forEach(Recorder::reset);
+        failures.values().forEach(counter -> counter.set(0));
+    }
+}
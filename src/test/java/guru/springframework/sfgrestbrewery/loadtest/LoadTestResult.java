@@ -0,0 +1,92 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Latency histograms (in microseconds) and failure counts of a load test run, and the files they are
+ * reported in. Every run writes one HdrHistogram percentile distribution per operation
+ * ({@code <label>-<timestamp>-<operation>.hgrm}, plottable with the HdrHistogram plotter) plus a
+ * {@code <label>-<timestamp>-summary.csv} with throughput and the usual percentiles, so two builds can be
+ * compared by running the same mix with a different {@code loadtest.label}.
+ */
+@Getter
+public class LoadTestResult {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final LoadTestSettings settings;
+    private final Map<BeerOperation, Histogram> histograms;
+    private final Map<BeerOperation, Long> failures;
+    private final Duration elapsed;
+    private final Histogram total;
+
+    public LoadTestResult(LoadTestSettings settings, Map<BeerOperation, Histogram> histograms,
+                          Map<BeerOperation, Long> failures, Duration elapsed) {
+        this.settings = settings;
+        this.histograms = histograms;
+        this.failures = failures;
+        this.elapsed = elapsed;
+
+        this.total = new Histogram(3);
+        histograms.values().forEach(total::add);
+    }
+
+    public long getTotalRequests() {
+        return total.getTotalCount();
+    }
+
+    public long getTotalFailures() {
+        return failures.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public double getThroughput() {
+        return getTotalRequests() / (elapsed.toNanos() / 1_000_000_000.0);
+    }
+
+    public Path writeReports() throws IOException {
+        Path dir = settings.getOutputDir();
+        Files.createDirectories(dir);
+        String prefix = settings.getLabel() + "-" + LocalDateTime.now().format(TIMESTAMP);
+
+        for (Map.Entry<BeerOperation, Histogram> entry : histograms.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(prefix + "-" + entry.getKey() + ".hgrm")))) {
+                entry.getValue().outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+        }
+
+        Path summary = dir.resolve(prefix + "-summary.csv");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(summary))) {
+            out.printf("# mode=%s rate=%d concurrency=%d connections=%d duration=%s elapsed=%s%n",
+                    settings.getMode(), settings.getRate(), settings.getConcurrency(), settings.getConnections(),
+                    settings.getDuration(), elapsed);
+            out.println("operation,requests,failures,throughput_rps,p50_ms,p90_ms,p99_ms,p99_9_ms,max_ms");
+            histograms.forEach((operation, histogram) -> printRow(out, operation.name(), histogram, failures.get(operation)));
+            printRow(out, "TOTAL", total, getTotalFailures());
+        }
+        return summary;
+    }
+
+    private void printRow(PrintStream out, String name, Histogram histogram, long failureCount) {
+        out.printf("%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                name,
+                histogram.getTotalCount(),
+                failureCount,
+                histogram.getTotalCount() / (elapsed.toNanos() / 1_000_000_000.0),
+                histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(90) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                histogram.getMaxValue() / MICROS_PER_MILLI);
+    }
+}
@@ -0,0 +1,74 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings for a load test run, read from system properties so the same test can be pointed at
+ * different mixes from the command line, e.g.
+ * <pre>
+ * mvn test -Dtest=BeerLoadIT -Dloadtest.mode=RATE -Dloadtest.rate=300 -Dloadtest.duration=PT30S \
+ *     -Dloadtest.mix=V2_GET_BY_ID:5,V2_GET_BY_UPC:3,V1_LIST:1 -Dloadtest.label=before-change
+ * </pre>
+ */
+@Value
+@Builder
+public class LoadTestSettings {
+
+    public enum Mode {
+        RATE, //open loop: requests are issued on a fixed schedule no matter how slow the server is
+        CONCURRENCY //closed loop: a fixed number of workers, each waits for its response before sending again
+    }
+
+    Mode mode;
+    int rate; //requests per second, RATE mode only
+    int concurrency; //workers in CONCURRENCY mode, max in flight requests in RATE mode
+    int connections; //size of the client connection pool
+    Duration warmup;
+    Duration duration;
+    Map<BeerOperation, Integer> mix;
+    Path outputDir;
+    String label;
+
+    public static LoadTestSettings fromSystemProperties() {
+        return LoadTestSettings.builder()
+                .mode(Mode.valueOf(System.getProperty("loadtest.mode", "RATE").toUpperCase()))
+                .rate(Integer.getInteger("loadtest.rate", 100))
+                .concurrency(Integer.getInteger("loadtest.concurrency", 32))
+                .connections(Integer.getInteger("loadtest.connections", 64))
+                .warmup(Duration.parse(System.getProperty("loadtest.warmup", "PT2S")))
+                .duration(Duration.parse(System.getProperty("loadtest.duration", "PT10S")))
+                .mix(parseMix(System.getProperty("loadtest.mix",
+                        "V1_GET_BY_ID:2,V1_GET_BY_UPC:1,V1_LIST:1,V2_GET_BY_ID:4,V2_GET_BY_UPC:2")))
+                .outputDir(Paths.get(System.getProperty("loadtest.outputDir", "target/loadtest")))
+                .label(System.getProperty("loadtest.label", "local"))
+                .build();
+    }
+
+    static Map<BeerOperation, Integer> parseMix(String mix) {
+        Map<BeerOperation, Integer> weights = new LinkedHashMap<>();
+
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in load test mix: " + entry);
+            }
+            if (weight > 0) {
+                weights.put(BeerOperation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Load test mix has no operations: " + mix);
+        }
+        return weights;
+    }
+}
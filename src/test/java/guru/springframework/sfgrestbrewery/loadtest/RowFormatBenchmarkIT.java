@@ -0,0 +1,154 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.compact.CompactBeerReadingConverter;
+import guru.springframework.sfgrestbrewery.repositories.compact.CompactBeerWritingConverter;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.dialect.R2dbcDialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the default and the compact row format ({@code brewery.storage.compact}) on the same generated catalog:
+ * bytes allocated per row for a full table read into entities, and the average time of a lookup by upc.
+ * <p>
+ * Every format gets its own in-memory database with {@code rowformat.rows} beers (default 20000); each measurement
+ * is repeated {@code rowformat.iterations} times after as many warm up rounds. Writes
+ * {@code <label>-rowformat.csv} to {@code loadtest.outputDir}. For the effect under load run {@link BeerLoadIT}
+ * with and without {@code -Dbrewery.storage.compact=true}.
+ */
+@Slf4j
+public class RowFormatBenchmarkIT {
+
+    @Test
+    void compareRowFormats() throws Exception {
+        int rows = Integer.getInteger("rowformat.rows", 20_000);
+        int iterations = Integer.getInteger("rowformat.iterations", 5);
+        int lookups = Integer.getInteger("rowformat.lookups", 5_000);
+
+        Path outputDir = Paths.get(System.getProperty("loadtest.outputDir", "target/loadtest"));
+        Files.createDirectories(outputDir);
+        Path report = outputDir.resolve(System.getProperty("loadtest.label", "local") + "-rowformat.csv");
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report))) {
+            out.println("format,iteration,read_bytes_per_row,upc_lookup_micros");
+
+            for (boolean compact : new boolean[]{false, true}) {
+                String format = compact ? "compact" : "default";
+                ConnectionFactory connectionFactory = ConnectionFactories.get(
+                        "r2dbc:h2:mem:///rowformat_" + format + ";DB_CLOSE_DELAY=-1");
+                new ResourceDatabasePopulator(new ClassPathResource(compact ? "schema-compact.sql" : "schema.sql"))
+                        .populate(connectionFactory).block();
+                R2dbcEntityTemplate template = template(connectionFactory, compact);
+
+                List<String> upcs = load(template, rows);
+
+                for (int i = -iterations; i < iterations; i++) {
+                    double bytesPerRow = (double) allocatedBytes(() -> readAll(template)) / rows;
+                    double lookupMicros = timeLookups(template, compact, upcs, lookups);
+                    if (i >= 0) { //the first rounds only warm up
+                        log.info("{} #{}: {} bytes per row read, {} us per upc lookup", format, i,
+                                Math.round(bytesPerRow), String.format("%.1f", lookupMicros));
+                        out.printf("%s,%d,%.0f,%.1f%n", format, i, bytesPerRow, lookupMicros);
+                        assertThat(bytesPerRow).isPositive();
+                    }
+                }
+            }
+        }
+        log.info("Row format report written to {}", report.toAbsolutePath());
+    }
+
+    private static R2dbcEntityTemplate template(ConnectionFactory connectionFactory, boolean compact) {
+        R2dbcDialect dialect = DialectResolver.getDialect(connectionFactory);
+        R2dbcCustomConversions conversions = compact
+                ? R2dbcCustomConversions.of(dialect, List.of(new CompactBeerReadingConverter(), new CompactBeerWritingConverter()))
+                : R2dbcCustomConversions.of(dialect, List.of());
+        R2dbcMappingContext mappingContext = new R2dbcMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        return new R2dbcEntityTemplate(DatabaseClient.create(connectionFactory), dialect,
+                new MappingR2dbcConverter(mappingContext, conversions));
+    }
+
+    private static List<String> load(R2dbcEntityTemplate template, int rows) {
+        Random random = new Random(42);
+        BeerStyleEnum[] styles = BeerStyleEnum.values();
+        return Flux.range(0, rows)
+                .map(i -> Beer.builder()
+                        .beerName("Beer " + i)
+                        .beerStyle(styles[random.nextInt(styles.length)])
+                        .upc(String.format("%013d", Math.abs(random.nextLong()) % 10_000_000_000_000L))
+                        .price(BigDecimal.valueOf(random.nextInt(10_000), 2))
+                        .quantityOnHand(random.nextInt(5_000))
+                        .createdDate(LocalDateTime.now())
+                        .lastModifiedDate(LocalDateTime.now())
+                        .build())
+                .concatMap(template::insert, 256)
+                .map(Beer::getUpc)
+                .collectList()
+                .block(Duration.ofMinutes(5));
+    }
+
+    private static void readAll(R2dbcEntityTemplate template) {
+        template.getDatabaseClient().sql("SELECT * FROM beer")
+                .map((row, metadata) -> template.getConverter().read(Beer.class, row, metadata))
+                .all()
+                .blockLast();
+    }
+
+    private static double timeLookups(R2dbcEntityTemplate template, boolean compact, List<String> upcs, int lookups) {
+        DatabaseClient client = template.getDatabaseClient();
+        R2dbcConverter converter = template.getConverter();
+        Random random = new Random(7);
+        long started = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            String upc = upcs.get(random.nextInt(upcs.size()));
+            Beer beer = client.sql("SELECT * FROM beer WHERE upc = :upc")
+                    .bind("upc", compact ? (Object) Long.parseLong(upc) : upc)
+                    .map((row, metadata) -> converter.read(Beer.class, row, metadata))
+                    .first()
+                    .block();
+            assertThat(beer).isNotNull();
+        }
+        return (System.nanoTime() - started) / 1000.0 / lookups;
+    }
+
+    private static long allocatedBytes(Runnable work) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = totalAllocated(threads);
+        work.run();
+        return totalAllocated(threads) - before;
+    }
+
+    private static long totalAllocated(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,135 @@
+package guru.springframework.sfgrestbrewery.loadtest;
+
+import guru.springframework.sfgrestbrewery.SfgReactiveBreweryApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures time to first successful request: the application is started in a fresh JVM and
+ * {@code GET /api/v2/beer/1} is polled until it answers 200. That includes JVM startup, context refresh,
+ * the data load and whatever lazy initialization the first request triggers.
+ * <p>
+ * Runs every variant {@code startup.iterations} times and writes {@code <label>-startup.csv} to
+ * {@code loadtest.outputDir}. The defaults compare the default configuration with the {@code fast} profile on
+ * the test classpath. To measure the AppCDS archive built by {@code mvn package -Pappcds}:
+ * <pre>
+ * mvn test -Dtest=StartupBenchmarkIT -Dstartup.classpath="$(cat target/appcds/classpath.txt)" \
+ *     -Dstartup.jvmArgs=-XX:SharedArchiveFile=target/appcds/app-cds.jsa -Dloadtest.label=appcds
+ * </pre>
+ */
+@Slf4j
+public class StartupBenchmarkIT {
+
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    @Test
+    void timeToFirstSuccessfulRequest() throws Exception {
+        int iterations = Integer.getInteger("startup.iterations", 3);
+        String classpath = System.getProperty("startup.classpath", System.getProperty("java.class.path"));
+        List<String> jvmArgs = split(System.getProperty("startup.jvmArgs", ""));
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("default", List.of());
+        variants.put("fast", List.of("--spring.profiles.active=fast"));
+
+        Path outputDir = Paths.get(System.getProperty("loadtest.outputDir", "target/loadtest"));
+        Files.createDirectories(outputDir);
+        Path report = outputDir.resolve(System.getProperty("loadtest.label", "local") + "-startup.csv");
+
+        try (PrintStream out = new PrintStream(Files.newOutputStream(report))) {
+            out.println("variant,iteration,time_to_first_request_ms");
+
+            for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+                for (int i = 0; i < iterations; i++) {
+                    long millis = startAndWaitForFirstRequest(classpath, jvmArgs, variant.getValue());
+                    log.info("{} #{}: first successful request after {} ms", variant.getKey(), i, millis);
+                    out.printf("%s,%d,%d%n", variant.getKey(), i, millis);
+
+                    assertThat(millis).isPositive();
+                }
+            }
+        }
+        log.info("Startup report written to {}", report.toAbsolutePath());
+    }
+
+    private long startAndWaitForFirstRequest(String classpath, List<String> jvmArgs, List<String> appArgs) throws Exception {
+        int port = freePort();
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-Dspring.devtools.restart.enabled=false"); //devtools is on the test classpath but never in a packaged jar
+        command.add("-cp");
+        command.add(classpath);
+        command.add(SfgReactiveBreweryApplication.class.getName());
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        try {
+            URL url = new URL("http://localhost:" + port + "/api/v2/beer/1");
+            while (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < STARTUP_TIMEOUT_MILLIS) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + process.exitValue() + " before serving a request");
+                }
+                if (isOk(url)) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("No successful request within " + STARTUP_TIMEOUT_MILLIS + " ms");
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private boolean isOk(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(100);
+            connection.setReadTimeout(10_000);
+            try {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false; //not listening yet
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static List<String> split(String args) {
+        return args.isBlank() ? List.of() : Arrays.asList(args.trim().split("\\s+"));
+    }
+}
@@ -0,0 +1,47 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccessLogFilterTest {
+
+    AccessLogRing ring = new AccessLogRing(16);
+    AccessLogFilter filter = new AccessLogFilter(ring, 0.0, Duration.ofMillis(50).toNanos(), new SimpleMeterRegistry());
+
+    @Test
+    void withNothingSampledOnlyErrorsAndSlowRequestsAreLogged() {
+        request("/fast", exchange -> Mono.empty());
+        request("/missing", exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return Mono.empty();
+        });
+        request("/slow", exchange -> Mono.delay(Duration.ofMillis(80)).then());
+        assertThrows(ResponseStatusException.class, () -> request("/failing",
+                exchange -> Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE))));
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/cancelled")), exchange -> Mono.never())
+                .subscribe()
+                .dispose(); //the client went away
+
+        List<String> logged = new ArrayList<>();
+        ring.drain(entry -> logged.add(entry.path.value() + " " + entry.status + " " + entry.outcome), 16);
+        assertThat(logged).containsExactly("/missing 404 COMPLETED", "/slow 200 COMPLETED", "/failing 503 FAILED",
+                "/cancelled 200 CANCELLED");
+    }
+
+    private void request(String path, WebFilterChain chain) {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get(path)), chain).block();
+    }
+}
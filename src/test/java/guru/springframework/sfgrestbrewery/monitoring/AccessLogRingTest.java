@@ -0,0 +1,120 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.RequestPath;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogRingTest {
+
+    @Test
+    void entriesComeOutInTheOrderTheyWentIn() {
+        AccessLogRing ring = new AccessLogRing(4);
+        for (int status = 200; status < 203; status++) {
+            add(ring, status);
+        }
+
+        List<Integer> statuses = new ArrayList<>();
+        assertThat(ring.drain(entry -> statuses.add(entry.status), 10)).isEqualTo(3);
+        assertThat(statuses).containsExactly(200, 201, 202);
+        assertThat(ring.drain(entry -> statuses.add(entry.status), 10)).isZero();
+    }
+
+    @Test
+    void fullRingRefusesUntilTheReaderCatchesUp() {
+        AccessLogRing ring = new AccessLogRing(3);
+        assertThat(ring.capacity()).isEqualTo(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(add(ring, 200 + i)).isTrue();
+        }
+        assertThat(add(ring, 299)).isFalse();
+
+        ring.drain(entry -> { }, 1);
+        assertThat(add(ring, 204)).isTrue();
+    }
+
+    @Test
+    void unpublishedEntryHoldsBackTheOnesAfterIt() {
+        AccessLogRing ring = new AccessLogRing(4);
+        long first = ring.claim();
+        add(ring, 201);
+
+        assertThat(ring.drain(entry -> { }, 10)).isZero();
+        ring.entry(first).status = 200;
+        ring.publish(first);
+
+        List<Integer> statuses = new ArrayList<>();
+        ring.drain(entry -> statuses.add(entry.status), 10);
+        assertThat(statuses).containsExactly(200, 201);
+    }
+
+    @Test
+    void concurrentWritersLoseNothingWhileThereIsRoom() throws InterruptedException {
+        AccessLogRing ring = new AccessLogRing(1 << 14);
+        int writers = 8;
+        int perWriter = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perWriter; i++) {
+                    add(ring, writer * perWriter + i);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        Set<Integer> seen = new HashSet<>();
+        ring.drain(entry -> seen.add(entry.status), Integer.MAX_VALUE);
+        assertThat(seen).hasSize(writers * perWriter);
+    }
+
+    @Test
+    void writerFormatsOneJsonLine() {
+        AccessLogRing ring = new AccessLogRing(4);
+        long position = ring.claim();
+        AccessLogRing.Entry entry = ring.entry(position);
+        entry.timestampMillis = 0;
+        entry.method = "GET";
+        entry.route = "/api/v2/beer/{beerId}";
+        entry.path = RequestPath.parse(URI.create("/api/v2/beer/3%22"), null);
+        entry.status = 200;
+        entry.latencyNanos = 1_234_567;
+        entry.bytes = 321;
+        entry.client = new InetSocketAddress("127.0.0.1", 50000);
+        entry.outcome = AccessLogRing.Outcome.COMPLETED;
+
+        assertThat(new AccessLogWriter(ring, null).format(entry)).isEqualTo("{\"time\":\"1970-01-01T00:00:00Z\","
+                + "\"method\":\"GET\",\"route\":\"/api/v2/beer/{beerId}\",\"path\":\"/api/v2/beer/3%22\","
+                + "\"status\":200,\"outcome\":\"completed\",\"latencyMs\":1.235,\"bytes\":321,\"client\":\"127.0.0.1\"}");
+    }
+
+    private static boolean add(AccessLogRing ring, int status) {
+        long position = ring.claim();
+        if (position < 0) {
+            return false;
+        }
+        ring.entry(position).status = status;
+        ring.publish(position);
+        return true;
+    }
+}
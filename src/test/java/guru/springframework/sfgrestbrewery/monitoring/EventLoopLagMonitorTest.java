@@ -0,0 +1,59 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventLoopLagMonitorTest {
+
+    NioEventLoopGroup eventLoopGroup;
+    SimpleMeterRegistry meterRegistry;
+    EventLoopLagMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        meterRegistry = new SimpleMeterRegistry();
+        monitor = new EventLoopLagMonitor(eventLoopGroup, meterRegistry, Duration.ofMillis(10), Duration.ofMillis(100));
+        monitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+        eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void recordsLagAndDetectsStall() throws Exception {
+        Thread.sleep(100);
+
+        //hold the loop well past the stall threshold
+        eventLoopGroup.submit(() -> {
+            try {
+                Thread.sleep(400);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(600);
+
+        Timer lag = meterRegistry.find("reactor.netty.eventloop.lag").timer();
+        Counter stalls = meterRegistry.find("reactor.netty.eventloop.stalls").counter();
+
+        assertThat(lag).isNotNull();
+        assertThat(lag.count()).isGreaterThan(1);
+        assertThat(lag.max(TimeUnit.MILLISECONDS)).isGreaterThan(200);
+        assertThat(stalls).isNotNull();
+        assertThat(stalls.count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,66 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryStatisticsTest {
+
+    @Test
+    void statementsDifferingOnlyInValuesAreTheSame() {
+        assertThat(QueryStatistics.normalize("SELECT * FROM beer  WHERE id IN ($1, $2, $3)\n ORDER BY id"))
+                .isEqualTo("SELECT * FROM beer WHERE id IN (?) ORDER BY id");
+        assertThat(QueryStatistics.normalize("SELECT * FROM beer WHERE id IN (17, 42) ORDER BY id"))
+                .isEqualTo("SELECT * FROM beer WHERE id IN (?) ORDER BY id");
+        assertThat(QueryStatistics.normalize("SELECT beer_name FROM beer WHERE upc = 'it''s' LIMIT 25 OFFSET 0"))
+                .isEqualTo("SELECT beer_name FROM beer WHERE upc = ? LIMIT ? OFFSET ?");
+        assertThat(QueryStatistics.normalize("UPDATE beer2 SET price = :price WHERE id = 3.5"))
+                .isEqualTo("UPDATE beer2 SET price = ? WHERE id = ?");
+    }
+
+    @Test
+    void onlyHarmlessParametersAreShown() {
+        Map<String, Object> bindings = new LinkedHashMap<>();
+        bindings.put("$1", 42);
+        bindings.put("$2", "0631234200036");
+        bindings.put("$3", null);
+        bindings.put("$4", new byte[]{1, 2, 3});
+
+        assertThat(QueryStatistics.redacted(bindings))
+                .isEqualTo("[$1=42, $2='***' (13 chars), $3=null, $4=*** (3 bytes)]");
+    }
+
+    @Test
+    void countsExecutionsAndRowsByStatement() {
+        QueryStatistics statistics = new QueryStatistics(true, Duration.ZERO, 200, new SimpleMeterRegistry());
+        DatabaseClient client = DatabaseClient.create(new ObservedConnectionFactory(
+                ConnectionFactories.get("r2dbc:h2:mem:///query_statistics;DB_CLOSE_DELAY=-1"), () -> statistics));
+
+        client.sql("CREATE TABLE item (id INT PRIMARY KEY, name VARCHAR(20))").then().block();
+        for (int id = 1; id <= 3; id++) {
+            client.sql("INSERT INTO item VALUES (:id, :name)").bind("id", id).bind("name", "item " + id)
+                    .fetch().rowsUpdated().block();
+        }
+        client.sql("SELECT * FROM item WHERE id IN (:ids)").bind("ids", List.of(1, 2)).fetch().all().collectList().block();
+        client.sql("SELECT * FROM item WHERE id IN (:ids)").bind("ids", List.of(3)).fetch().all().collectList().block();
+
+        List<QueryStatistics.QuerySummary> top = statistics.top(10);
+        assertThat(top).extracting(QueryStatistics.QuerySummary::getSql).containsExactlyInAnyOrder(
+                "CREATE TABLE item (id INT PRIMARY KEY, name VARCHAR(?))",
+                "INSERT INTO item VALUES (?)",
+                "SELECT * FROM item WHERE id IN (?)");
+        QueryStatistics.QuerySummary select = top.stream()
+                .filter(query -> query.getSql().startsWith("SELECT")).findFirst().orElseThrow();
+        assertThat(select.getCount()).isEqualTo(2);
+        assertThat(select.getRows()).isEqualTo(3);
+        assertThat(top).isSortedAccordingTo((a, b) -> Double.compare(b.getTotalMillis(), a.getTotalMillis()));
+    }
+}
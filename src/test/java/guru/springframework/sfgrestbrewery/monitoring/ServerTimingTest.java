@@ -0,0 +1,56 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import guru.springframework.sfgrestbrewery.web.functional.BeerRouterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.r2dbc.url=r2dbc:h2:mem:///server_timing;DB_CLOSE_DELAY=-1")
+@AutoConfigureWebTestClient
+class ServerTimingTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void breaksTheRequestDownIntoPhases() {
+        String serverTiming = webTestClient.get().uri(BeerRouterConfig.BEER_V2_URL)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseHeaders().getFirst(ServerTimingFilter.SERVER_TIMING_HEADER);
+
+        assertThat(serverTiming).contains("pool;dur=", "db;dur=", "map;dur=", "encode;dur=")
+                .containsPattern("total;dur=\\d+\\.\\d{3}$");
+
+        Timer db = meterRegistry.find("brewery.request.phase")
+                .tags("route", "GET " + BeerRouterConfig.BEER_V2_URL, "phase", "db").timer();
+        assertThat(db).isNotNull();
+        assertThat(db.count()).isPositive();
+    }
+
+    @Test
+    void validationIsTimedEvenWhenItFails() {
+        String serverTiming = webTestClient.post().uri(BeerRouterConfig.BEER_V2_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue("{}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .returnResult(String.class)
+                .getResponseHeaders().getFirst(ServerTimingFilter.SERVER_TIMING_HEADER);
+
+        assertThat(serverTiming).contains("validate;dur=").doesNotContain("db;dur=");
+    }
+}
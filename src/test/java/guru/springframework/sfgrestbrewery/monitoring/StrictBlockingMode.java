@@ -0,0 +1,43 @@
+package guru.springframework.sfgrestbrewery.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import reactor.blockhound.BlockHound;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opt-in strict mode ({@code brewery.eventloop.strict=true}): installs BlockHound, so any blocking call made on
+ * a non-blocking thread (Netty event loops, Reactor's parallel scheduler) throws a
+ * {@link reactor.blockhound.BlockingOperationError} instead of silently stalling the loop. The request that did
+ * it fails, and with it the test that sent the request. Run the test suite in strict mode with
+ * {@code mvn test -Pstrict-blocking}. Test code only, BlockHound isn't part of the application.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+@ConditionalOnProperty(name = "brewery.eventloop.strict", havingValue = "true")
+public class StrictBlockingMode {
+
+    private static final AtomicBoolean INSTALLED = new AtomicBoolean();
+
+    public StrictBlockingMode() {
+        install();
+    }
+
+    public static void install() {
+        if (!INSTALLED.compareAndSet(false, true)) {
+            return;
+        }
+
+        BlockHound.builder()
+                //console and file appenders write synchronously, logging from a handler isn't what we are after
+                .allowBlockingCallsInside("ch.qos.logback.core.OutputStreamAppender", "subAppend")
+                .allowBlockingCallsInside("ch.qos.logback.core.rolling.RollingFileAppender", "subAppend")
+                .install();
+
+        log.info("Strict mode: blocking calls on non-blocking threads will fail");
+    }
+}
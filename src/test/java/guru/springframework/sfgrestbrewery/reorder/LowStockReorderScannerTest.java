@@ -0,0 +1,96 @@
+package guru.springframework.sfgrestbrewery.reorder;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.domain.BeerReorder;
+import guru.springframework.sfgrestbrewery.lifecycle.BackgroundTasks;
+import guru.springframework.sfgrestbrewery.repositories.BeerReorderOutbox;
+import guru.springframework.sfgrestbrewery.repositories.BeerTableScanner;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LowStockReorderScannerTest {
+
+    BeerTableScanner beerTableScanner;
+    BeerReorderOutbox outbox;
+    SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        beerTableScanner = mock(BeerTableScanner.class);
+        outbox = mock(BeerReorderOutbox.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        given(beerTableScanner.scanBatches(anyInt())).willReturn(Flux.just(
+                List.of(beer(1, BeerStyleEnum.IPA, 3), beer(2, BeerStyleEnum.IPA, 30), beer(3, BeerStyleEnum.LAGER, 3)),
+                List.of(beer(4, BeerStyleEnum.STOUT, 0), beer(5, BeerStyleEnum.STOUT, null), beer(6, BeerStyleEnum.IPA, 24))));
+        given(outbox.appendAll(any())).willReturn(Mono.empty());
+    }
+
+    @Test
+    void reordersBeersBelowTheThresholdOfTheirStyle() {
+        given(outbox.reorderedSince(any(), any())).willReturn(Flux.just(4)); //reordered a moment ago
+        LowStockReorderScanner scanner = scanner(0);
+
+        List<BeerReorder> published = new ArrayList<>();
+        scanner.reorders().subscribe(published::add);
+
+        assertThat(scanner.scan().block()).isEqualTo(2);
+
+        assertThat(published).extracting(BeerReorder::getBeerId).containsExactlyInAnyOrder(1, 6);
+        assertThat(published).extracting(BeerReorder::getReorderThreshold).containsOnly(25);
+        assertThat(appended()).extracting(BeerReorder::getBeerId).containsExactlyInAnyOrder(1, 6);
+        assertThat(meterRegistry.counter("brewery.reorder.rows.scanned").count()).isEqualTo(6);
+        assertThat(meterRegistry.counter("brewery.reorder.reorders").count()).isEqualTo(2);
+        assertThat(meterRegistry.timer("brewery.reorder.scan").count()).isEqualTo(1);
+    }
+
+    @Test
+    void pacesTheScanToTheRowBudget() {
+        given(outbox.reorderedSince(any(), any())).willReturn(Flux.empty());
+        LowStockReorderScanner scanner = scanner(20); //6 rows at 20 a second
+
+        long started = System.nanoTime();
+        assertThat(scanner.scan().block()).isEqualTo(3);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isGreaterThanOrEqualTo(Duration.ofMillis(290));
+    }
+
+    private LowStockReorderScanner scanner(int maxRowsPerSecond) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("brewery.reorder.threshold.default", "0")
+                .withProperty("brewery.reorder.threshold.IPA", "25")
+                .withProperty("brewery.reorder.threshold.STOUT", "5");
+        return new LowStockReorderScanner(beerTableScanner, outbox, new ReorderThresholds(environment), new BackgroundTasks(), meterRegistry,
+                true, 3, 2, maxRowsPerSecond, Duration.ofHours(24));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BeerReorder> appended() {
+        ArgumentCaptor<List<BeerReorder>> batches = ArgumentCaptor.forClass(List.class);
+        verify(outbox, times(2)).appendAll(batches.capture());
+        return batches.getAllValues().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    private static Beer beer(int id, BeerStyleEnum style, Integer quantityOnHand) {
+        return Beer.builder().id(id).beerName("Beer " + id).beerStyle(style).quantityOnHand(quantityOnHand).build();
+    }
+}
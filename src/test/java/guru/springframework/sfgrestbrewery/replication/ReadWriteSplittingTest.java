@@ -0,0 +1,92 @@
+package guru.springframework.sfgrestbrewery.replication;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureWebTestClient
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"brewery.replica.enabled=true",
+                "brewery.replica.url=r2dbc:h2:mem:///beer_replica;DB_CLOSE_DELAY=-1",
+                "brewery.replica.lag=PT1S",
+                "brewery.replica.max-lag=PT30S",
+                "brewery.replica.read-your-writes-window=PT10S",
+                "brewery.cache.enabled=false"})
+class ReadWriteSplittingTest {
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    DatabaseClient replica;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        ReplicaRoutingConnectionFactory routing = (ReplicaRoutingConnectionFactory) connectionFactory;
+        replica = DatabaseClient.create(routing.getReplica());
+
+        for (int i = 0; i < 100 && !routing.getReplicaLag().isReadable(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(routing.getReplicaLag().isReadable()).isTrue();
+    }
+
+    @Test
+    void lookupsAreServedByTheReplica() {
+        BeerDto beer = get(5, null);
+        replica.sql("UPDATE beer SET beer_name = 'Only On The Replica' WHERE id = 5").then().block();
+        try {
+            assertThat(get(5, null).getBeerName()).isEqualTo("Only On The Replica");
+        } finally {
+            replica.sql("UPDATE beer SET beer_name = :name WHERE id = 5").bind("name", beer.getBeerName()).then().block();
+        }
+    }
+
+    @Test
+    void writerReadsItsOwnWriteWhileTheReplicaIsBehind() throws InterruptedException {
+        BeerDto before = get(7, null);
+        BigDecimal newPrice = before.getPrice().add(BigDecimal.ONE);
+
+        webTestClient.put().uri("/api/v2/beer/7")
+                .header("X-Client-Id", "writer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(BeerDto.builder().beerName(before.getBeerName()).beerStyle(before.getBeerStyle())
+                        .upc(before.getUpc()).price(newPrice).build())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        assertThat(get(7, "writer").getPrice()).isEqualByComparingTo(newPrice);
+        assertThat(get(7, "someone-else").getPrice()).isEqualByComparingTo(before.getPrice());
+
+        Thread.sleep(1500); //past the simulated replica lag
+        assertThat(get(7, "someone-else").getPrice()).isEqualByComparingTo(newPrice);
+    }
+
+    private BeerDto get(int beerId, String clientId) {
+        return webTestClient.get().uri("/api/v2/beer/" + beerId)
+                .headers(headers -> {
+                    if (clientId != null) {
+                        headers.add("X-Client-Id", clientId);
+                    }
+                })
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BeerDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -0,0 +1,87 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerSortField;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class BeerFilterQueriesTest {
+
+    @Autowired
+    BeerFilterQueries beerFilterQueries;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Test
+    void combinedCriteriaMatchFilteringInMemory() {
+        BeerFilter filter = BeerFilter.builder()
+                .beerStyles(EnumSet.of(BeerStyleEnum.IPA, BeerStyleEnum.PALE_ALE, BeerStyleEnum.LAGER))
+                .minPrice(new BigDecimal("10.00"))
+                .maxPrice(new BigDecimal("15.00"))
+                .inStock(true)
+                .build();
+
+        Predicate<Beer> matches = beer -> filter.getBeerStyles().contains(beer.getBeerStyle())
+                && beer.getPrice() != null
+                && beer.getPrice().compareTo(filter.getMinPrice()) >= 0
+                && beer.getPrice().compareTo(filter.getMaxPrice()) <= 0
+                && beer.getQuantityOnHand() != null && beer.getQuantityOnHand() > 0;
+
+        List<Integer> expected = beerRepository.findAll().filter(matches).map(Beer::getId).sort().collectList().block();
+        List<Integer> actual = ids(filter, PageRequest.of(0, 1000, Sort.by("id")));
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void namePrefixIsNotAPattern() {
+        Beer first = beerRepository.findAll().blockFirst();
+        String prefix = first.getBeerName().substring(0, 3);
+
+        assertThat(beerFilterQueries.find(BeerFilter.builder().namePrefix(prefix).build(), PageRequest.of(0, 1000))
+                .map(Beer::getBeerName).collectList().block())
+                .isNotEmpty()
+                .allMatch(name -> name.startsWith(prefix));
+        assertThat(ids(BeerFilter.builder().namePrefix("%").build(), PageRequest.of(0, 1000))).isEmpty();
+    }
+
+    @Test
+    void plansAreCachedPerShapeAndSort() {
+        Sort byPrice = BeerSortField.PRICE.toSort(Sort.Direction.ASC);
+
+        BeerQueryPlan cheap = beerFilterQueries.planFor(BeerFilter.builder().maxPrice(BigDecimal.ONE).build(), byPrice);
+        BeerQueryPlan expensive = beerFilterQueries.planFor(BeerFilter.builder().maxPrice(BigDecimal.TEN).build(), byPrice);
+        BeerQueryPlan descending = beerFilterQueries.planFor(BeerFilter.builder().maxPrice(BigDecimal.TEN).build(),
+                BeerSortField.PRICE.toSort(Sort.Direction.DESC));
+
+        assertThat(expensive).isSameAs(cheap);
+        assertThat(descending).isNotSameAs(cheap);
+        assertThat(cheap.getSql()).contains("price <= :maxPrice").contains("ORDER BY price ASC, id ASC");
+    }
+
+    @Test
+    void emptyFilterListsEverything() {
+        long all = beerRepository.count().block();
+
+        assertThat(ids(new BeerFilter(), PageRequest.of(0, 1000))).hasSize((int) all);
+    }
+
+    private List<Integer> ids(BeerFilter filter, PageRequest pageRequest) {
+        return beerFilterQueries.find(filter, pageRequest).map(Beer::getId).collect(Collectors.toList()).block();
+    }
+}
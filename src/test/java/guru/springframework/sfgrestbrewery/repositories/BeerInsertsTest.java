@@ -0,0 +1,75 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.r2dbc.url=r2dbc:h2:mem:///bulk_inserts;DB_CLOSE_DELAY=-1")
+class BeerInsertsTest {
+
+    @Autowired
+    BeerInserts beerInserts;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    @Test
+    void batchGetsItsIdsWithoutReadingThemBack() {
+        List<Beer> beers = IntStream.range(0, 250)
+                .mapToObj(i -> Beer.builder().beerName("Batch " + i).beerStyle(BeerStyleEnum.LAGER)
+                        .upc(String.format("9%012d", i)).price(new BigDecimal("4.50")).quantityOnHand(i).build())
+                .collect(Collectors.toList());
+
+        List<Beer> inserted = beerInserts.insertAll(beers).collectList().block();
+
+        assertThat(inserted).extracting(Beer::getBeerName).containsExactlyElementsOf(
+                beers.stream().map(Beer::getBeerName).collect(Collectors.toList()));
+        Set<Integer> ids = inserted.stream().map(Beer::getId).collect(Collectors.toSet());
+        assertThat(ids).hasSize(250).doesNotContainNull();
+        assertThat(beerRepository.findAllById(ids).count().block()).isEqualTo(250);
+        assertThat(beerRepository.findById(inserted.get(7).getId()).block().getQuantityOnHand()).isEqualTo(7);
+    }
+
+    @Test
+    void singleInsertsShareABlock() {
+        long before = sequenceValue();
+
+        Integer first = beerInserts.insert(Beer.builder().beerName("First").build()).block().getId();
+        Integer second = beerInserts.insert(Beer.builder().beerName("Second").build()).block().getId();
+
+        assertThat(second).isGreaterThan(first);
+        assertThat(sequenceValue() - before).isLessThanOrEqualTo(100); //at most one block reserved for both
+    }
+
+    @Test
+    void repositorySaveDoesNotCollideWithAllocatedIds() {
+        Integer allocated = beerInserts.insert(Beer.builder().beerName("Allocated").build()).block().getId();
+
+        Integer generated = beerRepository.save(Beer.builder().beerName("Generated").build()).block().getId();
+
+        assertThat(generated).isNotEqualTo(allocated);
+        assertThat(beerInserts.insert(Beer.builder().beerName("Allocated too").build()).block().getId())
+                .isNotEqualTo(generated);
+    }
+
+    private long sequenceValue() {
+        return databaseClient.sql("SELECT CURRENT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'BEER_ID_SEQ'")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block();
+    }
+}
@@ -0,0 +1,72 @@
+package guru.springframework.sfgrestbrewery.repositories;
+
+import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerSortField;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every listing sort has to be read in index order, a sort step in the plan means the index is missing.
+ */
+@SpringBootTest
+class BeerSortIndexTest {
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerFilterQueries beerFilterQueries;
+
+    @ParameterizedTest
+    @EnumSource(BeerSortField.class)
+    void ascendingSortUsesIndex(BeerSortField field) {
+        assertIndexSorted(field, Sort.Direction.ASC);
+    }
+
+    @ParameterizedTest
+    @EnumSource(BeerSortField.class)
+    void descendingSortUsesIndex(BeerSortField field) {
+        assertIndexSorted(field, Sort.Direction.DESC);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Sort.Direction.class)
+    void listsInPriceOrder(Sort.Direction direction) {
+        List<BeerDto> beers = beerService.listBeers(null, null,
+                PageRequest.of(0, 100, BeerSortField.PRICE.toSort(direction)), false).block().getContent();
+
+        Comparator<BeerDto> byPrice = Comparator.comparing(BeerDto::getPrice, Comparator.nullsFirst(Comparator.<BigDecimal>naturalOrder()));
+        assertThat(beers).isNotEmpty();
+        assertThat(beers).isSortedAccordingTo(direction.isAscending() ? byPrice : byPrice.reversed());
+    }
+
+    private void assertIndexSorted(BeerSortField field, Sort.Direction direction) {
+        //the statement the listings run, unfiltered
+        String sql = beerFilterQueries.planFor(new BeerFilter(), field.toSort(direction)).getSql();
+
+        String plan = databaseClient.sql("EXPLAIN " + sql)
+                .bind("limit", 25)
+                .bind("offset", 50)
+                .map(row -> row.get(0, String.class))
+                .one()
+                .block();
+
+        assertThat(plan).contains("/* index sorted */").doesNotContain("tableScan");
+    }
+}
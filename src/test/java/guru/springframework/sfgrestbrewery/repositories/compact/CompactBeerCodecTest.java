@@ -0,0 +1,64 @@
+package guru.springframework.sfgrestbrewery.repositories.compact;
+
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactBeerCodecTest {
+
+    @Test
+    void pricesRoundTripInCents() {
+        assertThat(CompactBeerCodec.toCents(new BigDecimal("12.95"))).isEqualTo(1295);
+        assertThat(CompactBeerCodec.toCents(new BigDecimal("7"))).isEqualTo(700);
+        assertThat(CompactBeerCodec.toCents(new BigDecimal("0.50"))).isEqualTo(50);
+        assertThat(CompactBeerCodec.fromCents(1295)).isEqualTo(new BigDecimal("12.95"));
+
+        assertThatThrownBy(() -> CompactBeerCodec.toCents(new BigDecimal("1.999")))
+                .isInstanceOf(ServerWebInputException.class);
+        assertThatThrownBy(() -> CompactBeerCodec.toCents(new BigDecimal("1e-99999999")))
+                .isInstanceOf(ServerWebInputException.class);
+        assertThatThrownBy(() -> CompactBeerCodec.toCents(new BigDecimal("1e30")))
+                .isInstanceOf(ServerWebInputException.class);
+    }
+
+    @Test
+    void priceBoundsKeepTheSameRange() {
+        assertThat(CompactBeerCodec.toCentsBound(new BigDecimal("5.555"), true)).isEqualTo(556);
+        assertThat(CompactBeerCodec.toCentsBound(new BigDecimal("5.555"), false)).isEqualTo(555);
+        assertThat(CompactBeerCodec.toCentsBound(new BigDecimal("5"), true)).isEqualTo(500);
+        assertThat(CompactBeerCodec.toCentsBound(new BigDecimal("1e-99999999"), true)).isEqualTo(1);
+        assertThat(CompactBeerCodec.toCentsBound(new BigDecimal("-1e-99999999"), false)).isEqualTo(-1);
+        assertThat(CompactBeerCodec.toCentsBound(new BigDecimal("0.009"), false)).isZero();
+    }
+
+    @Test
+    void hugePriceBoundsAreRefusedBeforeScaling() {
+        assertThatThrownBy(() -> CompactBeerCodec.toCentsBound(new BigDecimal("1e30"), true))
+                .isInstanceOf(ServerWebInputException.class);
+        assertThatThrownBy(() -> CompactBeerCodec.toCentsBound(new BigDecimal("1e99999999"), false))
+                .isInstanceOf(ServerWebInputException.class);
+    }
+
+    @Test
+    void upcsKeepTheirLeadingZeros() {
+        assertThat(CompactBeerCodec.toUpcNumber("0631234200036")).isEqualTo(631234200036L);
+        assertThat(CompactBeerCodec.fromUpcNumber(631234200036L)).isEqualTo("0631234200036");
+        assertThat(CompactBeerCodec.fromUpcNumber(CompactBeerCodec.toUpcNumber("9999999999999"))).isEqualTo("9999999999999");
+
+        assertThat(CompactBeerCodec.isCompactUpc("631234200036")).isFalse();
+        assertThat(CompactBeerCodec.isCompactUpc("063123420003x")).isFalse();
+        assertThatThrownBy(() -> CompactBeerCodec.toUpcNumber("abc")).isInstanceOf(ServerWebInputException.class);
+    }
+
+    @Test
+    void everyStyleHasACode() {
+        for (BeerStyleEnum style : BeerStyleEnum.values()) {
+            assertThat(CompactBeerCodec.fromStyleCode(CompactBeerCodec.toStyleCode(style))).isEqualTo(style);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package guru.springframework.sfgrestbrewery.repositories.compact;
+
+import guru.springframework.sfgrestbrewery.bootstrap.BeerLoader;
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateResultDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.r2dbc.spi.Row;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"brewery.storage.compact=true",
+        "spring.r2dbc.url=r2dbc:h2:mem:///compact_beers;DB_CLOSE_DELAY=-1"})
+class CompactStorageTest {
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    @Test
+    void columnsHoldNumbersAndTheApiSeesTheSameValues() {
+        Row row = databaseClient.sql("SELECT upc, price, beer_style FROM beer WHERE upc = " + Long.parseLong(BeerLoader.BEER_1_UPC))
+                .map((r, metadata) -> r)
+                .one()
+                .block();
+        assertThat(row).isNotNull();
+
+        BeerDto beer = beerService.getByUpc(BeerLoader.BEER_1_UPC).block();
+        assertThat(beer.getUpc()).isEqualTo(BeerLoader.BEER_1_UPC);
+        assertThat(beer.getBeerStyle()).isEqualTo(BeerStyleEnum.ALE.name());
+        assertThat(beer.getPrice().scale()).isEqualTo(2);
+        assertThat(beerService.getById(beer.getId(), false).block()).isEqualTo(beer);
+
+        assertThat(beerService.getByUpc("not-a-upc").block()).isNull();
+    }
+
+    @Test
+    void listingFiltersMatchTheEntities() {
+        BeerFilter filter = BeerFilter.builder()
+                .beerStyles(EnumSet.of(BeerStyleEnum.IPA, BeerStyleEnum.PALE_ALE, BeerStyleEnum.ALE))
+                .minPrice(new BigDecimal("10.005"))
+                .maxPrice(new BigDecimal("80"))
+                .build();
+
+        List<Integer> expected = beerRepository.findAll()
+                .filter(beer -> filter.getBeerStyles().contains(beer.getBeerStyle())
+                        && beer.getPrice().compareTo(filter.getMinPrice()) >= 0
+                        && beer.getPrice().compareTo(filter.getMaxPrice()) <= 0)
+                .map(Beer::getId)
+                .sort()
+                .collectList()
+                .block();
+
+        List<Integer> actual = beerService.listBeers(filter, PageRequest.of(0, 100, Sort.by("id")), false).block()
+                .getContent().stream().map(BeerDto::getId).collect(Collectors.toList());
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void writesRoundTripAndInexactPricesAreRefused() {
+        BeerDto saved = beerService.saveNewBeer(BeerDto.builder().beerName("Compact Kolsch").beerStyle("LAGER")
+                .upc("0000000000017").price(new BigDecimal("3.5")).build()).block();
+
+        BeerDto read = beerService.getById(saved.getId(), false).block();
+        assertThat(read.getUpc()).isEqualTo("0000000000017");
+        assertThat(read.getPrice()).isEqualTo(new BigDecimal("3.50"));
+
+        assertThatThrownBy(() -> beerService.saveNewBeer(BeerDto.builder().beerName("Fractional").beerStyle("LAGER")
+                .upc("0000000000024").price(new BigDecimal("3.505")).build()).block())
+                .isInstanceOf(ServerWebInputException.class);
+    }
+
+    @Test
+    void bulkPriceUpdatesWriteCents() {
+        List<BeerPriceUpdateResultDto.Status> statuses = beerService.updatePrices(Flux.just(
+                        BeerPriceUpdateDto.builder().upc(BeerLoader.BEER_4_UPC).price(new BigDecimal("7.25")).build(),
+                        BeerPriceUpdateDto.builder().upc(BeerLoader.BEER_4_UPC).price(new BigDecimal("7.255")).build(),
+                        BeerPriceUpdateDto.builder().upc("not-a-upc").price(BigDecimal.ONE).build()))
+                .map(BeerPriceUpdateResultDto::getStatus)
+                .collectList()
+                .block();
+
+        assertThat(statuses).containsExactly(BeerPriceUpdateResultDto.Status.UPDATED,
+                BeerPriceUpdateResultDto.Status.INVALID, BeerPriceUpdateResultDto.Status.NOT_FOUND);
+        assertThat(beerService.getByUpc(BeerLoader.BEER_4_UPC).block().getPrice()).isEqualTo(new BigDecimal("7.25"));
+    }
+}
@@ -0,0 +1,107 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void callsOverTheLimitQueueAndGetTheNextFreeSlot() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("read", 2, 1, 10, 10, 1, Duration.ofSeconds(5));
+
+        AdaptiveConcurrencyLimit.Permit first = limit.acquire().block();
+        limit.acquire().block();
+
+        AtomicReference<AdaptiveConcurrencyLimit.Permit> third = new AtomicReference<>();
+        limit.acquire().subscribe(third::set);
+        assertThat(third.get()).isNull();
+        assertThat(limit.getWaiting()).isEqualTo(1);
+
+        assertThrows(AdaptiveConcurrencyLimit.RejectedException.class, () -> limit.acquire().block()); //queue is full
+
+        first.release(false);
+        assertThat(third.get()).isNotNull();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+        assertThat(limit.getWaiting()).isZero();
+    }
+
+    @Test
+    void queuedCallIsRejectedWhenTheWaitRunsOut() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("write", 1, 1, 10, 10, 10, Duration.ofMillis(20));
+        AdaptiveConcurrencyLimit.Permit held = limit.acquire().block();
+
+        assertThrows(AdaptiveConcurrencyLimit.RejectedException.class, () -> limit.acquire().block());
+        assertThat(limit.getWaiting()).isZero();
+
+        held.release(false);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void cancelledWaiterLeavesTheQueue() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("read", 1, 1, 10, 10, 10, Duration.ofSeconds(5));
+        AdaptiveConcurrencyLimit.Permit held = limit.acquire().block();
+
+        Disposable waiter = limit.acquire().subscribe();
+        waiter.dispose();
+        assertThat(limit.getWaiting()).isZero();
+
+        held.release(false);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void limitShrinksWhenLatencyGrowsAndRecoversWhenItDrops() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("read", 20, 2, 100, 10, 0, Duration.ZERO);
+
+        runSaturated(limit, 1, 10); //baseline
+        runSaturated(limit, 1, 10);
+        int before = limit.getLimit();
+
+        runSaturated(limit, 20, 10); //the database got slow
+        int slowed = limit.getLimit();
+        assertThat(slowed).isLessThan(before);
+
+        for (int i = 0; i < 10; i++) {
+            runSaturated(limit, 1, 10);
+        }
+        assertThat(limit.getLimit()).isGreaterThan(slowed);
+    }
+
+    @Test
+    void timeoutsShrinkTheLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("write", 20, 2, 100, 10, 0, Duration.ZERO);
+
+        for (int i = 0; i < 5; i++) {
+            limit.acquire().block().release(true);
+        }
+
+        assertThat(limit.getLimit()).isLessThan(20);
+    }
+
+    /**
+     * One window of calls taking {@code millis} each, with the limit fully used.
+     */
+    private static void runSaturated(AdaptiveConcurrencyLimit limit, long millis, int calls) throws InterruptedException {
+        List<AdaptiveConcurrencyLimit.Permit> permits = new ArrayList<>();
+        while (permits.size() < Math.min(calls, limit.getLimit())) {
+            permits.add(limit.acquire().block());
+        }
+        Thread.sleep(millis);
+        permits.forEach(permit -> permit.release(false));
+        for (int i = permits.size(); i < calls; i++) {
+            AdaptiveConcurrencyLimit.Permit permit = limit.acquire().block();
+            Mono.delay(Duration.ofMillis(millis)).block();
+            permit.release(false);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DatabaseCallGuardTest {
+
+    SimpleMeterRegistry meterRegistry;
+    DatabaseCallGuard guard;
+
+    Beer beer = Beer.builder().id(1).beerName("Galaxy Cat").beerStyle(BeerStyleEnum.PALE_ALE)
+            .upc("0631234200036").price(new BigDecimal("12.95")).build();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        guard = new DatabaseCallGuard(Duration.ofMillis(200), Duration.ofMillis(200), Duration.ofMillis(200),
+                true, Duration.ofMillis(50), Duration.ofMillis(5),
+                true, 100, Duration.ofMinutes(1), meterRegistry);
+    }
+
+    @Test
+    void timedOutLookupIsAnsweredStaleFromLastKnownGood() {
+        assertThat(guard.lookup("getById", "id:1", () -> Mono.just(beer)).block()).isNotNull();
+
+        RequestContext.Staleness staleness = new RequestContext.Staleness();
+        Mono<Beer> slow = guard.lookup("getById", "id:1", () -> Mono.just(beer).delayElement(Duration.ofSeconds(5)))
+                .contextWrite(context -> RequestContext.withStaleness(context, staleness));
+
+        assertThat(slow.block().getBeerName()).isEqualTo("Galaxy Cat");
+
+        assertThat(staleness.isStale()).isTrue();
+        assertThat(meterRegistry.counter("brewery.db.timeouts").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("brewery.db.stale.responses").count()).isEqualTo(1);
+    }
+
+    @Test
+    void timedOutLookupWithoutKnownGoodIsGatewayTimeout() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> guard.lookup("getById", "id:2", Mono::never).block());
+
+        assertThat(e.getStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    @Test
+    void hedgedAttemptWinsOverSlowFirstAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        //the first attempt hangs, the hedge sent after the initial delay answers
+        Mono<Beer> lookup = guard.lookup("getById", "id:1", () -> attempts.incrementAndGet() == 1
+                ? Mono.never()
+                : Mono.just(beer));
+
+        assertThat(lookup.block()).isNotNull();
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(meterRegistry.counter("brewery.db.hedged.requests").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("brewery.db.timeouts").count()).isZero();
+    }
+
+    @Test
+    void lookupThatFindsNothingIsEmptyWithoutHedging() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        Beer notFound = guard.lookup("getById", "id:404", () -> {
+            attempts.incrementAndGet();
+            return Mono.empty();
+        }).block();
+
+        assertThat(notFound).isNull();
+        assertThat(attempts.get()).isEqualTo(1); //answered before the hedge delay, no second query
+        assertThat(meterRegistry.counter("brewery.db.hedged.requests").count()).isZero();
+    }
+
+    @Test
+    void requestDeadlineShortensTheCallTimeout() {
+        long deadline = System.nanoTime() + Duration.ofMillis(20).toNanos();
+
+        Mono<Beer> write = guard.write(Mono.just(beer).delayElement(Duration.ofMillis(150)))
+                .contextWrite(context -> RequestContext.withDeadline(context, deadline));
+
+        long started = System.nanoTime();
+        assertThrows(ResponseStatusException.class, write::block);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(120));
+    }
+}
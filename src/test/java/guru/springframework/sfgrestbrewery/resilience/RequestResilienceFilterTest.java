@@ -0,0 +1,39 @@
+package guru.springframework.sfgrestbrewery.resilience;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestResilienceFilterTest {
+
+    RequestResilienceFilter filter = new RequestResilienceFilter(Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+    @Test
+    void requestedTimeoutIsCappedAtTheMaximum() {
+        assertThat(remainingWith("2000")).isBetween(Duration.ofMillis(1500), Duration.ofSeconds(2));
+        assertThat(remainingWith("600000")).isBetween(Duration.ofSeconds(29), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void timeoutsThatAreNotPositiveGetTheDefault() {
+        for (String requested : new String[]{"0", "-5", "soon"}) {
+            assertThat(remainingWith(requested)).isBetween(Duration.ofSeconds(9), Duration.ofSeconds(10));
+        }
+    }
+
+    private Duration remainingWith(String requestTimeout) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v2/beer/1")
+                .header(RequestResilienceFilter.REQUEST_TIMEOUT_HEADER, requestTimeout));
+        Duration[] remaining = new Duration[1];
+        filter.filter(exchange, filtered -> Mono.deferContextual(context -> {
+            remaining[0] = RequestContext.remaining(context).orElseThrow();
+            return Mono.empty();
+        })).block();
+        return remaining[0];
+    }
+}
@@ -0,0 +1,124 @@
+package guru.springframework.sfgrestbrewery.services;
+
+import guru.springframework.sfgrestbrewery.audit.BeerAuditLog;
+import guru.springframework.sfgrestbrewery.bootstrap.BeerLoader;
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.domain.BeerHistoryEntry;
+import guru.springframework.sfgrestbrewery.repositories.BeerChangeLog;
+import guru.springframework.sfgrestbrewery.repositories.BeerPriceUpdates;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateResultDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerPriceUpdateResultDto.Status;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureWebTestClient
+@SpringBootTest(properties = {"brewery.bulk-price.batch-size=4",
+        "spring.r2dbc.url=r2dbc:h2:mem:///bulk_prices;DB_CLOSE_DELAY=-1"})
+class BulkPriceUpdateTest {
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerChangeLog beerChangeLog;
+
+    @Autowired
+    BeerPriceUpdates beerPriceUpdates;
+
+    @Autowired
+    BeerAuditLog beerAuditLog;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Test
+    void repricesByIdAndUpcAndReportsEveryLineInOrder() {
+        BeerDto byUpc = beerService.getByUpc(BeerLoader.BEER_2_UPC).block();
+        Integer beerId = beerService.getByUpc(BeerLoader.BEER_1_UPC).block().getId();
+        beerService.getById(beerId, false).block(); //in the near cache now
+        long changesBefore = beerChangeLog.highWaterMark().block();
+
+        List<BeerPriceUpdateResultDto> results = beerService.updatePrices(Flux.just(
+                BeerPriceUpdateDto.builder().id(beerId).price(new BigDecimal("11.11")).build(),
+                BeerPriceUpdateDto.builder().upc(BeerLoader.BEER_2_UPC).price(new BigDecimal("22.22")).build(),
+                BeerPriceUpdateDto.builder().id(Integer.MAX_VALUE).price(BigDecimal.ONE).build(),
+                BeerPriceUpdateDto.builder().id(beerId).price(new BigDecimal("-1")).build(),
+                BeerPriceUpdateDto.builder().price(BigDecimal.ONE).build(),
+                BeerPriceUpdateDto.builder().id(beerId).price(new BigDecimal("12.12")).build(),
+                BeerPriceUpdateDto.builder().id(beerId).price(new BigDecimal("13.13")).build()))
+                .collectList().block();
+
+        assertThat(results).extracting(BeerPriceUpdateResultDto::getIndex).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(results).extracting(BeerPriceUpdateResultDto::getStatus).containsExactly(
+                Status.UPDATED, Status.UPDATED, Status.NOT_FOUND, Status.INVALID, Status.INVALID, Status.UPDATED, Status.UPDATED);
+        assertThat(results.get(1).getId()).isEqualTo(byUpc.getId());
+
+        assertThat(beerRepository.findById(beerId).block().getPrice()).isEqualByComparingTo("13.13");
+        assertThat(beerRepository.findById(byUpc.getId()).block().getPrice()).isEqualByComparingTo("22.22");
+        assertThat(beerService.getById(beerId, false).block().getPrice()).isEqualByComparingTo("13.13");
+        assertThat(beerChangeLog.readAfter(changesBefore, 100).collectList().block()).hasSize(4);
+
+        beerAuditLog.flush().block();
+        List<BeerHistoryEntry> history = webTestClient.get().uri("/api/v2/beer/{beerId}/history?pageSize=3", beerId)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BeerHistoryEntry.class)
+                .getResponseBody().collectList().block();
+        assertThat(history).extracting(BeerHistoryEntry::getPriceAfter)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("13.13"), new BigDecimal("12.12"), new BigDecimal("11.11"));
+    }
+
+    @Test
+    void doesNotOverwriteAPriceChangedSinceItWasRead() {
+        Integer beerId = beerService.getByUpc(BeerLoader.BEER_3_UPC).block().getId();
+        Beer stale = beerRepository.findById(beerId).block();
+        beerRepository.save(stale.toBuilder().price(new BigDecimal("99.99")).build()).block();
+
+        assertThat(stale.getPrice()).isNotEqualByComparingTo("99.99");
+        List<Boolean> updated = beerPriceUpdates.updatePrices(List.of(BeerChangedEvent.updated(stale,
+                stale.toBuilder().price(new BigDecimal("1.00")).build()))).collectList().block();
+
+        assertThat(updated).containsExactly(false);
+        assertThat(beerRepository.findById(beerId).block().getPrice()).isEqualByComparingTo("99.99");
+    }
+
+    @Test
+    void repricesThroughTheEndpointAsNdjson() {
+        List<Integer> ids = beerRepository.findAll().map(Beer::getId).take(10).collectList().block();
+        String body = ids.stream()
+                .map(id -> "{\"id\":" + id + ",\"price\":" + (id + 0.5) + "}")
+                .collect(Collectors.joining("\n"));
+
+        List<BeerPriceUpdateResultDto> results = webTestClient.patch().uri("/api/v2/beer")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BeerPriceUpdateResultDto.class)
+                .getResponseBody().collectList().block();
+
+        assertThat(results).extracting(BeerPriceUpdateResultDto::getId).isEqualTo(ids);
+        assertThat(results).extracting(BeerPriceUpdateResultDto::getStatus).containsOnly(Status.UPDATED);
+        IntStream.range(0, ids.size()).forEach(i -> assertThat(beerRepository.findById(ids.get(i)).block().getPrice())
+                .isEqualByComparingTo(BigDecimal.valueOf(ids.get(i) + 0.5)));
+    }
+}
@@ -0,0 +1,123 @@
+package guru.springframework.sfgrestbrewery.sharding;
+
+import guru.springframework.sfgrestbrewery.domain.Beer;
+import guru.springframework.sfgrestbrewery.repositories.BeerRepository;
+import guru.springframework.sfgrestbrewery.repositories.BeerTableScanner;
+import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import guru.springframework.sfgrestbrewery.web.model.BeerFilter;
+import guru.springframework.sfgrestbrewery.web.model.BeerSortField;
+import guru.springframework.sfgrestbrewery.web.model.BeerStyleEnum;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.relational.core.query.Query;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"brewery.sharding.enabled=true",
+        "brewery.sharding.strategy=STYLE",
+        "brewery.sharding.urls=r2dbc:h2:mem:///beer_shard_0;DB_CLOSE_DELAY=-1,"
+                + "r2dbc:h2:mem:///beer_shard_1;DB_CLOSE_DELAY=-1,"
+                + "r2dbc:h2:mem:///beer_shard_2;DB_CLOSE_DELAY=-1"})
+class ShardedBeerRepositoryTest {
+
+    @Autowired
+    BeerShards beerShards;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerTableScanner beerTableScanner;
+
+    @Test
+    void beersAreSpreadByStyleAndFoundByIdOnTheirShard() {
+        List<Beer> all = beerRepository.findAll().collectList().block();
+        assertThat(all).hasSize(30);
+        assertThat(all).isSortedAccordingTo(Comparator.comparing(Beer::getId));
+
+        for (BeerShard shard : beerShards.getShards()) {
+            List<Beer> local = shard.getTemplate().select(Query.empty(), Beer.class).collectList().block();
+            assertThat(local).allMatch(beer -> beerShards.ownerOf(beer.getId()) == shard)
+                    .allMatch(beer -> beer.getBeerStyle().ordinal() % beerShards.getShards().size() == shard.getIndex());
+        }
+
+        Beer any = all.get(17);
+        assertThat(beerRepository.findById(any.getId()).block()).isEqualTo(any);
+        assertThat(beerRepository.findByUpc(any.getUpc()).block()).isEqualTo(any);
+        assertThat(beerRepository.count().block()).isEqualTo(30);
+    }
+
+    @Test
+    void pagesOfTheMergedListingMatchASingleSortedList() {
+        Sort byPrice = BeerSortField.PRICE.toSort(Sort.Direction.DESC);
+        List<BeerDto> everything = list(new BeerFilter(), PageRequest.of(0, 100, byPrice));
+
+        Comparator<BeerDto> expectedOrder = Comparator.comparing(BeerDto::getPrice).reversed().thenComparing(BeerDto::getId, Comparator.reverseOrder());
+        assertThat(everything).hasSize(30).isSortedAccordingTo(expectedOrder);
+
+        List<BeerDto> paged = new ArrayList<>();
+        for (int page = 0; page < 4; page++) {
+            paged.addAll(list(new BeerFilter(), PageRequest.of(page, 8, byPrice)));
+        }
+        assertThat(paged).isEqualTo(everything);
+    }
+
+    @Test
+    void styleFiltersOnlyQueryTheirShards() {
+        BeerFilter ales = BeerFilter.builder().beerStyles(EnumSet.of(BeerStyleEnum.ALE)).build();
+
+        assertThat(beerShards.shardsFor(ales)).hasSize(1);
+        assertThat(list(ales, PageRequest.of(0, 100, Sort.by("id"))))
+                .isNotEmpty()
+                .allMatch(beer -> beer.getBeerStyle().equals("ALE"));
+    }
+
+    @Test
+    void exportScanMergesShardsInIdOrder() {
+        List<Integer> ids = beerTableScanner.scan(7).map(Beer::getId).collectList().block();
+
+        assertThat(ids).hasSize(30).isSorted();
+    }
+
+    @Test
+    void writesGoToTheOwningShard() {
+        BeerDto saved = beerService.saveNewBeer(BeerDto.builder().beerName("Shard Saison").beerStyle("SAISON")
+                .upc("0000000000042").price(new BigDecimal("9.99")).build()).block();
+
+        BeerShard owner = beerShards.ownerOf(saved.getId());
+        assertThat(owner.getIndex()).isEqualTo(BeerStyleEnum.SAISON.ordinal() % beerShards.getShards().size());
+
+        beerService.updateBeer(saved.getId(), BeerDto.builder().beerName("Shard Saison").beerStyle("SAISON")
+                .upc("0000000000042").price(new BigDecimal("10.99")).build()).block();
+        assertThat(beerService.getById(saved.getId(), false).block().getPrice()).isEqualByComparingTo("10.99");
+
+        BeerStyleEnum otherShardStyle = EnumSet.allOf(BeerStyleEnum.class).stream()
+                .filter(style -> style.ordinal() % beerShards.getShards().size() != owner.getIndex())
+                .findFirst().get();
+        assertThatThrownBy(() -> beerService.updateBeer(saved.getId(), BeerDto.builder().beerName("Shard Saison")
+                .beerStyle(otherShardStyle.name()).upc("0000000000042").price(BigDecimal.TEN).build()).block())
+                .isInstanceOf(CrossShardUpdateException.class);
+
+        beerService.reactiveDeleteById(saved.getId()).block();
+        assertThat(beerRepository.findById(saved.getId()).block()).isNull();
+    }
+
+    private List<BeerDto> list(BeerFilter filter, PageRequest pageRequest) {
+        return beerService.listBeers(filter, pageRequest, false).block().getContent().stream().collect(Collectors.toList());
+    }
+}
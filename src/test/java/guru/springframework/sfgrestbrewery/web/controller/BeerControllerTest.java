@@ -2,6 +2,7 @@ package guru.springframework.sfgrestbrewery.web.controller;
 
 import guru.springframework.sfgrestbrewery.bootstrap.BeerLoader;
 import guru.springframework.sfgrestbrewery.services.BeerService;
+import guru.springframework.sfgrestbrewery.web.idempotency.IdempotencyStore;
 import guru.springframework.sfgrestbrewery.web.model.BeerDto;
 import guru.springframework.sfgrestbrewery.web.model.BeerPagedList;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -22,8 +24,11 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
 
 @WebFluxTest(BeerController.class)
+@Import(IdempotencyStore.class)
 class BeerControllerTest {
 
     @Autowired
@@ -38,6 +43,7 @@ class BeerControllerTest {
     void setUp() {
         validBeer = BeerDto
                 .builder()
+                .id(1)
                 .beerName("Test beer")
                 .beerStyle("PALE_ALE")
                 .upc(BeerLoader.BEER_1_UPC)
@@ -48,7 +54,7 @@ class BeerControllerTest {
     void listBeers(){
         List<BeerDto> beerList = Arrays.asList(validBeer);
         BeerPagedList beerPagedList = new BeerPagedList(beerList, PageRequest.of(1,1),beerList.size());
-        given(beerService.listBeers(any(),any(),any(),any())).willReturn(Mono.just(beerPagedList));
+        given(beerService.listBeers(any(),any(),any())).willReturn(Mono.just(beerPagedList));
         webTestClient.get()
                 .uri("/api/v1/beer")
                 .accept(MediaType.APPLICATION_JSON)
@@ -57,6 +63,23 @@ class BeerControllerTest {
                 .expectBody(BeerPagedList.class);
     }
 
+    @Test
+    void listBeersParsesInStockLikeTheV2Filter(){
+        List<BeerDto> beerList = Arrays.asList(validBeer);
+        BeerPagedList beerPagedList = new BeerPagedList(beerList, PageRequest.of(1,1),beerList.size());
+        given(beerService.listBeers(any(),any(),any())).willReturn(Mono.just(beerPagedList));
+        webTestClient.get()
+                .uri("/api/v1/beer?inStock=TRUE")
+                .exchange()
+                .expectStatus().isOk();
+        for (String lenient : Arrays.asList("yes", "on", "1")) {
+            webTestClient.get()
+                    .uri("/api/v1/beer?inStock=" + lenient)
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+    }
+
     @Test
     void getBeerByUpc(){
         given(beerService.getByUpc(any())).willReturn(Mono.just(validBeer)); //sets how the mock beer service should behave when called
@@ -82,4 +105,32 @@ class BeerControllerTest {
                 .expectBody(BeerDto.class)
                 .value(beerDto -> beerDto.getBeerName(),equalTo(validBeer.getBeerName()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void saveNewBeerWithIdempotencyKeyCreatesOnce(){
+        BeerDto newBeer = BeerDto.builder().beerName("Test beer").beerStyle("PALE_ALE").upc(BeerLoader.BEER_1_UPC).build();
+        given(beerService.saveNewBeer(any())).willReturn(Mono.just(validBeer));
+
+        for (int i = 0; i < 2; i++) {
+            webTestClient.post()
+                    .uri("/api/v1/beer")
+                    .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "create-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(newBeer)
+                    .exchange()
+                    .expectStatus().isCreated()
+                    .expectHeader().location("http://api.springframework.guru/api/v1/beer/1");
+        }
+
+        then(beerService).should(times(1)).saveNewBeer(any());
+
+        newBeer.setBeerName("Another beer");
+        webTestClient.post()
+                .uri("/api/v1/beer")
+                .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "create-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(newBeer)
+                .exchange()
+                .expectStatus().isEqualTo(422);
+    }
+}
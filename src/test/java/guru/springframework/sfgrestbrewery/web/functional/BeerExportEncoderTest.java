@@ -0,0 +1,76 @@
+package guru.springframework.sfgrestbrewery.web.functional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import guru.springframework.sfgrestbrewery.web.model.BeerDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerExportEncoderTest {
+
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) //as Spring Boot configures it
+            .build();
+    BeerExportEncoder encoder = new BeerExportEncoder(objectMapper);
+
+    BeerDto plain = BeerDto.builder().id(1).beerName("Galaxy Cat").beerStyle("PALE_ALE").upc("0631234200036")
+            .price(new BigDecimal("12.95")).quantityOnHand(25).createdDate(LocalDateTime.of(2021, 3, 7, 10, 15)).build();
+    BeerDto quoted = BeerDto.builder().id(2).beerName("Say \"Hi\", Pal").beerStyle("IPA").build();
+
+    @Test
+    void csvHasHeaderAndEscapesFields() {
+        String csv = encode(BeerExportEncoder.Format.CSV, List.of(plain), List.of(quoted));
+
+        assertThat(csv.split("\n", -1)).containsExactly(
+                BeerExportEncoder.CSV_HEADER.trim(),
+                "1,Galaxy Cat,PALE_ALE,0631234200036,12.95,25,2021-03-07T10:15,",
+                "2,\"Say \"\"Hi\"\", Pal\",IPA,,,,,",
+                "");
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws Exception {
+        String ndjson = encode(BeerExportEncoder.Format.NDJSON, List.of(plain, quoted));
+
+        String[] lines = ndjson.split("\n");
+        assertThat(ndjson).endsWith("\n");
+        assertThat(lines).hasSize(2);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("beerName").asText()).isEqualTo("Galaxy Cat");
+        assertThat(first.get("createdDate").asText()).isEqualTo("2021-03-07T10:15:00");
+        assertThat(objectMapper.readValue(lines[1], BeerDto.class)).isEqualTo(quoted);
+    }
+
+    @Test
+    void emitsOneBufferPerBatch() {
+        List<DataBuffer> buffers = encoder.encode(Flux.just(List.of(plain), List.of(quoted)), BeerExportEncoder.Format.NDJSON,
+                new DefaultDataBufferFactory()).collectList().block();
+
+        assertThat(buffers).hasSize(2);
+        buffers.forEach(DataBufferUtils::release);
+    }
+
+    @SafeVarargs
+    private String encode(BeerExportEncoder.Format format, List<BeerDto>... batches) {
+        return DataBufferUtils.join(encoder.encode(Flux.just(batches), format, new DefaultDataBufferFactory()))
+                .map(buffer -> {
+                    String text = buffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(buffer);
+                    return text;
+                })
+                .block();
+    }
+}
@@ -0,0 +1,107 @@
+package guru.springframework.sfgrestbrewery.web.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyStoreTest {
+
+    IdempotencyStore store;
+    AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(100, Duration.ofMinutes(1));
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    void retryWhileInFlightWaitsForTheFirstResponse() {
+        Sinks.One<IdempotentResponse> insert = Sinks.one();
+
+        Mono<IdempotentResponse> first = store.execute("POST", "k1", "body", () -> {
+            executions.incrementAndGet();
+            return insert.asMono();
+        });
+        Mono<IdempotentResponse> retry = store.execute("POST", "k1", "body", () -> {
+            executions.incrementAndGet();
+            return Mono.just(IdempotentResponse.of(HttpStatus.OK, "/beer/2"));
+        });
+
+        //the first caller gives up, the insert still finishes and its outcome is kept
+        Disposable firstCaller = first.subscribe();
+        firstCaller.dispose();
+        insert.tryEmitValue(IdempotentResponse.of(HttpStatus.OK, "/beer/1"));
+
+        IdempotentResponse replayed = retry.block();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(replayed.getLocation()).isEqualTo("/beer/1");
+        assertThat(replayed.isReplayed()).isTrue();
+    }
+
+    @Test
+    void failedRequestIsForgotten() {
+        assertThrows(IllegalStateException.class, () -> store.execute("POST", "k1", "body", () -> {
+            executions.incrementAndGet();
+            return Mono.<IdempotentResponse>error(new IllegalStateException("boom"));
+        }).block());
+
+        IdempotentResponse response = store.execute("POST", "k1", "body", () -> {
+            executions.incrementAndGet();
+            return Mono.just(IdempotentResponse.of(HttpStatus.OK, "/beer/1"));
+        }).block();
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(response.isReplayed()).isFalse();
+    }
+
+    @Test
+    void lateFailureDoesNotForgetANewerOutcome() {
+        store = new IdempotencyStore(1, Duration.ofMinutes(1));
+        Sinks.One<IdempotentResponse> firstInsert = Sinks.one();
+
+        Disposable first = store.execute("POST", "k1", "body", () -> {
+            executions.incrementAndGet();
+            return firstInsert.asMono();
+        }).subscribe(response -> { }, e -> { });
+
+        //k2 evicts k1, so the next k1 runs again and is stored under the same key
+        store.execute("POST", "k2", "body", () -> Mono.just(IdempotentResponse.of(HttpStatus.OK))).block();
+        store.execute("POST", "k1", "body", () -> {
+            executions.incrementAndGet();
+            return Mono.just(IdempotentResponse.of(HttpStatus.OK, "/beer/1"));
+        }).block();
+
+        firstInsert.tryEmitError(new IllegalStateException("boom"));
+        first.dispose();
+
+        IdempotentResponse replayed = store.execute("POST", "k1", "body", () -> {
+            executions.incrementAndGet();
+            return Mono.just(IdempotentResponse.of(HttpStatus.OK, "/beer/2"));
+        }).block();
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(replayed.isReplayed()).isTrue();
+        assertThat(replayed.getLocation()).isEqualTo("/beer/1");
+    }
+
+    @Test
+    void keysAreScopedAndBoundToTheirRequest() {
+        store.execute("POST", "k1", "body", () -> Mono.just(IdempotentResponse.of(HttpStatus.OK))).block();
+
+        assertThat(store.execute("PUT", "k1", "other", () -> Mono.just(IdempotentResponse.of(HttpStatus.NO_CONTENT)))
+                .block().getStatus()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> store.execute("POST", "k1", "other", () -> Mono.just(IdempotentResponse.of(HttpStatus.OK))).block());
+    }
+}
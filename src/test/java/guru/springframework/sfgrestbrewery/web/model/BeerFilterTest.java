@@ -0,0 +1,42 @@
+package guru.springframework.sfgrestbrewery.web.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebInputException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BeerFilterTest {
+
+    @Test
+    void inStockTakesTrueOrFalseInAnyCase() {
+        assertThat(BeerFilter.fromQueryParams(params("inStock", "TRUE")).getInStock()).isTrue();
+        assertThat(BeerFilter.fromQueryParams(params("inStock", "false")).getInStock()).isFalse();
+        assertThat(BeerFilter.fromQueryParams(params("inStock", "")).getInStock()).isNull();
+    }
+
+    @Test
+    void inStockRejectsAnythingElse() {
+        ServerWebInputException e = assertThrows(ServerWebInputException.class,
+                () -> BeerFilter.fromQueryParams(params("inStock", "yes")));
+
+        assertThat(e.getReason()).isEqualTo("Invalid value for inStock: yes");
+    }
+
+    @Test
+    void priceLimitsWithAbsurdExponentsAreRejected() {
+        assertThat(BeerFilter.fromQueryParams(params("minPrice", "12.5")).getMinPrice()).isEqualByComparingTo("12.50");
+
+        assertThrows(ServerWebInputException.class, () -> BeerFilter.fromQueryParams(params("minPrice", "1e99999999")));
+        assertThrows(ServerWebInputException.class, () -> BeerFilter.fromQueryParams(params("maxPrice", "1e30")));
+        assertThrows(ServerWebInputException.class, () -> BeerFilter.fromQueryParams(params("maxPrice", "1e-99999999")));
+    }
+
+    private static MultiValueMap<String, String> params(String name, String value) {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add(name, value);
+        return params;
+    }
+}